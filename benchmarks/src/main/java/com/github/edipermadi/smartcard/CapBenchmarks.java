@@ -0,0 +1,26 @@
+package com.github.edipermadi.smartcard;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmark launcher, accepts regular JMH command line options and always attaches GC profiler so that allocation
+ * rate is reported along with throughput and latency
+ *
+ * @author Edi Permadi
+ */
+public final class CapBenchmarks {
+    private CapBenchmarks() {
+    }
+
+    public static void main(final String[] args) throws CommandLineOptionException, RunnerException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,360 @@
+package com.github.edipermadi.smartcard;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Representative CAP files used by benchmarks. Archives are generated in memory from a fixed seed, hence every run
+ * measures the same bytes.
+ *
+ * @author Edi Permadi
+ */
+public enum CapCorpus {
+    /**
+     * Small applet package, as produced by a release build
+     */
+    SMALL {
+        @Override
+        Map<String, byte[]> components() throws IOException {
+            return applet();
+        }
+    },
+
+    /**
+     * Applet package built with debug information, debug component outweighs the rest of package
+     */
+    DEBUG {
+        @Override
+        Map<String, byte[]> components() throws IOException {
+            final Map<String, byte[]> components = applet();
+            components.put(PATH + CapDecoderImplBase.COMPONENT_Debug,
+                    opaque(CapDecoderImplBase.TAG_COMPONENT_Debug, 60 * 1024));
+            return components;
+        }
+    },
+
+    /**
+     * Large library package, carries no applet and exports most of its classes
+     */
+    LIBRARY {
+        @Override
+        Map<String, byte[]> components() {
+            final Map<String, byte[]> components = new LinkedHashMap<>();
+            components.put(PATH + CapDecoderImplBase.COMPONENT_Header, libraryHeader());
+            components.put(PATH + CapDecoderImplBase.COMPONENT_Directory, libraryDirectory());
+            components.put(PATH + CapDecoderImplBase.COMPONENT_Import, libraryImport());
+            components.put(PATH + CapDecoderImplBase.COMPONENT_ConstantPool, libraryConstantPool());
+            components.put(PATH + CapDecoderImplBase.COMPONENT_Class, libraryClass());
+            components.put(PATH + CapDecoderImplBase.COMPONENT_Method, libraryMethod());
+            components.put(PATH + CapDecoderImplBase.COMPONENT_StaticField,
+                    opaque(CapDecoderImplBase.TAG_COMPONENT_StaticField, 512));
+            components.put(PATH + CapDecoderImplBase.COMPONENT_ReferenceLocation,
+                    opaque(CapDecoderImplBase.TAG_COMPONENT_ReferenceLocation, 6 * 1024));
+            components.put(PATH + CapDecoderImplBase.COMPONENT_Export,
+                    opaque(CapDecoderImplBase.TAG_COMPONENT_Export, 2 * 1024));
+            components.put(PATH + CapDecoderImplBase.COMPONENT_Descriptor, libraryDescriptor());
+            return components;
+        }
+    };
+
+    private static final String APPLET_RESOURCE = "/ykneo-oath-1.0.0.cap";
+    private static final String PATH = "com/example/javacard/";
+    private static final byte[] LIBRARY_AID = {(byte) 0xa0, 0x00, 0x00, 0x00, 0x62, 0x01, 0x01, 0x7f};
+    private static final String LIBRARY_NAME = "com/example/library";
+    private static final int LIBRARY_IMPORT_COUNT = 6;
+    private static final int LIBRARY_CONSTANT_COUNT = 3070;
+    private static final int LIBRARY_INTERFACE_COUNT = 16;
+    private static final int LIBRARY_CLASS_COUNT = 240;
+    private static final int LIBRARY_METHODS_PER_CLASS = 5;
+    private static final int LIBRARY_HANDLER_COUNT = 24;
+
+    /**
+     * Generate CAP archive
+     *
+     * @return CAP archive bytes
+     * @throws IOException when generating failed
+     */
+    public byte[] archive() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (final Map.Entry<String, byte[]> component : components().entrySet()) {
+                zip.putNextEntry(new ZipEntry(component.getKey()));
+                zip.write(component.getValue());
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Get component payloads, including tag and size
+     *
+     * @return component payloads indexed by tag, missing components are null
+     * @throws IOException when generating failed
+     */
+    public byte[][] payloads() throws IOException {
+        final byte[][] payloads = new byte[CapDecoderImplBase.COMPONENT_COUNT + 1][];
+        for (final Map.Entry<String, byte[]> component : components().entrySet()) {
+            final int tag = CapDecoderImplBase.getComponentTag(
+                    CapDecoderImplBase.getComponentName(component.getKey()));
+            payloads[tag] = component.getValue();
+        }
+        return payloads;
+    }
+
+    abstract Map<String, byte[]> components() throws IOException;
+
+    private static Map<String, byte[]> applet() throws IOException {
+        final Map<String, byte[]> components = new LinkedHashMap<>();
+        try (final InputStream resource = CapCorpus.class.getResourceAsStream(APPLET_RESOURCE)) {
+            if (resource == null) {
+                throw new IOException("missing resource " + APPLET_RESOURCE);
+            }
+
+            final ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(IOUtils.toByteArray(resource)));
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                if (CapDecoderImplBase.getComponentTag(CapDecoderImplBase.getComponentName(entry.getName())) > 0) {
+                    components.put(entry.getName(), IOUtils.toByteArray(zip));
+                }
+            }
+        }
+        return components;
+    }
+
+    private static byte[] libraryHeader() {
+        final byte[] name = LIBRARY_NAME.getBytes(StandardCharsets.US_ASCII);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xde);
+        out.write(0xca);
+        out.write(0xff);
+        out.write(0xed);
+        /* CAP format 2.2, package exported */
+        out.write(2);
+        out.write(2);
+        out.write(CapDecoderImplBase.ACC_EXPORT);
+        out.write(0);
+        out.write(1);
+        out.write(LIBRARY_AID.length);
+        out.write(LIBRARY_AID, 0, LIBRARY_AID.length);
+        out.write(name.length);
+        out.write(name, 0, name.length);
+        return component(CapDecoderImplBase.TAG_COMPONENT_Header, out.toByteArray());
+    }
+
+    private static byte[] libraryDirectory() {
+        /* sizes exclude tag and size of each component, directory body is 31 bytes long */
+        final int[] sizes = {libraryHeader().length - 3, 31, 0, libraryImport().length - 3,
+                libraryConstantPool().length - 3, libraryClass().length - 3, libraryMethod().length - 3,
+                512 - 3, 6 * 1024 - 3, 2 * 1024 - 3, libraryDescriptor().length - 3};
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (final int size : sizes) {
+            out.write(size >>> 8);
+            out.write(size);
+        }
+        /* static field image size, array init count and array init size */
+        for (final int size : new int[]{128, 4, 96}) {
+            out.write(size >>> 8);
+            out.write(size);
+        }
+        /* import count, applet count and custom count */
+        out.write(LIBRARY_IMPORT_COUNT);
+        out.write(0);
+        out.write(0);
+        return component(CapDecoderImplBase.TAG_COMPONENT_Directory, out.toByteArray());
+    }
+
+    private static byte[] libraryImport() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(LIBRARY_IMPORT_COUNT);
+        for (int i = 0; i < LIBRARY_IMPORT_COUNT; i++) {
+            /* java.lang, javacard.framework, javacard.security and so on, version 1.i */
+            out.write(i);
+            out.write(1);
+            out.write(7);
+            out.write(new byte[]{(byte) 0xa0, 0x00, 0x00, 0x00, 0x62, 0x01, (byte) i}, 0, 7);
+        }
+        return component(CapDecoderImplBase.TAG_COMPONENT_Import, out.toByteArray());
+    }
+
+    private static byte[] libraryConstantPool() {
+        final Random random = new Random(CapDecoderImplBase.TAG_COMPONENT_ConstantPool);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(LIBRARY_CONSTANT_COUNT >>> 8);
+        out.write(LIBRARY_CONSTANT_COUNT);
+        for (int i = 0; i < LIBRARY_CONSTANT_COUNT; i++) {
+            /* method references dominate, followed by field and class references */
+            final int tag = (i % 3 == 0) ? 1 + random.nextInt(3) : 4 + random.nextInt(3);
+            final int info = random.nextInt(1 << 24);
+            out.write(tag);
+            out.write(info >>> 16);
+            out.write(info >>> 8);
+            out.write(info);
+        }
+        return component(CapDecoderImplBase.TAG_COMPONENT_ConstantPool, out.toByteArray());
+    }
+
+    private static byte[] libraryClass() {
+        final Random random = new Random(CapDecoderImplBase.TAG_COMPONENT_Class);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        /* signature pool, CAP format 2.2 */
+        out.write(1);
+        out.write(0);
+        for (int i = 0; i < 256; i++) {
+            out.write(random.nextInt(16) << 4 | random.nextInt(16));
+        }
+
+        /* interfaces, each one extending previous one */
+        final int[] interfaces = new int[LIBRARY_INTERFACE_COUNT];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaces[i] = out.size();
+            out.write((Cap.ClassComponent.ACC_INTERFACE << 4) | ((i > 0) ? 1 : 0));
+            if (i > 0) {
+                out.write(interfaces[i - 1] >>> 8);
+                out.write(interfaces[i - 1]);
+            }
+        }
+
+        /* classes in hierarchies ten levels deep, rooted at an external class */
+        int superClass = 0;
+        int publicTableSize = 0;
+        int packageTableSize = 0;
+        for (int i = 0; i < LIBRARY_CLASS_COUNT; i++) {
+            final boolean isRoot = (i % 10) == 0;
+            final int publicBase = isRoot ? 1 : publicTableSize;
+            final int packageBase = isRoot ? 0 : packageTableSize;
+            final int offset = out.size();
+            out.write(1);
+            out.write(isRoot ? 0x80 : superClass >>> 8);
+            out.write(isRoot ? 0x00 : superClass);
+            out.write(2 + i % 10);
+            out.write(0);
+            out.write(1 + i % 3);
+            out.write(publicBase);
+            out.write(4);
+            out.write(packageBase);
+            out.write(2);
+            for (int j = 0; j < 6; j++) {
+                final int method = random.nextInt(60 * 1024);
+                out.write(method >>> 8);
+                out.write(method);
+            }
+            final int implemented = interfaces[random.nextInt(interfaces.length)];
+            out.write(implemented >>> 8);
+            out.write(implemented);
+            out.write(3);
+            for (int j = 0; j < 3; j++) {
+                out.write(random.nextInt(publicBase + 4));
+            }
+
+            superClass = offset;
+            publicTableSize = publicBase + 4;
+            packageTableSize = packageBase + 2;
+        }
+        return component(CapDecoderImplBase.TAG_COMPONENT_Class, out.toByteArray());
+    }
+
+    private static byte[] libraryMethod() {
+        final Random random = new Random(CapDecoderImplBase.TAG_COMPONENT_Method);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(LIBRARY_HANDLER_COUNT);
+        for (int i = 0; i < LIBRARY_HANDLER_COUNT * 8; i++) {
+            out.write(random.nextInt(256));
+        }
+
+        /* methods of 20 up to 80 bytecode bytes, those at offsets multiple of eight have an extended header */
+        for (final int offset : libraryMethodOffsets()) {
+            final int length = libraryMethodLength(offset);
+            if (offset % 8 == 0) {
+                out.write(Cap.MethodComponent.ACC_EXTENDED << 4);
+                out.write(random.nextInt(32));
+                out.write(random.nextInt(16));
+                out.write(random.nextInt(32));
+            } else {
+                out.write(random.nextInt(16));
+                out.write(random.nextInt(256));
+            }
+            for (int i = 0; i < length; i++) {
+                out.write(random.nextInt(16) * random.nextInt(16));
+            }
+        }
+        return component(CapDecoderImplBase.TAG_COMPONENT_Method, out.toByteArray());
+    }
+
+    private static byte[] libraryDescriptor() {
+        final int[] methodOffsets = libraryMethodOffsets();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(LIBRARY_CLASS_COUNT);
+        for (int i = 0; i < LIBRARY_CLASS_COUNT; i++) {
+            /* token, access flags, this class, interface count, field count and method count */
+            out.write(i);
+            out.write(0x01);
+            out.write(0);
+            out.write(i);
+            out.write(0);
+            out.write(0);
+            out.write(0);
+            out.write(0);
+            out.write(LIBRARY_METHODS_PER_CLASS);
+            for (int j = 0; j < LIBRARY_METHODS_PER_CLASS; j++) {
+                final int offset = methodOffsets[i * LIBRARY_METHODS_PER_CLASS + j];
+                final int length = libraryMethodLength(offset);
+                /* token, access flags, method offset, type offset, bytecode count and exception handlers */
+                out.write(j);
+                out.write(0x01);
+                for (final int value : new int[]{offset, 0, length, 0, 0}) {
+                    out.write(value >>> 8);
+                    out.write(value);
+                }
+            }
+        }
+        /* no type descriptors */
+        out.write(0);
+        out.write(0);
+        return component(CapDecoderImplBase.TAG_COMPONENT_Descriptor, out.toByteArray());
+    }
+
+    private static int[] libraryMethodOffsets() {
+        final int[] offsets = new int[LIBRARY_CLASS_COUNT * LIBRARY_METHODS_PER_CLASS];
+        int offset = 1 + LIBRARY_HANDLER_COUNT * 8;
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = offset;
+            offset += ((offset % 8 == 0) ? 4 : 2) + libraryMethodLength(offset);
+        }
+        return offsets;
+    }
+
+    private static int libraryMethodLength(final int offset) {
+        return 20 + (offset * 31) % 61;
+    }
+
+    private static byte[] opaque(final int tag, final int size) {
+        /* skewed byte distribution compresses roughly like bytecode does */
+        final Random random = new Random(tag);
+        final byte[] body = new byte[size - 3];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) (random.nextInt(16) * random.nextInt(16));
+        }
+        return component(tag, body);
+    }
+
+    private static byte[] component(final int tag, final byte[] body) {
+        final byte[] payload = new byte[body.length + 3];
+        payload[0] = (byte) tag;
+        payload[1] = (byte) (body.length >>> 8);
+        payload[2] = (byte) body.length;
+        System.arraycopy(body, 0, payload, 3, body.length);
+        return payload;
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.edipermadi.smartcard;
+
+import com.github.edipermadi.smartcard.exc.CapException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end benchmark of CAP decoders, archives are decoded from memory so that disk access is not measured. Every
+ * component having a decoder is decoded.
+ *
+ * @author Edi Permadi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CapDecoderBenchmark {
+    @Param({"SMALL", "DEBUG", "LIBRARY"})
+    private CapCorpus corpus;
+
+    private byte[] archive;
+    private CapDecodeOptions options;
+    private CapDecoder decoder;
+    private CapDecoder pooledDecoder;
+    private CapDecoder lazyDecoder;
+    private CapDecoder viewDecoder;
+
+    @Setup
+    public void setup() throws IOException {
+        archive = corpus.archive();
+        options = new CapDecodeOptionsBuilder().setComponents(CapComponent.values()).build();
+        decoder = new CapDecoderImpl();
+        pooledDecoder = new CapDecoderImpl(new CapDecoderPool());
+        lazyDecoder = new CapLazyDecoderImpl(new CapDecoderPool());
+        viewDecoder = new CapViewDecoderImpl(new CapDecoderPool());
+    }
+
+    @Benchmark
+    public Cap decode() throws CapException {
+        return decoder.decode(new ByteArrayInputStream(archive), options);
+    }
+
+    @Benchmark
+    public Cap decodePooled() throws CapException {
+        return pooledDecoder.decode(new ByteArrayInputStream(archive), options);
+    }
+
+    @Benchmark
+    public Cap decodeLazy() throws CapException {
+        return lazyDecoder.decode(new ByteArrayInputStream(archive), options);
+    }
+
+    @Benchmark
+    public Cap decodeView() throws CapException {
+        return viewDecoder.decode(new ByteArrayInputStream(archive), options);
+    }
+}
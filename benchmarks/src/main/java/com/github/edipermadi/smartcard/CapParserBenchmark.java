@@ -0,0 +1,94 @@
+package com.github.edipermadi.smartcard;
+
+import com.github.edipermadi.smartcard.exc.CapException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of component parsers in isolation, payloads are already inflated hence only parsing and building of
+ * component objects is measured. Components missing from corpus are reported as null.
+ *
+ * @author Edi Permadi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CapParserBenchmark {
+    @Param({"SMALL", "LIBRARY"})
+    private CapCorpus corpus;
+
+    private ByteBuffer[] payloads;
+    private int version;
+
+    @Setup
+    public void setup() throws IOException, CapException {
+        final byte[][] components = corpus.payloads();
+        payloads = new ByteBuffer[components.length];
+        for (int tag = 0; tag < components.length; tag++) {
+            if (components[tag] != null) {
+                payloads[tag] = ByteBuffer.wrap(components[tag]);
+            }
+        }
+        version = CapDecoderImpl.getCapVersion(payloads[CapDecoderImplBase.TAG_COMPONENT_Header]);
+    }
+
+    @Benchmark
+    public Cap.Header parseHeader() throws CapException {
+        return CapDecoderImpl.decodeCapHeader(payload(CapDecoderImplBase.TAG_COMPONENT_Header), null);
+    }
+
+    @Benchmark
+    public Cap.Directory parseDirectory() throws CapException {
+        return CapDecoderImpl.decodeCapDirectory(payload(CapDecoderImplBase.TAG_COMPONENT_Directory), null);
+    }
+
+    @Benchmark
+    public Cap.Applet parseApplet() throws CapException {
+        final ByteBuffer payload = payload(CapDecoderImplBase.TAG_COMPONENT_Applet);
+        return (payload == null) ? null : CapDecoderImpl.decodeCapApplet(payload, null);
+    }
+
+    @Benchmark
+    public Cap.Import parseImport() throws CapException {
+        return CapDecoderImpl.decodeCapImport(payload(CapDecoderImplBase.TAG_COMPONENT_Import), null);
+    }
+
+    @Benchmark
+    public Cap.ConstantPool parseConstantPool() throws CapException {
+        return CapDecoderImpl.decodeCapConstantPool(payload(CapDecoderImplBase.TAG_COMPONENT_ConstantPool));
+    }
+
+    @Benchmark
+    public Cap.ClassComponent parseClass() throws CapException {
+        final ByteBuffer payload = payload(CapDecoderImplBase.TAG_COMPONENT_Class);
+        return (payload == null) ? null : CapDecoderImpl.decodeCapClass(payload, version);
+    }
+
+    @Benchmark
+    public Cap.MethodComponent parseMethod() throws CapException {
+        final ByteBuffer payload = payload(CapDecoderImplBase.TAG_COMPONENT_Method);
+        return (payload == null) ? null : CapDecoderImpl.decodeCapMethod(payload,
+                CapMethodOffsetCollector.collect(payloads));
+    }
+
+    private ByteBuffer payload(final int tag) {
+        final ByteBuffer payload = payloads[tag];
+        return (payload == null) ? null : payload.duplicate();
+    }
+}
@@ -0,0 +1,303 @@
+package com.github.edipermadi.smartcard;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Application identifier (AID), an immutable value of 5 up to 16 bytes. Bytes are packed big-endian into two longs,
+ * hence equality, hashing and ordering never touch an array. Ordering is the unsigned lexicographic order of AID
+ * bytes. Hex string is only built by {@link #toString()}.
+ *
+ * @author Edi Permadi
+ */
+public final class Aid implements Comparable<Aid> {
+    /**
+     * Minimum AID length
+     */
+    public static final int MIN_LENGTH = 5;
+
+    /**
+     * Maximum AID length
+     */
+    public static final int MAX_LENGTH = 16;
+
+    /**
+     * Length of registered application provider identifier (RID)
+     */
+    public static final int RID_LENGTH = 5;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final long high;
+    private final long low;
+    private final int length;
+
+    /**
+     * Class constructor
+     *
+     * @param high   AID bytes 0 up to 7, zero padded
+     * @param low    AID bytes 8 up to 15, zero padded
+     * @param length AID length
+     */
+    private Aid(final long high, final long low, final int length) {
+        this.high = high;
+        this.low = low;
+        this.length = length;
+    }
+
+    /**
+     * Create AID out of byte array region
+     *
+     * @param aid    array holding AID
+     * @param offset offset of AID
+     * @param length length of AID
+     * @return AID
+     */
+    public static Aid valueOf(final byte[] aid, final int offset, final int length) {
+        if (aid == null) {
+            throw new IllegalArgumentException("aid is null");
+        } else if ((length < MIN_LENGTH) || (length > MAX_LENGTH)) {
+            throw new IllegalArgumentException("invalid AID length");
+        } else if ((offset < 0) || (offset > aid.length - length)) {
+            throw new IllegalArgumentException("invalid AID offset");
+        }
+
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < MAX_LENGTH; i++) {
+            final long b = (i < length) ? (aid[offset + i] & 0xff) : 0;
+            if (i < 8) {
+                high = (high << 8) | b;
+            } else {
+                low = (low << 8) | b;
+            }
+        }
+        return new Aid(high, low, length);
+    }
+
+    /**
+     * Create AID out of buffer region, read with absolute gets
+     *
+     * @param buffer buffer holding AID
+     * @param offset absolute offset of AID
+     * @param length length of AID
+     * @return AID
+     */
+    static Aid valueOf(final ByteBuffer buffer, final int offset, final int length) {
+        if ((length < MIN_LENGTH) || (length > MAX_LENGTH)) {
+            throw new IllegalArgumentException("invalid AID length");
+        }
+
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < MAX_LENGTH; i++) {
+            final long b = (i < length) ? (buffer.get(offset + i) & 0xff) : 0;
+            if (i < 8) {
+                high = (high << 8) | b;
+            } else {
+                low = (low << 8) | b;
+            }
+        }
+        return new Aid(high, low, length);
+    }
+
+    /**
+     * Create AID out of byte array
+     *
+     * @param aid AID bytes
+     * @return AID
+     */
+    public static Aid valueOf(final byte[] aid) {
+        if (aid == null) {
+            throw new IllegalArgumentException("aid is null");
+        }
+        return valueOf(aid, 0, aid.length);
+    }
+
+    /**
+     * Create AID out of hex string
+     *
+     * @param hex AID as hex string, either case
+     * @return AID
+     */
+    public static Aid fromHex(final String hex) {
+        if (hex == null) {
+            throw new IllegalArgumentException("hex is null");
+        } else if ((hex.length() % 2) != 0) {
+            throw new IllegalArgumentException("invalid AID hex string");
+        }
+
+        final byte[] aid = new byte[hex.length() / 2];
+        for (int i = 0; i < aid.length; i++) {
+            final int hi = Character.digit(hex.charAt(2 * i), 16);
+            final int lo = Character.digit(hex.charAt(2 * i + 1), 16);
+            if ((hi < 0) || (lo < 0)) {
+                throw new IllegalArgumentException("invalid AID hex string");
+            }
+            aid[i] = (byte) ((hi << 4) | lo);
+        }
+        return valueOf(aid);
+    }
+
+    /**
+     * Get AID length
+     *
+     * @return count of AID bytes
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Get AID bytes 0 up to 7 packed big-endian, zero padded
+     *
+     * @return high AID bits
+     */
+    long getHigh() {
+        return high;
+    }
+
+    /**
+     * Get AID bytes 8 up to 15 packed big-endian, zero padded
+     *
+     * @return low AID bits
+     */
+    long getLow() {
+        return low;
+    }
+
+    /**
+     * Get AID byte
+     *
+     * @param index byte index
+     * @return unsigned byte value
+     */
+    public int getByte(final int index) {
+        if ((index < 0) || (index >= length)) {
+            throw new IndexOutOfBoundsException("invalid AID byte index " + index);
+        }
+        return (index < 8)
+                ? (int) (high >>> (8 * (7 - index))) & 0xff
+                : (int) (low >>> (8 * (15 - index))) & 0xff;
+    }
+
+    /**
+     * Get copy of AID bytes
+     *
+     * @return AID bytes
+     */
+    public byte[] getBytes() {
+        final byte[] result = new byte[length];
+        copyTo(result, 0);
+        return result;
+    }
+
+    /**
+     * Copy AID bytes into array
+     *
+     * @param array  destination array
+     * @param offset destination offset
+     */
+    public void copyTo(final byte[] array, final int offset) {
+        for (int i = 0; i < length; i++) {
+            array[offset + i] = (byte) getByte(i);
+        }
+    }
+
+    /**
+     * Get registered application provider identifier, which is the first five bytes of AID
+     *
+     * @return RID as AID of five bytes
+     */
+    public Aid getRID() {
+        if (length == RID_LENGTH) {
+            return this;
+        }
+        return new Aid(high & 0xffffffffff000000L, 0, RID_LENGTH);
+    }
+
+    /**
+     * Check whether this AID starts with given AID, e.g. whether a package AID owns an applet AID
+     *
+     * @param prefix AID prefix
+     * @return true when this AID starts with prefix
+     */
+    public boolean startsWith(final Aid prefix) {
+        if (prefix.length > length) {
+            return false;
+        }
+
+        final int bits = 8 * prefix.length;
+        if (bits <= 64) {
+            final long mask = (bits == 64) ? -1L : ~(-1L >>> bits);
+            return (high & mask) == prefix.high;
+        }
+
+        final long mask = (bits == 128) ? -1L : ~(-1L >>> (bits - 64));
+        return (high == prefix.high) && ((low & mask) == prefix.low);
+    }
+
+    @Override
+    public int compareTo(final Aid other) {
+        int result = Long.compareUnsigned(high, other.high);
+        if (result == 0) {
+            result = Long.compareUnsigned(low, other.low);
+        }
+        if (result == 0) {
+            result = Integer.compare(length, other.length);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other) {
+            return true;
+        } else if (!(other instanceof Aid)) {
+            return false;
+        }
+
+        final Aid that = (Aid) other;
+        return (high == that.high) && (low == that.low) && (length == that.length);
+    }
+
+    @Override
+    public int hashCode() {
+        final long h = (high * 0x9e3779b97f4a7c15L) ^ low ^ length;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Append AID as lower case hex digits
+     *
+     * @param out destination of hex digits
+     * @throws IOException when appending failed
+     */
+    public void appendHex(final Appendable out) throws IOException {
+        if (out == null) {
+            throw new IllegalArgumentException("out is null");
+        }
+
+        for (int i = 0; i < length; i++) {
+            final int b = getByte(i);
+            out.append(HEX_DIGITS[b >>> 4]);
+            out.append(HEX_DIGITS[b & 0x0f]);
+        }
+    }
+
+    /**
+     * Format AID as lower case hex string
+     *
+     * @return AID hex string
+     */
+    @Override
+    public String toString() {
+        final char[] chars = new char[2 * length];
+        for (int i = 0; i < length; i++) {
+            final int b = getByte(i);
+            chars[2 * i] = HEX_DIGITS[b >>> 4];
+            chars[2 * i + 1] = HEX_DIGITS[b & 0x0f];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.edipermadi.smartcard;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Concurrent AID intern pool. Equal AIDs interned through one pool resolve to one shared {@link Aid} instance, so
+ * CAP objects decoded with the same pool share their AIDs and equality checks short-circuit on identity. Pooled AIDs
+ * are weakly referenced, an AID no longer referenced by any CAP object is dropped from pool. This class is
+ * thread-safe.
+ *
+ * @author Edi Permadi
+ */
+public final class AidPool {
+    private final ConcurrentMap<Key, AidReference> aids = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Aid> queue = new ReferenceQueue<>();
+
+    /**
+     * Intern AID held in byte array region
+     *
+     * @param aid    array holding AID
+     * @param offset offset of AID
+     * @param length length of AID
+     * @return canonical AID instance
+     */
+    public Aid intern(final byte[] aid, final int offset, final int length) {
+        return intern(Aid.valueOf(aid, offset, length));
+    }
+
+    /**
+     * Intern AID
+     *
+     * @param aid AID
+     * @return canonical AID instance, which is the given one when pool has no equal AID
+     */
+    public Aid intern(final Aid aid) {
+        if (aid == null) {
+            throw new IllegalArgumentException("aid is null");
+        }
+
+        expunge();
+        final Key key = new Key(aid);
+        while (true) {
+            final AidReference reference = aids.get(key);
+            if (reference != null) {
+                final Aid existing = reference.get();
+                if (existing != null) {
+                    return existing;
+                }
+
+                /* cleared but not yet expunged */
+                aids.remove(key, reference);
+            }
+
+            if (aids.putIfAbsent(key, new AidReference(aid, key, queue)) == null) {
+                return aid;
+            }
+        }
+    }
+
+    /**
+     * Get count of pooled AIDs, including AIDs which have been collected but not yet expunged
+     *
+     * @return count of pooled AIDs
+     */
+    public int size() {
+        expunge();
+        return aids.size();
+    }
+
+    private void expunge() {
+        for (Reference<? extends Aid> reference = queue.poll(); reference != null; reference = queue.poll()) {
+            final AidReference aidReference = (AidReference) reference;
+            aids.remove(aidReference.key, aidReference);
+        }
+    }
+
+    /**
+     * Pool key, it holds AID bits without referencing the pooled AID
+     *
+     * @author Edi Permadi
+     */
+    private static final class Key {
+        private final long high;
+        private final long low;
+        private final int length;
+        private final int hash;
+
+        Key(final Aid aid) {
+            this.high = aid.getHigh();
+            this.low = aid.getLow();
+            this.length = aid.getLength();
+            this.hash = aid.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (this == other) {
+                return true;
+            } else if (!(other instanceof Key)) {
+                return false;
+            }
+
+            final Key that = (Key) other;
+            return (high == that.high) && (low == that.low) && (length == that.length);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Weak reference to pooled AID, it remembers its key to be expunged once cleared
+     *
+     * @author Edi Permadi
+     */
+    private static final class AidReference extends WeakReference<Aid> {
+        private final Key key;
+
+        AidReference(final Aid aid, final Key key, final ReferenceQueue<Aid> queue) {
+            super(aid, queue);
+            this.key = key;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.edipermadi.smartcard;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
@@ -29,6 +30,34 @@ public interface Cap {
      */
     Applet getApplet();
 
+    /**
+     * Get CAP import component
+     *
+     * @return CAP import component
+     */
+    Import getImport();
+
+    /**
+     * Get CAP constant pool component
+     *
+     * @return CAP constant pool component
+     */
+    ConstantPool getConstantPool();
+
+    /**
+     * Get CAP class component
+     *
+     * @return CAP class component
+     */
+    ClassComponent getClassComponent();
+
+    /**
+     * Get CAP method component
+     *
+     * @return CAP method component
+     */
+    MethodComponent getMethodComponent();
+
     /**
      * CAP header component interface
      *
@@ -79,9 +108,9 @@ public interface Cap {
             /**
              * Get CAP package AID
              *
-             * @return CAP package AID (hex string)
+             * @return CAP package AID
              */
-            String getAID();
+            Aid getAID();
         }
 
         /**
@@ -103,10 +132,25 @@ public interface Cap {
         /**
          * Get CAP component sizes
          *
-         * @return array of CAP component sizes
+         * @return read-only list of CAP component sizes, indexed by component tag minus one
          */
         List<Integer> getComponentSizes();
 
+        /**
+         * Get size of a component without boxing
+         *
+         * @param tag component tag, from 1 up to 12
+         * @return component size, zero when directory lists no size for component
+         */
+        int getComponentSize(int tag);
+
+        /**
+         * Get count of component sizes listed by directory
+         *
+         * @return count of component sizes
+         */
+        int getComponentSizeCount();
+
         /**
          * Get static field information
          *
@@ -164,9 +208,9 @@ public interface Cap {
             /**
              * Get component AID
              *
-             * @return component AID (hex string)
+             * @return component AID
              */
-            String getAID();
+            Aid getAID();
         }
     }
 
@@ -192,9 +236,9 @@ public interface Cap {
             /**
              * get application identifier
              *
-             * @return application identifier (hex-string)
+             * @return application identifier
              */
-            String getAID();
+            Aid getAID();
 
             /**
              * Get installation offset
@@ -205,4 +249,463 @@ public interface Cap {
         }
 
     }
+
+    /**
+     * CAP import component interface. Imported packages are addressed by index, in the order the component lists
+     * them.
+     *
+     * @author Edi Permadi
+     */
+    interface Import {
+        /**
+         * Get count of imported packages
+         *
+         * @return count of imported packages
+         */
+        int getPackageCount();
+
+        /**
+         * Get AID of imported package
+         *
+         * @param index index of imported package
+         * @return imported package AID
+         */
+        Aid getAID(int index);
+
+        /**
+         * Get version of imported package encoded in 0xaabb (major, minor)
+         *
+         * @param index index of imported package
+         * @return imported package version
+         */
+        int getVersion(int index);
+
+        /**
+         * Find imported package by AID without materializing AID of every imported package
+         *
+         * @param aid package AID
+         * @return index of imported package, -1 when package is not imported
+         */
+        int indexOf(Aid aid);
+
+        /**
+         * Get imported packages
+         *
+         * @return read-only list view of imported packages
+         */
+        List<Header.PackageInfo> getPackages();
+    }
+
+    /**
+     * CAP constant pool component interface. Entries are addressed by index in constant time, each entry is made of a
+     * tag and three info bytes whose layout depends on the tag.
+     *
+     * @author Edi Permadi
+     */
+    interface ConstantPool {
+        int TAG_CLASSREF = 1;
+        int TAG_INSTANCE_FIELDREF = 2;
+        int TAG_VIRTUAL_METHODREF = 3;
+        int TAG_SUPER_METHODREF = 4;
+        int TAG_STATIC_FIELDREF = 5;
+        int TAG_STATIC_METHODREF = 6;
+
+        /**
+         * Get count of constant pool entries
+         *
+         * @return count of entries
+         */
+        int getCount();
+
+        /**
+         * Get tag of constant pool entry
+         *
+         * @param index index of entry
+         * @return entry tag
+         */
+        int getTag(int index);
+
+        /**
+         * Get info bytes of constant pool entry packed big-endian into the low 24 bits. Class references and
+         * instance, virtual and super references hold a u2 class_ref in bits 8 to 23, the latter three also hold a
+         * token in bits 0 to 7. Static references hold either a u2 offset in bits 0 to 15, or an external
+         * reference whose package token in bits 16 to 23 has its high bit set.
+         *
+         * @param index index of entry
+         * @return entry info bytes
+         */
+        int getInfo(int index);
+    }
+
+    /**
+     * CAP class component interface. Interfaces and classes are identified by their offset within the info item of
+     * class component, which is what internal class references hold.
+     *
+     * @author Edi Permadi
+     */
+    interface ClassComponent {
+        int ACC_INTERFACE = 0x8;
+        int ACC_SHAREABLE = 0x4;
+        int ACC_REMOTE = 0x2;
+
+        /**
+         * Super class reference of a class having no super class
+         */
+        int NO_SUPER_CLASS = 0xffff;
+
+        /**
+         * Method table entry inherited from a super class outside of this package
+         */
+        int UNRESOLVED = -1;
+
+        /**
+         * Get interfaces
+         *
+         * @return read-only list of interfaces, in component order
+         */
+        List<InterfaceInfo> getInterfaces();
+
+        /**
+         * Get classes
+         *
+         * @return read-only list of classes, in component order
+         */
+        List<ClassInfo> getClasses();
+
+        /**
+         * Find interface by offset
+         *
+         * @param offset interface offset
+         * @return interface info, null when no interface starts at given offset
+         */
+        InterfaceInfo findInterface(int offset);
+
+        /**
+         * Find class by offset
+         *
+         * @param offset class offset
+         * @return class info, null when no class starts at given offset
+         */
+        ClassInfo findClass(int offset);
+
+        /**
+         * Interface info interface
+         *
+         * @author Edi Permadi
+         */
+        interface InterfaceInfo {
+            /**
+             * Get offset of interface within class component info item
+             *
+             * @return interface offset
+             */
+            int getOffset();
+
+            /**
+             * Get interface flags
+             *
+             * @return interface flags
+             */
+            int getFlags();
+
+            /**
+             * Get count of super interfaces
+             *
+             * @return count of super interfaces
+             */
+            int getSuperInterfaceCount();
+
+            /**
+             * Get super interface
+             *
+             * @param index index of super interface
+             * @return class reference of super interface
+             */
+            int getSuperInterface(int index);
+
+            /**
+             * Get name of remote interface
+             *
+             * @return interface name, null when interface is not remote
+             */
+            String getName();
+        }
+
+        /**
+         * Class info interface. Virtual method tables are flattened, inherited entries are resolved against super
+         * classes of this package once while decoding.
+         *
+         * @author Edi Permadi
+         */
+        interface ClassInfo {
+            /**
+             * Get offset of class within class component info item
+             *
+             * @return class offset
+             */
+            int getOffset();
+
+            /**
+             * Get class flags
+             *
+             * @return class flags
+             */
+            int getFlags();
+
+            /**
+             * Get super class
+             *
+             * @return class reference of super class, {@link #NO_SUPER_CLASS} when class has no super class
+             */
+            int getSuperClass();
+
+            /**
+             * Get declared instance size
+             *
+             * @return declared instance size
+             */
+            int getDeclaredInstanceSize();
+
+            /**
+             * Get first reference token
+             *
+             * @return first reference token
+             */
+            int getFirstReferenceToken();
+
+            /**
+             * Get count of reference fields
+             *
+             * @return count of reference fields
+             */
+            int getReferenceCount();
+
+            /**
+             * Get token of first public virtual method declared by this class
+             *
+             * @return public method table base
+             */
+            int getPublicMethodTableBase();
+
+            /**
+             * Get size of flattened public virtual method table
+             *
+             * @return public method table base plus count of declared public virtual methods
+             */
+            int getPublicMethodTableSize();
+
+            /**
+             * Get public virtual method, either inherited or declared by this class
+             *
+             * @param token public virtual method token
+             * @return method offset within method component, {@link #UNRESOLVED} when inherited from another package
+             */
+            int getPublicMethod(int token);
+
+            /**
+             * Get token of first package virtual method declared by this class
+             *
+             * @return package method table base
+             */
+            int getPackageMethodTableBase();
+
+            /**
+             * Get size of flattened package virtual method table
+             *
+             * @return package method table base plus count of declared package virtual methods
+             */
+            int getPackageMethodTableSize();
+
+            /**
+             * Get package virtual method, either inherited or declared by this class
+             *
+             * @param token package virtual method token, without its high bit
+             * @return method offset within method component, {@link #UNRESOLVED} when inherited from another package
+             */
+            int getPackageMethod(int token);
+
+            /**
+             * Get implemented interfaces
+             *
+             * @return read-only list of implemented interfaces
+             */
+            List<ImplementedInterfaceInfo> getInterfaces();
+        }
+
+        /**
+         * Implemented interface info interface
+         *
+         * @author Edi Permadi
+         */
+        interface ImplementedInterfaceInfo {
+            /**
+             * Get implemented interface
+             *
+             * @return class reference of interface
+             */
+            int getInterface();
+
+            /**
+             * Get count of interface methods
+             *
+             * @return count of interface methods
+             */
+            int getMethodCount();
+
+            /**
+             * Map interface method to virtual method of implementing class
+             *
+             * @param token interface method token
+             * @return virtual method token
+             */
+            int getMethodToken(int token);
+        }
+    }
+
+    /**
+     * CAP method component interface. Methods are identified by the offset of their header within the info item of
+     * method component, which is what method references and method tables hold. Method headers are indexed by offset
+     * while decoding, bytecode is only sliced out of component payload on access.
+     *
+     * @author Edi Permadi
+     */
+    interface MethodComponent {
+        int ACC_EXTENDED = 0x8;
+        int ACC_ABSTRACT = 0x4;
+
+        /**
+         * Get exception handlers
+         *
+         * @return read-only list of exception handlers, in component order
+         */
+        List<ExceptionHandlerInfo> getExceptionHandlers();
+
+        /**
+         * Get count of indexed methods
+         *
+         * @return count of indexed methods
+         */
+        int getMethodCount();
+
+        /**
+         * Get indexed method
+         *
+         * @param index index of method, methods are sorted by offset
+         * @return method info
+         */
+        MethodInfo getMethod(int index);
+
+        /**
+         * Find method by offset
+         *
+         * @param offset method offset
+         * @return method info, null when no indexed method starts at given offset
+         */
+        MethodInfo findMethod(int offset);
+
+        /**
+         * Get indexed methods
+         *
+         * @return read-only list view of methods sorted by offset
+         */
+        List<MethodInfo> getMethods();
+
+        /**
+         * Exception handler info interface
+         *
+         * @author Edi Permadi
+         */
+        interface ExceptionHandlerInfo {
+            /**
+             * Get offset of first bytecode covered by handler
+             *
+             * @return start offset
+             */
+            int getStartOffset();
+
+            /**
+             * Get count of bytecode bytes covered by handler
+             *
+             * @return active length
+             */
+            int getActiveLength();
+
+            /**
+             * Check whether handler is the last one covering its active range
+             *
+             * @return true when stop bit is set
+             */
+            boolean isStop();
+
+            /**
+             * Get offset of handler bytecode
+             *
+             * @return handler offset
+             */
+            int getHandlerOffset();
+
+            /**
+             * Get constant pool index of caught class
+             *
+             * @return catch type index, zero when handler catches every exception
+             */
+            int getCatchTypeIndex();
+        }
+
+        /**
+         * Method info interface
+         *
+         * @author Edi Permadi
+         */
+        interface MethodInfo {
+            /**
+             * Get offset of method header within method component info item
+             *
+             * @return method offset
+             */
+            int getOffset();
+
+            /**
+             * Get method flags
+             *
+             * @return method flags
+             */
+            int getFlags();
+
+            /**
+             * Get maximum operand stack size
+             *
+             * @return max stack
+             */
+            int getMaxStack();
+
+            /**
+             * Get count of argument words
+             *
+             * @return nargs
+             */
+            int getNargs();
+
+            /**
+             * Get count of local variable words, excluding arguments
+             *
+             * @return max locals
+             */
+            int getMaxLocals();
+
+            /**
+             * Get bytecode size
+             *
+             * @return count of bytecode bytes
+             */
+            int getBytecodeLength();
+
+            /**
+             * Get bytecode as read-only slice of component payload, nothing is copied
+             *
+             * @return read-only buffer holding bytecode, its position is zero
+             */
+            ByteBuffer getBytecode();
+        }
+    }
 }
@@ -1,7 +1,5 @@
 package com.github.edipermadi.smartcard;
 
-import com.google.gson.annotations.SerializedName;
-
 import java.util.ArrayList;
 import java.util.List;
 
@@ -20,7 +18,7 @@ class CapAppletBuilder {
      * @param installMethodOffset applet installation method offset
      * @return this instance
      */
-    CapAppletBuilder addApplet(final String aid, final int installMethodOffset) {
+    CapAppletBuilder addApplet(final Aid aid, final int installMethodOffset) {
         applets.add(new CapAppletInfo(aid, installMethodOffset));
         return this;
     }
@@ -40,7 +38,6 @@ class CapAppletBuilder {
      * @author Edi Permadi
      */
     static final class CapApplet implements Cap.Applet {
-        @SerializedName("applets")
         private final List<Info> applets;
 
         /**
@@ -56,6 +53,11 @@ class CapAppletBuilder {
         public List<Info> getApplets() {
             return applets;
         }
+
+        @Override
+        public String toString() {
+            return CapJsonWriter.toJson(this, true);
+        }
     }
 
     /**
@@ -64,10 +66,7 @@ class CapAppletBuilder {
      * @author Edi Permadi
      */
     static final class CapAppletInfo implements Cap.Applet.Info {
-        @SerializedName("aid")
-        private final String aid;
-
-        @SerializedName("install_method_offset")
+        private final Aid aid;
         private final int installMethodOffset;
 
         /**
@@ -75,13 +74,13 @@ class CapAppletBuilder {
          * @param aid applet identifier
          * @param installMethodOffset applet installation method offset
          */
-        CapAppletInfo(final String aid, final int installMethodOffset) {
+        CapAppletInfo(final Aid aid, final int installMethodOffset) {
             this.aid = aid;
             this.installMethodOffset = installMethodOffset;
         }
 
         @Override
-        public String getAID() {
+        public Aid getAID() {
             return aid;
         }
 
@@ -0,0 +1,380 @@
+package com.github.edipermadi.smartcard;
+
+import com.github.edipermadi.smartcard.exc.CapDecodeException;
+import com.github.edipermadi.smartcard.exc.CapException;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+/**
+ * Decodes many CAP files concurrently on a caller supplied executor. Each file is decoded by its own task, so a
+ * work-stealing executor such as {@link java.util.concurrent.ForkJoinPool} balances the load across workers. Paths
+ * are submitted in given order, or optionally largest file first to keep a large CAP from being the last task left
+ * running at the cost of querying every file size on the calling thread before the first task is submitted.
+ * A failing file never aborts the batch, its failure is reported as part of its result.
+ *
+ * @author Edi Permadi
+ */
+public final class CapBatchDecoder {
+    private final CapDecoder decoder;
+    private final CapDecodeOptions options;
+    private final Executor executor;
+    private final boolean largestFirst;
+
+    /**
+     * Class constructor
+     *
+     * @param decoder      CAP decoder, it must be safe for concurrent use
+     * @param options      decode options
+     * @param executor     executor running decode tasks
+     * @param largestFirst whether paths are submitted largest file first
+     */
+    public CapBatchDecoder(final CapDecoder decoder, final CapDecodeOptions options, final Executor executor,
+                           final boolean largestFirst) {
+        if (decoder == null) {
+            throw new IllegalArgumentException("decoder is null");
+        } else if (options == null) {
+            throw new IllegalArgumentException("options is null");
+        } else if (executor == null) {
+            throw new IllegalArgumentException("executor is null");
+        }
+        this.decoder = decoder;
+        this.options = options;
+        this.executor = executor;
+        this.largestFirst = largestFirst;
+    }
+
+    /**
+     * Class constructor, paths are submitted in given order
+     *
+     * @param decoder  CAP decoder, it must be safe for concurrent use
+     * @param options  decode options
+     * @param executor executor running decode tasks
+     */
+    public CapBatchDecoder(final CapDecoder decoder, final CapDecodeOptions options, final Executor executor) {
+        this(decoder, options, executor, false);
+    }
+
+    /**
+     * Class constructor, using default decode options, paths are submitted in given order
+     *
+     * @param decoder  CAP decoder, it must be safe for concurrent use
+     * @param executor executor running decode tasks
+     */
+    public CapBatchDecoder(final CapDecoder decoder, final Executor executor) {
+        this(decoder, CapDecodeOptions.DEFAULT, executor);
+    }
+
+    /**
+     * Decode CAP files, blocks until every file has been decoded
+     *
+     * @param paths paths to CAP files
+     * @return results in order of given paths
+     * @throws InterruptedException when interrupted while waiting for results, pending decodes are cancelled
+     */
+    public List<Result<Path>> decodePaths(final Collection<Path> paths) throws InterruptedException {
+        if (paths == null) {
+            throw new IllegalArgumentException("paths is null");
+        }
+
+        final OrderedListener<Path> listener = new OrderedListener<>(paths.size());
+        decodePaths(paths, listener);
+        return listener.getResults();
+    }
+
+    /**
+     * Decode CAP files, results are delivered to listener on calling thread as soon as each file completes
+     *
+     * @param paths    paths to CAP files
+     * @param listener result listener
+     * @throws InterruptedException when interrupted while waiting for results, pending decodes are cancelled
+     */
+    public void decodePaths(final Collection<Path> paths, final Listener<Path> listener) throws InterruptedException {
+        if (paths == null) {
+            throw new IllegalArgumentException("paths is null");
+        }
+
+        final List<Task<Path>> tasks = new ArrayList<>(paths.size());
+        for (final Path path : paths) {
+            tasks.add(new PathTask(tasks.size(), path, largestFirst ? sizeOf(path) : 0));
+        }
+
+        if (largestFirst) {
+            /* longest processing time first */
+            Collections.sort(tasks, new Comparator<Task<Path>>() {
+                @Override
+                public int compare(final Task<Path> a, final Task<Path> b) {
+                    return Long.compare(b.weight, a.weight);
+                }
+            });
+        }
+        run(tasks, listener);
+    }
+
+    /**
+     * Decode CAP archive streams, blocks until every stream has been decoded. Streams are closed once decoded, streams
+     * left pending by interruption are not.
+     *
+     * @param streams CAP archive streams
+     * @return results in order of given streams
+     * @throws InterruptedException when interrupted while waiting for results, pending decodes are cancelled
+     */
+    public List<Result<InputStream>> decodeStreams(final Collection<? extends InputStream> streams)
+            throws InterruptedException {
+        final OrderedListener<InputStream> listener = new OrderedListener<>(streams.size());
+        decodeStreams(streams, listener);
+        return listener.getResults();
+    }
+
+    /**
+     * Decode CAP archive streams, results are delivered to listener on calling thread as soon as each stream
+     * completes. Streams are closed once decoded, streams left pending by interruption are not.
+     *
+     * @param streams  CAP archive streams
+     * @param listener result listener
+     * @throws InterruptedException when interrupted while waiting for results, pending decodes are cancelled
+     */
+    public void decodeStreams(final Collection<? extends InputStream> streams, final Listener<InputStream> listener)
+            throws InterruptedException {
+        if (streams == null) {
+            throw new IllegalArgumentException("streams is null");
+        }
+
+        final List<Task<InputStream>> tasks = new ArrayList<>(streams.size());
+        for (final InputStream stream : streams) {
+            tasks.add(new StreamTask(tasks.size(), stream));
+        }
+        run(tasks, listener);
+    }
+
+    private <S> void run(final List<Task<S>> tasks, final Listener<S> listener) throws InterruptedException {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener is null");
+        }
+
+        final CompletionService<Result<S>> completionService = new ExecutorCompletionService<>(executor);
+        final List<Future<Result<S>>> futures = new ArrayList<>(tasks.size());
+        for (final Task<S> task : tasks) {
+            futures.add(completionService.submit(task));
+        }
+
+        for (int i = 0; i < tasks.size(); i++) {
+            try {
+                listener.onResult(completionService.take().get());
+            } catch (final InterruptedException ex) {
+                /* nobody is left to collect results of pending tasks */
+                for (final Future<Result<S>> future : futures) {
+                    future.cancel(true);
+                }
+                throw ex;
+            } catch (final ExecutionException ex) {
+                /* tasks capture their own failures */
+                throw new IllegalStateException("CAP decode task failed", ex.getCause());
+            }
+        }
+    }
+
+    private static long sizeOf(final Path path) {
+        try {
+            return Files.size(path);
+        } catch (final IOException ex) {
+            /* let the decode task report it */
+            return 0;
+        }
+    }
+
+    /**
+     * Batch result listener
+     *
+     * @param <S> type of CAP source
+     * @author Edi Permadi
+     */
+    public interface Listener<S> {
+        /**
+         * Invoked on the thread running the batch once a CAP source has been decoded
+         *
+         * @param result decode result
+         */
+        void onResult(Result<S> result);
+    }
+
+    /**
+     * Batch decode result
+     *
+     * @param <S> type of CAP source
+     * @author Edi Permadi
+     */
+    public static final class Result<S> {
+        private final int index;
+        private final S source;
+        private final Cap cap;
+        private final CapException exception;
+
+        /**
+         * Class constructor
+         *
+         * @param index     index of source within batch
+         * @param source    CAP source
+         * @param cap       decoded CAP object, null on failure
+         * @param exception decode failure, null on success
+         */
+        Result(final int index, final S source, final Cap cap, final CapException exception) {
+            this.index = index;
+            this.source = source;
+            this.cap = cap;
+            this.exception = exception;
+        }
+
+        /**
+         * Get index of source within batch
+         *
+         * @return index of source
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Get CAP source
+         *
+         * @return CAP source
+         */
+        public S getSource() {
+            return source;
+        }
+
+        /**
+         * Check whether decoding succeeded
+         *
+         * @return true when decoding succeeded
+         */
+        public boolean isSuccess() {
+            return exception == null;
+        }
+
+        /**
+         * Get decoded CAP object
+         *
+         * @return decoded CAP object, null on failure
+         */
+        public Cap getCap() {
+            return cap;
+        }
+
+        /**
+         * Get decode failure
+         *
+         * @return decode failure, null on success
+         */
+        public CapException getException() {
+            return exception;
+        }
+    }
+
+    /**
+     * Decode task
+     *
+     * @param <S> type of CAP source
+     * @author Edi Permadi
+     */
+    private abstract static class Task<S> implements Callable<Result<S>> {
+        private final int index;
+        private final S source;
+        private final long weight;
+
+        Task(final int index, final S source, final long weight) {
+            this.index = index;
+            this.source = source;
+            this.weight = weight;
+        }
+
+        @Override
+        public final Result<S> call() {
+            try {
+                return new Result<>(index, source, decode(source), null);
+            } catch (final CapException ex) {
+                return new Result<>(index, source, null, ex);
+            } catch (final RuntimeException ex) {
+                return new Result<>(index, source, null, new CapDecodeException("failed to decode CAP", ex));
+            }
+        }
+
+        abstract Cap decode(S source) throws CapException;
+    }
+
+    /**
+     * Path decode task
+     *
+     * @author Edi Permadi
+     */
+    private final class PathTask extends Task<Path> {
+        PathTask(final int index, final Path path, final long size) {
+            super(index, path, size);
+        }
+
+        @Override
+        Cap decode(final Path path) throws CapException {
+            return decoder.decode(path, options);
+        }
+    }
+
+    /**
+     * Stream decode task
+     *
+     * @author Edi Permadi
+     */
+    private final class StreamTask extends Task<InputStream> {
+        StreamTask(final int index, final InputStream stream) {
+            super(index, stream, 0);
+        }
+
+        @Override
+        Cap decode(final InputStream stream) throws CapException {
+            /* decoders are not required to close streams they read */
+            try {
+                return decoder.decode(stream, options);
+            } finally {
+                IOUtils.closeQuietly(stream);
+            }
+        }
+    }
+
+    /**
+     * Listener collecting results in order of sources
+     *
+     * @param <S> type of CAP source
+     * @author Edi Permadi
+     */
+    private static final class OrderedListener<S> implements Listener<S> {
+        private final Result<S>[] results;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        OrderedListener(final int count) {
+            this.results = new Result[count];
+        }
+
+        @Override
+        public void onResult(final Result<S> result) {
+            results[result.getIndex()] = result;
+        }
+
+        List<Result<S>> getResults() {
+            return Collections.unmodifiableList(Arrays.asList(results));
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.github.edipermadi.smartcard;
+
+import com.github.edipermadi.smartcard.exc.CapDecodeAppletException;
+import com.github.edipermadi.smartcard.exc.CapDecodeClassException;
+import com.github.edipermadi.smartcard.exc.CapDecodeConstantPoolException;
+import com.github.edipermadi.smartcard.exc.CapDecodeDirectoryException;
+import com.github.edipermadi.smartcard.exc.CapDecodeException;
+import com.github.edipermadi.smartcard.exc.CapDecodeHeaderException;
+import com.github.edipermadi.smartcard.exc.CapDecodeImportException;
+import com.github.edipermadi.smartcard.exc.CapDecodeMethodException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Cursor style reader over a CAP component payload. The reader works on the array backing the payload, so the buffer
+ * position is never modified and the same payload may be shared by several readers. Payload without accessible
+ * backing array is copied once.
+ *
+ * @author Edi Permadi
+ */
+final class CapBuffer {
+    private final byte[] array;
+    private final int tag;
+    private final int limit;
+    private int position;
+
+    /**
+     * Class constructor
+     *
+     * @param buffer component payload, read from its current position up to its limit
+     * @param tag    tag of component being read, used to report truncation
+     */
+    CapBuffer(final ByteBuffer buffer, final int tag) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("buffer is null");
+        }
+
+        if (buffer.hasArray()) {
+            this.array = buffer.array();
+            this.position = buffer.arrayOffset() + buffer.position();
+            this.limit = buffer.arrayOffset() + buffer.limit();
+        } else {
+            this.array = new byte[buffer.remaining()];
+            buffer.duplicate().get(array);
+            this.position = 0;
+            this.limit = array.length;
+        }
+        this.tag = tag;
+    }
+
+    /**
+     * Get count of remaining bytes
+     *
+     * @return count of remaining bytes
+     */
+    int remaining() {
+        return limit - position;
+    }
+
+    /**
+     * Get offset of next byte within backing array
+     *
+     * @return current position
+     */
+    int position() {
+        return position;
+    }
+
+    /**
+     * Check whether there are remaining bytes
+     *
+     * @return true when there are remaining bytes
+     */
+    boolean hasRemaining() {
+        return position < limit;
+    }
+
+    /**
+     * Get backing array, to be used along with offsets returned by {@link #advance(int)}
+     *
+     * @return backing array
+     */
+    byte[] array() {
+        return array;
+    }
+
+    /**
+     * Read unsigned byte
+     *
+     * @return unsigned byte value
+     * @throws CapDecodeException when payload is truncated
+     */
+    int u1() throws CapDecodeException {
+        require(1);
+        return array[position++] & 0xff;
+    }
+
+    /**
+     * Read unsigned big-endian short
+     *
+     * @return unsigned short value
+     * @throws CapDecodeException when payload is truncated
+     */
+    int u2() throws CapDecodeException {
+        require(2);
+        final int value = ((array[position] & 0xff) << 8) | (array[position + 1] & 0xff);
+        position += 2;
+        return value;
+    }
+
+    /**
+     * Read big-endian integer
+     *
+     * @return integer value
+     * @throws CapDecodeException when payload is truncated
+     */
+    int u4() throws CapDecodeException {
+        require(4);
+        final int value = ((array[position] & 0xff) << 24)
+                | ((array[position + 1] & 0xff) << 16)
+                | ((array[position + 2] & 0xff) << 8)
+                | (array[position + 3] & 0xff);
+        position += 4;
+        return value;
+    }
+
+    /**
+     * Read version encoded as minor followed by major byte
+     *
+     * @return version encoded in 0xaabb (major, minor)
+     * @throws CapDecodeException when payload is truncated
+     */
+    int version() throws CapDecodeException {
+        final int minor = u1();
+        return minor | (u1() << 8);
+    }
+
+    /**
+     * Read array of bytes
+     *
+     * @param length count of bytes to read
+     * @return array of bytes
+     * @throws CapDecodeException when payload is truncated
+     */
+    byte[] bytes(final int length) throws CapDecodeException {
+        final int offset = advance(length);
+        final byte[] result = new byte[length];
+        System.arraycopy(array, offset, result, 0, length);
+        return result;
+    }
+
+    /**
+     * Read UTF-8 encoded string
+     *
+     * @param length count of bytes to read
+     * @return decoded string
+     * @throws CapDecodeException when payload is truncated
+     */
+    String utf8(final int length) throws CapDecodeException {
+        return new String(array, advance(length), length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Skip bytes
+     *
+     * @param length count of bytes to skip
+     * @throws CapDecodeException when payload is truncated
+     */
+    void skip(final int length) throws CapDecodeException {
+        advance(length);
+    }
+
+    /**
+     * Skip bytes in place, leaving them readable from backing array
+     *
+     * @param length count of bytes to skip
+     * @return offset of skipped bytes within backing array
+     * @throws CapDecodeException when payload is truncated
+     */
+    int advance(final int length) throws CapDecodeException {
+        require(length);
+        final int offset = position;
+        position += length;
+        return offset;
+    }
+
+    /**
+     * Ensure there are enough remaining bytes
+     *
+     * @param length count of required bytes
+     * @throws CapDecodeException when payload is truncated
+     */
+    private void require(final int length) throws CapDecodeException {
+        if ((length < 0) || (limit - position < length)) {
+            throw truncated(tag);
+        }
+    }
+
+    /**
+     * Create truncation exception of given component
+     *
+     * @param tag component tag
+     * @return truncation exception
+     */
+    private static CapDecodeException truncated(final int tag) {
+        switch (tag) {
+            case CapDecoderImplBase.TAG_COMPONENT_Header:
+                return CapDecodeHeaderException.truncated();
+            case CapDecoderImplBase.TAG_COMPONENT_Directory:
+                return CapDecodeDirectoryException.truncatedComponent();
+            case CapDecoderImplBase.TAG_COMPONENT_Applet:
+                return CapDecodeAppletException.truncated();
+            case CapDecoderImplBase.TAG_COMPONENT_Import:
+                return CapDecodeImportException.truncated();
+            case CapDecoderImplBase.TAG_COMPONENT_ConstantPool:
+                return CapDecodeConstantPoolException.truncated();
+            case CapDecoderImplBase.TAG_COMPONENT_Class:
+                return CapDecodeClassException.truncated();
+            case CapDecoderImplBase.TAG_COMPONENT_Method:
+                return CapDecodeMethodException.truncated();
+            default:
+                return new CapDecodeException("component " + tag + " is truncated");
+        }
+    }
+}
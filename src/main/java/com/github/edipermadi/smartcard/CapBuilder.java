@@ -1,19 +1,18 @@
 package com.github.edipermadi.smartcard;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.annotations.SerializedName;
-
 /**
  * CAP builder class
  *
  * @author Edi Permadi
  */
 public final class CapBuilder {
-    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
     private Cap.Header header;
     private Cap.Directory directory;
     private Cap.Applet applet;
+    private Cap.Import importComponent;
+    private Cap.ConstantPool constantPool;
+    private Cap.ClassComponent classComponent;
+    private Cap.MethodComponent methodComponent;
 
     /**
      * Set CAP header component
@@ -57,6 +56,62 @@ public final class CapBuilder {
         return this;
     }
 
+    /**
+     * Set CAP import component
+     *
+     * @param importComponent import component
+     * @return this instance
+     */
+    public CapBuilder setImport(final Cap.Import importComponent) {
+        if (importComponent == null) {
+            throw new IllegalArgumentException("CAP import is null");
+        }
+        this.importComponent = importComponent;
+        return this;
+    }
+
+    /**
+     * Set CAP constant pool component
+     *
+     * @param constantPool constant pool component
+     * @return this instance
+     */
+    public CapBuilder setConstantPool(final Cap.ConstantPool constantPool) {
+        if (constantPool == null) {
+            throw new IllegalArgumentException("CAP constant pool is null");
+        }
+        this.constantPool = constantPool;
+        return this;
+    }
+
+    /**
+     * Set CAP class component
+     *
+     * @param classComponent class component
+     * @return this instance
+     */
+    public CapBuilder setClassComponent(final Cap.ClassComponent classComponent) {
+        if (classComponent == null) {
+            throw new IllegalArgumentException("CAP class component is null");
+        }
+        this.classComponent = classComponent;
+        return this;
+    }
+
+    /**
+     * Set CAP method component
+     *
+     * @param methodComponent method component
+     * @return this instance
+     */
+    public CapBuilder setMethodComponent(final Cap.MethodComponent methodComponent) {
+        if (methodComponent == null) {
+            throw new IllegalArgumentException("CAP method component is null");
+        }
+        this.methodComponent = methodComponent;
+        return this;
+    }
+
     /**
      * Build instance of {@link Cap}
      *
@@ -78,14 +133,13 @@ public final class CapBuilder {
      * @author Edi Permadi
      */
     static final class CapImpl implements Cap {
-        @SerializedName("header")
         private final CapHeaderBuilder.CapHeader header;
-
-        @SerializedName("directory")
         private final CapDirectoryBuilder.CapDirectory directory;
-
-        @SerializedName("applet")
         private final CapAppletBuilder.CapApplet applet;
+        private final CapImportBuilder.CapImport importComponent;
+        private final CapConstantPoolBuilder.CapConstantPool constantPool;
+        private final CapClassBuilder.CapClassComponent classComponent;
+        private final CapMethodBuilder.CapMethodComponent methodComponent;
 
         /**
          * Class constructor
@@ -96,6 +150,10 @@ public final class CapBuilder {
             this.header = (CapHeaderBuilder.CapHeader) builder.header;
             this.directory = (CapDirectoryBuilder.CapDirectory) builder.directory;
             this.applet = (CapAppletBuilder.CapApplet)builder.applet;
+            this.importComponent = (CapImportBuilder.CapImport) builder.importComponent;
+            this.constantPool = (CapConstantPoolBuilder.CapConstantPool) builder.constantPool;
+            this.classComponent = (CapClassBuilder.CapClassComponent) builder.classComponent;
+            this.methodComponent = (CapMethodBuilder.CapMethodComponent) builder.methodComponent;
         }
 
         @Override
@@ -113,9 +171,29 @@ public final class CapBuilder {
             return applet;
         }
 
+        @Override
+        public Import getImport() {
+            return importComponent;
+        }
+
+        @Override
+        public ConstantPool getConstantPool() {
+            return constantPool;
+        }
+
+        @Override
+        public ClassComponent getClassComponent() {
+            return classComponent;
+        }
+
+        @Override
+        public MethodComponent getMethodComponent() {
+            return methodComponent;
+        }
+
         @Override
         public String toString() {
-            return gson.toJson(this);
+            return CapJsonWriter.toJson(this, true);
         }
     }
 }
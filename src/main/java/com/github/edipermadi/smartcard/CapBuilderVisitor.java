@@ -0,0 +1,265 @@
+package com.github.edipermadi.smartcard;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * CAP visitor building CAP component objects. Builder of a component is created on first visit of that component,
+ * hence decoding a few components does not allocate builders of the others.
+ *
+ * @author Edi Permadi
+ */
+final class CapBuilderVisitor extends CapVisitor {
+    private final AidPool aidPool;
+    private CapHeaderBuilder headerBuilder;
+    private CapDirectoryBuilder directoryBuilder;
+    private CapAppletBuilder appletBuilder;
+    private CapImportBuilder importBuilder;
+    private CapConstantPoolBuilder constantPoolBuilder;
+    private CapClassBuilder classBuilder;
+    private CapMethodBuilder methodBuilder;
+
+    /**
+     * Class constructor
+     *
+     * @param aidPool AID intern pool, null when AIDs are not interned
+     */
+    CapBuilderVisitor(final AidPool aidPool) {
+        this.aidPool = aidPool;
+    }
+
+    @Override
+    public void visitComponent(final int tag, final int size) {
+        if (tag == CapDecoderImplBase.TAG_COMPONENT_Method) {
+            methodBuilder().setSize(size);
+        }
+    }
+
+    @Override
+    public void visitHeader(final int version, final int flags) {
+        headerBuilder().setHeaderVersion(version)
+                .setHeaderFlags(flags);
+    }
+
+    @Override
+    public void visitPackage(final int version, final byte[] aid, final int offset, final int length) {
+        headerBuilder().setPackageInfo(version, toAid(aid, offset, length));
+    }
+
+    @Override
+    public void visitPackageName(final byte[] name, final int offset, final int length) {
+        headerBuilder().setPackageName(new String(name, offset, length, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void visitComponentSize(final int index, final int size) {
+        directoryBuilder().addComponentSize(size);
+    }
+
+    @Override
+    public void visitStaticFieldSize(final int imageSize, final int arrayInitCount, final int arrayInitSize) {
+        directoryBuilder().setStaticFieldSize(imageSize, arrayInitCount, arrayInitSize);
+    }
+
+    @Override
+    public void visitImportCount(final int importCount) {
+        directoryBuilder().setImportCount(importCount);
+    }
+
+    @Override
+    public void visitAppletCount(final int appletCount) {
+        directoryBuilder().setAppletCount(appletCount);
+    }
+
+    @Override
+    public void visitCustomComponent(final int tag, final int size, final byte[] aid, final int offset,
+                                     final int length) {
+        directoryBuilder().addCustomComponent(tag, toAid(aid, offset, length));
+    }
+
+    @Override
+    public void visitApplet(final byte[] aid, final int offset, final int length, final int installMethodOffset) {
+        appletBuilder().addApplet(toAid(aid, offset, length), installMethodOffset);
+    }
+
+    @Override
+    public void visitImport(final int version, final byte[] aid, final int offset, final int length) {
+        importBuilder().addPackage(version, aid, offset, length);
+    }
+
+    @Override
+    public void visitConstant(final int index, final int tag, final int info) {
+        constantPoolBuilder().addEntry(tag, info);
+    }
+
+    @Override
+    public void visitInterface(final int offset, final int flags, final byte[] superInterfaces, final int position,
+                               final int count) {
+        classBuilder().addInterface(offset, flags, toU2Array(superInterfaces, position, count));
+    }
+
+    @Override
+    public void visitInterfaceName(final byte[] name, final int offset, final int length) {
+        classBuilder().setInterfaceName(new String(name, offset, length, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void visitClass(final int offset, final int flags, final int superClass, final int declaredInstanceSize,
+                           final int firstReferenceToken, final int referenceCount) {
+        classBuilder().addClass(offset, flags, superClass, declaredInstanceSize, firstReferenceToken, referenceCount);
+    }
+
+    @Override
+    public void visitPublicMethodTable(final int base, final byte[] table, final int position, final int count) {
+        classBuilder().setPublicMethodTable(base, toU2Array(table, position, count));
+    }
+
+    @Override
+    public void visitPackageMethodTable(final int base, final byte[] table, final int position, final int count) {
+        classBuilder().setPackageMethodTable(base, toU2Array(table, position, count));
+    }
+
+    @Override
+    public void visitImplementedInterface(final int classRef, final byte[] tokens, final int offset,
+                                          final int count) {
+        classBuilder().addImplementedInterface(classRef, Arrays.copyOfRange(tokens, offset, offset + count));
+    }
+
+    @Override
+    public void visitExceptionHandler(final int startOffset, final int activeLength, final boolean stop,
+                                      final int handlerOffset, final int catchTypeIndex) {
+        methodBuilder().addExceptionHandler(startOffset, activeLength, stop, handlerOffset, catchTypeIndex);
+    }
+
+    @Override
+    public void visitMethod(final int offset, final int flags, final int maxStack, final int nargs,
+                            final int maxLocals, final byte[] bytecode, final int position, final int length) {
+        methodBuilder().addMethod(offset);
+    }
+
+    /**
+     * Build CAP header component
+     *
+     * @return CAP header component
+     */
+    Cap.Header buildHeader() {
+        return headerBuilder().build();
+    }
+
+    /**
+     * Build CAP directory component
+     *
+     * @return CAP directory component
+     */
+    Cap.Directory buildDirectory() {
+        return directoryBuilder().build();
+    }
+
+    /**
+     * Build CAP applet component
+     *
+     * @return CAP applet component
+     */
+    Cap.Applet buildApplet() {
+        return appletBuilder().build();
+    }
+
+    /**
+     * Build CAP import component
+     *
+     * @return CAP import component
+     */
+    Cap.Import buildImport() {
+        return importBuilder().build(aidPool);
+    }
+
+    /**
+     * Build CAP constant pool component
+     *
+     * @return CAP constant pool component
+     */
+    Cap.ConstantPool buildConstantPool() {
+        return constantPoolBuilder().build();
+    }
+
+    /**
+     * Build CAP class component
+     *
+     * @return CAP class component
+     */
+    Cap.ClassComponent buildClassComponent() {
+        return classBuilder().build();
+    }
+
+    /**
+     * Build CAP method component
+     *
+     * @param payload CAP method component payload, retained by resulting component
+     * @return CAP method component
+     */
+    Cap.MethodComponent buildMethodComponent(final ByteBuffer payload) {
+        return methodBuilder().build(payload);
+    }
+
+    private CapHeaderBuilder headerBuilder() {
+        if (headerBuilder == null) {
+            headerBuilder = new CapHeaderBuilder();
+        }
+        return headerBuilder;
+    }
+
+    private CapDirectoryBuilder directoryBuilder() {
+        if (directoryBuilder == null) {
+            directoryBuilder = new CapDirectoryBuilder();
+        }
+        return directoryBuilder;
+    }
+
+    private CapAppletBuilder appletBuilder() {
+        if (appletBuilder == null) {
+            appletBuilder = new CapAppletBuilder();
+        }
+        return appletBuilder;
+    }
+
+    private CapImportBuilder importBuilder() {
+        if (importBuilder == null) {
+            importBuilder = new CapImportBuilder();
+        }
+        return importBuilder;
+    }
+
+    private CapConstantPoolBuilder constantPoolBuilder() {
+        if (constantPoolBuilder == null) {
+            constantPoolBuilder = new CapConstantPoolBuilder();
+        }
+        return constantPoolBuilder;
+    }
+
+    private CapClassBuilder classBuilder() {
+        if (classBuilder == null) {
+            classBuilder = new CapClassBuilder();
+        }
+        return classBuilder;
+    }
+
+    private CapMethodBuilder methodBuilder() {
+        if (methodBuilder == null) {
+            methodBuilder = new CapMethodBuilder();
+        }
+        return methodBuilder;
+    }
+
+    private static int[] toU2Array(final byte[] array, final int offset, final int count) {
+        final int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = ((array[offset + 2 * i] & 0xff) << 8) | (array[offset + 2 * i + 1] & 0xff);
+        }
+        return result;
+    }
+
+    private Aid toAid(final byte[] aid, final int offset, final int length) {
+        return (aidPool == null) ? Aid.valueOf(aid, offset, length) : aidPool.intern(aid, offset, length);
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.edipermadi.smartcard;
+
+/**
+ * Snapshot of {@link CapCachingDecoder} statistics
+ *
+ * @author Edi Permadi
+ */
+public final class CapCacheStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long coalescedCount;
+    private final long evictionCount;
+    private final int entryCount;
+    private final long weight;
+
+    /**
+     * Class constructor
+     *
+     * @param hitCount       count of lookups served from cache
+     * @param missCount      count of lookups which decoded CAP
+     * @param coalescedCount count of lookups which waited for a concurrent decode of the same CAP
+     * @param evictionCount  count of evicted entries
+     * @param entryCount     count of cached entries
+     * @param weight         estimated retained bytes of cached entries
+     */
+    CapCacheStats(final long hitCount, final long missCount, final long coalescedCount, final long evictionCount,
+                  final int entryCount, final long weight) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.coalescedCount = coalescedCount;
+        this.evictionCount = evictionCount;
+        this.entryCount = entryCount;
+        this.weight = weight;
+    }
+
+    /**
+     * Get count of lookups served from cache
+     *
+     * @return count of hits
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Get count of lookups which decoded CAP
+     *
+     * @return count of misses
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Get count of lookups which waited for a concurrent decode of the same CAP instead of decoding it again
+     *
+     * @return count of coalesced lookups
+     */
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * Get count of entries evicted to stay within weight bound
+     *
+     * @return count of evictions
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Get count of cached entries
+     *
+     * @return count of entries
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Get estimated retained bytes of cached entries
+     *
+     * @return total weight of entries
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Get ratio of hits and coalesced lookups over all lookups
+     *
+     * @return hit ratio, 1.0 when there has been no lookup
+     */
+    public double getHitRatio() {
+        final long total = hitCount + missCount + coalescedCount;
+        return (total == 0) ? 1.0 : (double) (hitCount + coalescedCount) / total;
+    }
+
+    @Override
+    public String toString() {
+        return "CapCacheStats{hits=" + hitCount + ", misses=" + missCount + ", coalesced=" + coalescedCount
+                + ", evictions=" + evictionCount + ", entries=" + entryCount + ", weight=" + weight + "}";
+    }
+}
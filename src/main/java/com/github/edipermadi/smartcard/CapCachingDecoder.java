@@ -0,0 +1,364 @@
+package com.github.edipermadi.smartcard;
+
+import com.github.edipermadi.smartcard.exc.CapDecodeException;
+import com.github.edipermadi.smartcard.exc.CapException;
+import com.github.edipermadi.smartcard.exc.CapFormatException;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caching CAP decoder decorator. Decoded CAP objects are cached by SHA-256 digest of archive bytes and decode options,
+ * hence the same CAP bytes are decoded once no matter where they are read from. Entries are evicted in least recently
+ * used order once their total weight, estimated by bytes retained by decoded CAP objects unless
+ * a {@link CapWeigher} is given, exceeds the bound. Concurrent decodes of the same
+ * key are coalesced into a single decode of delegate. Visitor based methods are passed through to delegate. This
+ * class is thread-safe when delegate is.
+ *
+ * @author Edi Permadi
+ */
+public final class CapCachingDecoder implements CapDecoder {
+    private final CapDecoder delegate;
+    private final long maxWeight;
+    private final CapWeigher weigher;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentMap<Key, CompletableFuture<Cap>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private long weight;
+
+    /**
+     * Class constructor, entries are weighed by {@link CapWeigher#RETAINED_SIZE}
+     *
+     * @param delegate  CAP decoder decoding cache misses
+     * @param maxWeight bound of total weight of cached entries, in bytes retained by decoded CAP objects
+     */
+    public CapCachingDecoder(final CapDecoder delegate, final long maxWeight) {
+        this(delegate, maxWeight, CapWeigher.RETAINED_SIZE);
+    }
+
+    /**
+     * Class constructor
+     *
+     * @param delegate  CAP decoder decoding cache misses
+     * @param maxWeight bound of total weight of cached entries, in units of weigher
+     * @param weigher   weigher of decoded CAP objects
+     */
+    public CapCachingDecoder(final CapDecoder delegate, final long maxWeight, final CapWeigher weigher) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate is null");
+        } else if (maxWeight <= 0) {
+            throw new IllegalArgumentException("invalid maximum weight");
+        } else if (weigher == null) {
+            throw new IllegalArgumentException("weigher is null");
+        }
+        this.delegate = delegate;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    @Override
+    public Cap decode(final InputStream stream) throws CapException {
+        return decode(stream, CapDecodeOptions.DEFAULT);
+    }
+
+    @Override
+    public Cap decode(final Path path) throws CapException {
+        return decode(path, CapDecodeOptions.DEFAULT);
+    }
+
+    @Override
+    public Cap decode(final FileChannel channel) throws CapException {
+        return decode(channel, CapDecodeOptions.DEFAULT);
+    }
+
+    @Override
+    public Cap decode(final InputStream stream, final CapDecodeOptions options) throws CapException {
+        if (stream == null) {
+            throw new IllegalArgumentException("stream is null");
+        }
+
+        try {
+            return get(IOUtils.toByteArray(stream), options);
+        } catch (final IOException ex) {
+            throw new CapFormatException("unrecognized CAP format", ex);
+        }
+    }
+
+    @Override
+    public Cap decode(final Path path, final CapDecodeOptions options) throws CapException {
+        if (path == null) {
+            throw new IllegalArgumentException("path is null");
+        }
+
+        try {
+            return get(Files.readAllBytes(path), options);
+        } catch (final IOException ex) {
+            throw new CapFormatException("failed to read CAP file " + path, ex);
+        }
+    }
+
+    @Override
+    public Cap decode(final FileChannel channel, final CapDecodeOptions options) throws CapException {
+        if (channel == null) {
+            throw new IllegalArgumentException("channel is null");
+        }
+
+        try {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new CapFormatException("CAP file is too large");
+            }
+
+            final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) < 0) {
+                    throw new CapFormatException("CAP archive is truncated");
+                }
+            }
+            return get(buffer.array(), options);
+        } catch (final IOException ex) {
+            throw new CapFormatException("unrecognized CAP format", ex);
+        }
+    }
+
+    @Override
+    public void accept(final InputStream stream, final CapDecodeOptions options, final CapVisitor visitor)
+            throws CapException {
+        delegate.accept(stream, options, visitor);
+    }
+
+    @Override
+    public void accept(final Path path, final CapDecodeOptions options, final CapVisitor visitor)
+            throws CapException {
+        delegate.accept(path, options, visitor);
+    }
+
+    @Override
+    public void accept(final FileChannel channel, final CapDecodeOptions options, final CapVisitor visitor)
+            throws CapException {
+        delegate.accept(channel, options, visitor);
+    }
+
+    @Override
+    public CompletableFuture<Cap> decodeAsync(final InputStream stream, final CapDecodeOptions options,
+                                              final Executor executor) {
+        return submit(executor, () -> decode(stream, options));
+    }
+
+    @Override
+    public CompletableFuture<Cap> decodeAsync(final Path path, final CapDecodeOptions options,
+                                              final Executor executor) {
+        return submit(executor, () -> decode(path, options));
+    }
+
+    /**
+     * Get snapshot of cache statistics
+     *
+     * @return cache statistics
+     */
+    public CapCacheStats getStats() {
+        final int entryCount;
+        final long totalWeight;
+        synchronized (entries) {
+            entryCount = entries.size();
+            totalWeight = weight;
+        }
+        return new CapCacheStats(hitCount.sum(), missCount.sum(), coalescedCount.sum(), evictionCount.sum(),
+                entryCount, totalWeight);
+    }
+
+    /**
+     * Drop every cached entry, statistics are kept
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    private Cap get(final byte[] archive, final CapDecodeOptions options) throws CapException {
+        if (options == null) {
+            throw new IllegalArgumentException("options is null");
+        }
+
+        final Key key = new Key(DigestUtils.sha256(archive), options);
+        Cap cap = lookup(key);
+        if (cap != null) {
+            hitCount.increment();
+            return cap;
+        }
+
+        final CompletableFuture<Cap> future = new CompletableFuture<>();
+        final CompletableFuture<Cap> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalescedCount.increment();
+            return await(existing);
+        }
+
+        try {
+            /* a concurrent decode may have completed between lookup and registration */
+            cap = lookup(key);
+            if (cap != null) {
+                hitCount.increment();
+            } else {
+                missCount.increment();
+                cap = delegate.decode(new ByteArrayInputStream(archive), options);
+                store(key, new Entry(cap, weigher.weigh(cap)));
+            }
+            future.complete(cap);
+            return cap;
+        } catch (final CapException | RuntimeException ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private Cap lookup(final Key key) {
+        synchronized (entries) {
+            final Entry entry = entries.get(key);
+            return (entry == null) ? null : entry.cap;
+        }
+    }
+
+    private void store(final Key key, final Entry entry) {
+        if (entry.weight > maxWeight) {
+            return;
+        }
+
+        synchronized (entries) {
+            final Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                weight -= previous.weight;
+            }
+            weight += entry.weight;
+
+            /* evict least recently used entries */
+            final Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+            while ((weight > maxWeight) && iterator.hasNext()) {
+                weight -= iterator.next().getValue().weight;
+                iterator.remove();
+                evictionCount.increment();
+            }
+        }
+    }
+
+    private static Cap await(final CompletableFuture<Cap> future) throws CapException {
+        try {
+            return future.join();
+        } catch (final CompletionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof CapException) {
+                throw (CapException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new CapDecodeException("failed to decode CAP", cause);
+        }
+    }
+
+    private static CompletableFuture<Cap> submit(final Executor executor, final DecodeTask task) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor is null");
+        }
+
+        final CompletableFuture<Cap> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+
+                try {
+                    future.complete(task.decode());
+                } catch (final CapException | RuntimeException ex) {
+                    future.completeExceptionally(ex);
+                }
+            });
+        } catch (final RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    /**
+     * Cache key
+     *
+     * @author Edi Permadi
+     */
+    private static final class Key {
+        private final byte[] digest;
+        private final CapDecodeOptions options;
+        private final int hash;
+
+        Key(final byte[] digest, final CapDecodeOptions options) {
+            this.digest = digest;
+            this.options = options;
+            this.hash = 31 * Arrays.hashCode(digest) + options.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (this == other) {
+                return true;
+            } else if (!(other instanceof Key)) {
+                return false;
+            }
+
+            final Key that = (Key) other;
+            return Arrays.equals(digest, that.digest) && options.equals(that.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Cache entry
+     *
+     * @author Edi Permadi
+     */
+    private static final class Entry {
+        private final Cap cap;
+        private final long weight;
+
+        Entry(final Cap cap, final long weight) {
+            this.cap = cap;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Decode task run by {@link #submit(Executor, DecodeTask)}
+     *
+     * @author Edi Permadi
+     */
+    private interface DecodeTask {
+        Cap decode() throws CapException;
+    }
+}
@@ -0,0 +1,501 @@
+package com.github.edipermadi.smartcard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Javacard CAP class component builder. Virtual method tables of each class are flattened once while building, entries
+ * below table base are copied from super class when it belongs to this package. Interfaces and classes are expected
+ * in ascending offset order, as they appear in class component.
+ *
+ * @author Edi Permadi
+ */
+final class CapClassBuilder {
+    private final List<InterfaceEntry> interfaces = new ArrayList<>();
+    private final List<ClassEntry> classes = new ArrayList<>();
+
+    /**
+     * Add interface
+     *
+     * @param offset          interface offset within class component info item
+     * @param flags           interface flags
+     * @param superInterfaces class references of super interfaces
+     * @return this instance
+     */
+    CapClassBuilder addInterface(final int offset, final int flags, final int[] superInterfaces) {
+        if (superInterfaces == null) {
+            throw new IllegalArgumentException("super interfaces is null");
+        }
+
+        interfaces.add(new InterfaceEntry(offset, flags, superInterfaces));
+        return this;
+    }
+
+    /**
+     * Set name of last added interface
+     *
+     * @param name remote interface name
+     * @return this instance
+     */
+    CapClassBuilder setInterfaceName(final String name) {
+        if (interfaces.isEmpty()) {
+            throw new IllegalStateException("no interface has been added");
+        }
+
+        interfaces.get(interfaces.size() - 1).name = name;
+        return this;
+    }
+
+    /**
+     * Add class
+     *
+     * @param offset               class offset within class component info item
+     * @param flags                class flags
+     * @param superClass           class reference of super class
+     * @param declaredInstanceSize declared instance size
+     * @param firstReferenceToken  first reference token
+     * @param referenceCount       count of reference fields
+     * @return this instance
+     */
+    CapClassBuilder addClass(final int offset, final int flags, final int superClass, final int declaredInstanceSize,
+                             final int firstReferenceToken, final int referenceCount) {
+        classes.add(new ClassEntry(offset, flags, superClass, declaredInstanceSize, firstReferenceToken,
+                referenceCount));
+        return this;
+    }
+
+    /**
+     * Set public virtual method table of last added class
+     *
+     * @param base    token of first method in table
+     * @param methods method offsets
+     * @return this instance
+     */
+    CapClassBuilder setPublicMethodTable(final int base, final int[] methods) {
+        if (methods == null) {
+            throw new IllegalArgumentException("methods is null");
+        }
+
+        final ClassEntry entry = lastClass();
+        entry.publicMethodTableBase = base;
+        entry.publicMethods = methods;
+        return this;
+    }
+
+    /**
+     * Set package virtual method table of last added class
+     *
+     * @param base    token of first method in table
+     * @param methods method offsets
+     * @return this instance
+     */
+    CapClassBuilder setPackageMethodTable(final int base, final int[] methods) {
+        if (methods == null) {
+            throw new IllegalArgumentException("methods is null");
+        }
+
+        final ClassEntry entry = lastClass();
+        entry.packageMethodTableBase = base;
+        entry.packageMethods = methods;
+        return this;
+    }
+
+    /**
+     * Add interface implemented by last added class
+     *
+     * @param classRef class reference of interface
+     * @param tokens   virtual method tokens indexed by interface method token
+     * @return this instance
+     */
+    CapClassBuilder addImplementedInterface(final int classRef, final byte[] tokens) {
+        if (tokens == null) {
+            throw new IllegalArgumentException("tokens is null");
+        }
+
+        lastClass().interfaces.add(new CapImplementedInterfaceInfo(classRef, tokens));
+        return this;
+    }
+
+    /**
+     * Build CAP class component object
+     *
+     * @return CAP class component object
+     */
+    Cap.ClassComponent build() {
+        final int[] classOffsets = new int[classes.size()];
+        for (int i = 0; i < classOffsets.length; i++) {
+            classOffsets[i] = classes.get(i).offset;
+        }
+
+        final CapClassInfo[] resolved = new CapClassInfo[classOffsets.length];
+        final boolean[] resolving = new boolean[classOffsets.length];
+        for (int i = 0; i < classOffsets.length; i++) {
+            resolve(i, classOffsets, resolved, resolving);
+        }
+
+        final CapInterfaceInfo[] interfaceInfos = new CapInterfaceInfo[interfaces.size()];
+        for (int i = 0; i < interfaceInfos.length; i++) {
+            interfaceInfos[i] = new CapInterfaceInfo(interfaces.get(i));
+        }
+        return new CapClassComponent(interfaceInfos, resolved);
+    }
+
+    private ClassEntry lastClass() {
+        if (classes.isEmpty()) {
+            throw new IllegalStateException("no class has been added");
+        }
+        return classes.get(classes.size() - 1);
+    }
+
+    /**
+     * Resolve class after its super class, a super class found while resolving its own subclass belongs to a cyclic
+     * hierarchy and is left unresolved
+     *
+     * @param index        index of class
+     * @param classOffsets offsets of classes in ascending order
+     * @param resolved     resolved classes indexed by class index
+     * @param resolving    classes being resolved indexed by class index
+     * @return resolved class
+     */
+    private CapClassInfo resolve(final int index, final int[] classOffsets, final CapClassInfo[] resolved,
+                                 final boolean[] resolving) {
+        if (resolved[index] != null) {
+            return resolved[index];
+        }
+
+        final ClassEntry entry = classes.get(index);
+        CapClassInfo superClass = null;
+        if ((entry.superClass & 0x8000) == 0) {
+            /* internal class reference, super class belongs to this package */
+            final int superIndex = Arrays.binarySearch(classOffsets, entry.superClass);
+            if ((superIndex >= 0) && !resolving[superIndex]) {
+                resolving[index] = true;
+                superClass = resolve(superIndex, classOffsets, resolved, resolving);
+                resolving[index] = false;
+            }
+        }
+
+        resolved[index] = new CapClassInfo(entry, superClass);
+        return resolved[index];
+    }
+
+    /**
+     * Flatten virtual method table
+     *
+     * @param base      token of first declared method
+     * @param declared  offsets of declared methods
+     * @param inherited flattened table of super class, null when super class is not part of this package
+     * @return flattened virtual method table
+     */
+    private static int[] flatten(final int base, final int[] declared, final int[] inherited) {
+        final int[] table = new int[base + declared.length];
+        for (int token = 0; token < base; token++) {
+            table[token] = ((inherited != null) && (token < inherited.length))
+                    ? inherited[token]
+                    : Cap.ClassComponent.UNRESOLVED;
+        }
+        System.arraycopy(declared, 0, table, base, declared.length);
+        return table;
+    }
+
+    /**
+     * Interface being built
+     *
+     * @author Edi Permadi
+     */
+    private static final class InterfaceEntry {
+        private final int offset;
+        private final int flags;
+        private final int[] superInterfaces;
+        private String name;
+
+        private InterfaceEntry(final int offset, final int flags, final int[] superInterfaces) {
+            this.offset = offset;
+            this.flags = flags;
+            this.superInterfaces = superInterfaces;
+        }
+    }
+
+    /**
+     * Class being built
+     *
+     * @author Edi Permadi
+     */
+    private static final class ClassEntry {
+        private final int offset;
+        private final int flags;
+        private final int superClass;
+        private final int declaredInstanceSize;
+        private final int firstReferenceToken;
+        private final int referenceCount;
+        private final List<Cap.ClassComponent.ImplementedInterfaceInfo> interfaces = new ArrayList<>();
+        private int publicMethodTableBase;
+        private int[] publicMethods = new int[0];
+        private int packageMethodTableBase;
+        private int[] packageMethods = new int[0];
+
+        private ClassEntry(final int offset, final int flags, final int superClass, final int declaredInstanceSize,
+                           final int firstReferenceToken, final int referenceCount) {
+            this.offset = offset;
+            this.flags = flags;
+            this.superClass = superClass;
+            this.declaredInstanceSize = declaredInstanceSize;
+            this.firstReferenceToken = firstReferenceToken;
+            this.referenceCount = referenceCount;
+        }
+    }
+
+    /**
+     * CAP class component object implementation, interfaces and classes are looked up by offset with a binary search
+     *
+     * @author Edi Permadi
+     */
+    static final class CapClassComponent implements Cap.ClassComponent {
+        private final List<InterfaceInfo> interfaces;
+        private final List<ClassInfo> classes;
+        private final int[] interfaceOffsets;
+        private final int[] classOffsets;
+
+        /**
+         * Class constructor
+         *
+         * @param interfaces interfaces in ascending offset order
+         * @param classes    classes in ascending offset order
+         */
+        CapClassComponent(final CapInterfaceInfo[] interfaces, final CapClassInfo[] classes) {
+            this.interfaces = Collections.unmodifiableList(Arrays.<InterfaceInfo>asList(interfaces));
+            this.classes = Collections.unmodifiableList(Arrays.<ClassInfo>asList(classes));
+            this.interfaceOffsets = new int[interfaces.length];
+            for (int i = 0; i < interfaces.length; i++) {
+                interfaceOffsets[i] = interfaces[i].offset;
+            }
+            this.classOffsets = new int[classes.length];
+            for (int i = 0; i < classes.length; i++) {
+                classOffsets[i] = classes[i].offset;
+            }
+        }
+
+        @Override
+        public List<InterfaceInfo> getInterfaces() {
+            return interfaces;
+        }
+
+        @Override
+        public List<ClassInfo> getClasses() {
+            return classes;
+        }
+
+        @Override
+        public InterfaceInfo findInterface(final int offset) {
+            final int index = Arrays.binarySearch(interfaceOffsets, offset);
+            return (index < 0) ? null : interfaces.get(index);
+        }
+
+        @Override
+        public ClassInfo findClass(final int offset) {
+            final int index = Arrays.binarySearch(classOffsets, offset);
+            return (index < 0) ? null : classes.get(index);
+        }
+
+        @Override
+        public String toString() {
+            return CapJsonWriter.toJson(this, true);
+        }
+    }
+
+    /**
+     * CAP interface info object implementation
+     *
+     * @author Edi Permadi
+     */
+    static final class CapInterfaceInfo implements Cap.ClassComponent.InterfaceInfo {
+        private final int offset;
+        private final int flags;
+        private final int[] superInterfaces;
+        private final String name;
+
+        private CapInterfaceInfo(final InterfaceEntry entry) {
+            this.offset = entry.offset;
+            this.flags = entry.flags;
+            this.superInterfaces = entry.superInterfaces;
+            this.name = entry.name;
+        }
+
+        @Override
+        public int getOffset() {
+            return offset;
+        }
+
+        @Override
+        public int getFlags() {
+            return flags;
+        }
+
+        @Override
+        public int getSuperInterfaceCount() {
+            return superInterfaces.length;
+        }
+
+        @Override
+        public int getSuperInterface(final int index) {
+            if ((index < 0) || (index >= superInterfaces.length)) {
+                throw new IndexOutOfBoundsException("invalid super interface index " + index);
+            }
+            return superInterfaces[index];
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * CAP class info object implementation holding flattened virtual method tables
+     *
+     * @author Edi Permadi
+     */
+    static final class CapClassInfo implements Cap.ClassComponent.ClassInfo {
+        private final int offset;
+        private final int flags;
+        private final int superClass;
+        private final int declaredInstanceSize;
+        private final int firstReferenceToken;
+        private final int referenceCount;
+        private final int publicMethodTableBase;
+        private final int[] publicMethods;
+        private final int packageMethodTableBase;
+        private final int[] packageMethods;
+        private final List<Cap.ClassComponent.ImplementedInterfaceInfo> interfaces;
+
+        /**
+         * Class constructor
+         *
+         * @param entry      class being built
+         * @param superClass resolved super class, null when super class is not part of this package
+         */
+        private CapClassInfo(final ClassEntry entry, final CapClassInfo superClass) {
+            this.offset = entry.offset;
+            this.flags = entry.flags;
+            this.superClass = entry.superClass;
+            this.declaredInstanceSize = entry.declaredInstanceSize;
+            this.firstReferenceToken = entry.firstReferenceToken;
+            this.referenceCount = entry.referenceCount;
+            this.publicMethodTableBase = entry.publicMethodTableBase;
+            this.publicMethods = flatten(entry.publicMethodTableBase, entry.publicMethods,
+                    (superClass == null) ? null : superClass.publicMethods);
+            this.packageMethodTableBase = entry.packageMethodTableBase;
+            this.packageMethods = flatten(entry.packageMethodTableBase, entry.packageMethods,
+                    (superClass == null) ? null : superClass.packageMethods);
+            this.interfaces = entry.interfaces.isEmpty()
+                    ? Collections.<Cap.ClassComponent.ImplementedInterfaceInfo>emptyList()
+                    : Collections.unmodifiableList(new ArrayList<>(entry.interfaces));
+        }
+
+        @Override
+        public int getOffset() {
+            return offset;
+        }
+
+        @Override
+        public int getFlags() {
+            return flags;
+        }
+
+        @Override
+        public int getSuperClass() {
+            return superClass;
+        }
+
+        @Override
+        public int getDeclaredInstanceSize() {
+            return declaredInstanceSize;
+        }
+
+        @Override
+        public int getFirstReferenceToken() {
+            return firstReferenceToken;
+        }
+
+        @Override
+        public int getReferenceCount() {
+            return referenceCount;
+        }
+
+        @Override
+        public int getPublicMethodTableBase() {
+            return publicMethodTableBase;
+        }
+
+        @Override
+        public int getPublicMethodTableSize() {
+            return publicMethods.length;
+        }
+
+        @Override
+        public int getPublicMethod(final int token) {
+            if ((token < 0) || (token >= publicMethods.length)) {
+                throw new IndexOutOfBoundsException("invalid public method token " + token);
+            }
+            return publicMethods[token];
+        }
+
+        @Override
+        public int getPackageMethodTableBase() {
+            return packageMethodTableBase;
+        }
+
+        @Override
+        public int getPackageMethodTableSize() {
+            return packageMethods.length;
+        }
+
+        @Override
+        public int getPackageMethod(final int token) {
+            if ((token < 0) || (token >= packageMethods.length)) {
+                throw new IndexOutOfBoundsException("invalid package method token " + token);
+            }
+            return packageMethods[token];
+        }
+
+        @Override
+        public List<Cap.ClassComponent.ImplementedInterfaceInfo> getInterfaces() {
+            return interfaces;
+        }
+    }
+
+    /**
+     * CAP implemented interface info object implementation
+     *
+     * @author Edi Permadi
+     */
+    static final class CapImplementedInterfaceInfo implements Cap.ClassComponent.ImplementedInterfaceInfo {
+        private final int classRef;
+        private final byte[] tokens;
+
+        private CapImplementedInterfaceInfo(final int classRef, final byte[] tokens) {
+            this.classRef = classRef;
+            this.tokens = tokens;
+        }
+
+        @Override
+        public int getInterface() {
+            return classRef;
+        }
+
+        @Override
+        public int getMethodCount() {
+            return tokens.length;
+        }
+
+        @Override
+        public int getMethodToken(final int token) {
+            if ((token < 0) || (token >= tokens.length)) {
+                throw new IndexOutOfBoundsException("invalid interface method token " + token);
+            }
+            return tokens[token] & 0xff;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.edipermadi.smartcard;
+
+/**
+ * CAP component enumeration
+ *
+ * @author Edi Permadi
+ */
+public enum CapComponent {
+    HEADER(CapDecoderImplBase.TAG_COMPONENT_Header, CapDecoderImplBase.COMPONENT_Header),
+    DIRECTORY(CapDecoderImplBase.TAG_COMPONENT_Directory, CapDecoderImplBase.COMPONENT_Directory),
+    APPLET(CapDecoderImplBase.TAG_COMPONENT_Applet, CapDecoderImplBase.COMPONENT_Applet),
+    IMPORT(CapDecoderImplBase.TAG_COMPONENT_Import, CapDecoderImplBase.COMPONENT_Import),
+    CONSTANT_POOL(CapDecoderImplBase.TAG_COMPONENT_ConstantPool, CapDecoderImplBase.COMPONENT_ConstantPool),
+    CLASS(CapDecoderImplBase.TAG_COMPONENT_Class, CapDecoderImplBase.COMPONENT_Class),
+    METHOD(CapDecoderImplBase.TAG_COMPONENT_Method, CapDecoderImplBase.COMPONENT_Method),
+    STATIC_FIELD(CapDecoderImplBase.TAG_COMPONENT_StaticField, CapDecoderImplBase.COMPONENT_StaticField),
+    REFERENCE_LOCATION(CapDecoderImplBase.TAG_COMPONENT_ReferenceLocation,
+            CapDecoderImplBase.COMPONENT_ReferenceLocation),
+    EXPORT(CapDecoderImplBase.TAG_COMPONENT_Export, CapDecoderImplBase.COMPONENT_Export),
+    DESCRIPTOR(CapDecoderImplBase.TAG_COMPONENT_Descriptor, CapDecoderImplBase.COMPONENT_Descriptor),
+    DEBUG(CapDecoderImplBase.TAG_COMPONENT_Debug, CapDecoderImplBase.COMPONENT_Debug);
+
+    private static final CapComponent[] BY_TAG = new CapComponent[CapDecoderImplBase.COMPONENT_COUNT + 1];
+
+    static {
+        for (final CapComponent component : values()) {
+            BY_TAG[component.tag] = component;
+        }
+    }
+
+    private final int tag;
+    private final String fileName;
+
+    /**
+     * Class constructor
+     *
+     * @param tag      component tag
+     * @param fileName component file name
+     */
+    CapComponent(final int tag, final String fileName) {
+        this.tag = tag;
+        this.fileName = fileName;
+    }
+
+    /**
+     * Get component tag
+     *
+     * @return component tag
+     */
+    public int getTag() {
+        return tag;
+    }
+
+    /**
+     * Get component file name within CAP archive
+     *
+     * @return component file name
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Get component by its tag
+     *
+     * @param tag component tag
+     * @return component or null when tag is not a standard component tag
+     */
+    public static CapComponent valueOf(final int tag) {
+        return ((tag > 0) && (tag < BY_TAG.length)) ? BY_TAG[tag] : null;
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.edipermadi.smartcard;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of a single CAP component read and parsed by a decode call, event duration spans from start of
+ * reading component entry up to end of parsing it. Other components may be read in between, hence time spent on this
+ * component is broken down into read, inflate and parse time fields.
+ *
+ * @author Edi Permadi
+ */
+@Name("com.github.edipermadi.smartcard.CapComponent")
+@Label("CAP Component")
+@Category({"Java Card", "CAP"})
+@Description("Reading and parsing of a CAP component")
+final class CapComponentEvent extends Event {
+    @Label("Package AID")
+    String packageAid;
+
+    @Label("Component")
+    String component;
+
+    @Label("Compressed Size")
+    @DataAmount
+    long compressedSize;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    @Label("Read Time")
+    @Description("Time spent reading component entry, including inflate time")
+    @Timespan
+    long readTime;
+
+    @Label("Inflate Time")
+    @Timespan
+    long inflateTime;
+
+    @Label("Parse Time")
+    @Timespan
+    long parseTime;
+
+    /**
+     * Commit component event when flight recorder is recording it, event must have been ended once component has been
+     * read or parsed
+     *
+     * @param packageAid     package AID, null when unknown
+     * @param tag            component tag
+     * @param compressedSize compressed size of component entry, -1 when unknown
+     * @param size           uncompressed size of component entry
+     * @param readTime       read time in nanoseconds
+     * @param inflateTime    inflate time in nanoseconds
+     * @param parseTime      parse time in nanoseconds, zero when component has not been parsed
+     */
+    void emit(final Aid packageAid, final int tag, final long compressedSize, final long size, final long readTime,
+              final long inflateTime, final long parseTime) {
+        if (shouldCommit()) {
+            this.packageAid = (packageAid == null) ? null : packageAid.toString();
+            this.component = CapDecoderImplBase.COMPONENT_NAMES[tag];
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.readTime = readTime;
+            this.inflateTime = inflateTime;
+            this.parseTime = parseTime;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.edipermadi.smartcard;
+
+import java.util.Arrays;
+
+/**
+ * Javacard CAP constant pool component builder. Entries are kept in parallel primitive arrays, tags in a byte array
+ * and info bytes in an int array, no object is kept per entry.
+ *
+ * @author Edi Permadi
+ */
+final class CapConstantPoolBuilder {
+    private byte[] tags = new byte[16];
+    private int[] infos = new int[16];
+    private int count;
+
+    /**
+     * Add constant pool entry
+     *
+     * @param tag  entry tag
+     * @param info three info bytes of entry, packed big-endian into the low 24 bits
+     * @return this instance
+     */
+    CapConstantPoolBuilder addEntry(final int tag, final int info) {
+        if ((tag < Cap.ConstantPool.TAG_CLASSREF) || (tag > Cap.ConstantPool.TAG_STATIC_METHODREF)) {
+            throw new IllegalArgumentException("invalid constant pool entry tag");
+        }
+
+        if (count == tags.length) {
+            tags = Arrays.copyOf(tags, count * 2);
+            infos = Arrays.copyOf(infos, count * 2);
+        }
+        tags[count] = (byte) tag;
+        infos[count] = info & 0xffffff;
+        count++;
+        return this;
+    }
+
+    /**
+     * Build CAP constant pool component object
+     *
+     * @return CAP constant pool component object
+     */
+    Cap.ConstantPool build() {
+        return new CapConstantPool(this);
+    }
+
+    /**
+     * CAP constant pool component object implementation
+     *
+     * @author Edi Permadi
+     */
+    static final class CapConstantPool implements Cap.ConstantPool {
+        private final byte[] tags;
+        private final int[] infos;
+
+        /**
+         * Class constructor
+         *
+         * @param builder CAP constant pool builder
+         */
+        CapConstantPool(final CapConstantPoolBuilder builder) {
+            this.tags = Arrays.copyOf(builder.tags, builder.count);
+            this.infos = Arrays.copyOf(builder.infos, builder.count);
+        }
+
+        @Override
+        public int getCount() {
+            return tags.length;
+        }
+
+        @Override
+        public int getTag(final int index) {
+            checkIndex(index);
+            return tags[index];
+        }
+
+        @Override
+        public int getInfo(final int index) {
+            checkIndex(index);
+            return infos[index];
+        }
+
+        @Override
+        public String toString() {
+            return CapJsonWriter.toJson(this, true);
+        }
+
+        private void checkIndex(final int index) {
+            if ((index < 0) || (index >= tags.length)) {
+                throw new IndexOutOfBoundsException("invalid constant pool index " + index);
+            }
+        }
+    }
+}
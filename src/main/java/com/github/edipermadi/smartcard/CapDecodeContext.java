@@ -0,0 +1,213 @@
+package com.github.edipermadi.smartcard;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.zip.Inflater;
+
+/**
+ * State of a single decode call. Buffers allocated through a pooled context are only valid until the context is
+ * closed.
+ *
+ * @author Edi Permadi
+ */
+final class CapDecodeContext implements AutoCloseable {
+    private final CapDecodeOptions options;
+    private final Future<?> future;
+    private final CapDecoderPool pool;
+    private final CapDecodeListener listener;
+    private final boolean instrumented;
+    private final long startNanos;
+    private boolean completed;
+    private CapScratch scratch;
+
+    /**
+     * Class constructor
+     *
+     * @param options decode options
+     * @param future  future completed by this decode call, null when decoding synchronously
+     * @param pool    decoder pool, null when decoding without pooling
+     */
+    CapDecodeContext(final CapDecodeOptions options, final Future<?> future, final CapDecoderPool pool) {
+        if (options == null) {
+            throw new IllegalArgumentException("options is null");
+        }
+        this.options = options;
+        this.future = future;
+        this.pool = pool;
+        this.listener = options.getListener();
+        this.instrumented = listener != CapDecodeListener.NOOP;
+        this.startNanos = instrumented ? System.nanoTime() : 0L;
+        if (instrumented) {
+            listener.onDecodeStarted();
+        }
+    }
+
+    /**
+     * Get decode options
+     *
+     * @return decode options
+     */
+    CapDecodeOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Check whether buffers are allocated out of a pooled scratch arena
+     *
+     * @return true when decoding is pooled
+     */
+    boolean isPooled() {
+        return pool != null;
+    }
+
+    /**
+     * Abort decoding when its future has been cancelled
+     *
+     * @throws CancellationException when decoding has been cancelled
+     */
+    void checkCancelled() {
+        if ((future != null) && future.isCancelled()) {
+            throw new CancellationException("CAP decoding cancelled");
+        }
+    }
+
+    /**
+     * Start timing a decode phase
+     *
+     * @return current time in nanoseconds, zero when decoding is not instrumented
+     */
+    long startTimer() {
+        return instrumented ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Start timing read of a component entry
+     *
+     * @param tag component tag
+     * @return current time in nanoseconds, zero when decoding is not instrumented
+     */
+    long entryStarted(final int tag) {
+        if (instrumented) {
+            listener.onEntryStarted(tag);
+            return System.nanoTime();
+        }
+        return 0L;
+    }
+
+    /**
+     * Report component entry read
+     *
+     * @param tag            component tag
+     * @param compressedSize compressed size of entry, -1 when unknown
+     * @param size           uncompressed size of entry
+     * @param start          start time obtained from {@link #entryStarted(int)}
+     */
+    void entryRead(final int tag, final long compressedSize, final long size, final long start) {
+        if (instrumented) {
+            listener.onEntryRead(tag, compressedSize, size, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Report component entry inflated
+     *
+     * @param tag            component tag
+     * @param compressedSize compressed size of entry
+     * @param size           uncompressed size of entry
+     * @param start          start time obtained from {@link #startTimer()}
+     */
+    void inflated(final int tag, final long compressedSize, final long size, final long start) {
+        if (instrumented) {
+            listener.onInflate(tag, compressedSize, size, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Report component parsed
+     *
+     * @param tag   component tag
+     * @param size  component payload size
+     * @param start start time obtained from {@link #startTimer()}
+     */
+    void componentParsed(final int tag, final int size, final long start) {
+        if (instrumented) {
+            listener.onComponentParsed(tag, size, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Report decode call completed, elapsed time is measured since this context has been created
+     *
+     * @param cap decoded CAP object, null when decoded by a visitor
+     * @return decoded CAP object
+     */
+    Cap decoded(final Cap cap) {
+        completed = true;
+        if (instrumented) {
+            listener.onDecoded(cap, System.nanoTime() - startNanos);
+        }
+        return cap;
+    }
+
+    /**
+     * Allocate heap buffer
+     *
+     * @param size buffer size
+     * @return heap buffer, its position is zero
+     */
+    ByteBuffer allocate(final int size) {
+        return (pool == null) ? ByteBuffer.allocate(size) : getScratch().allocate(size);
+    }
+
+    /**
+     * Get scratch arena of this decode call. Without pooling the arena is private to this call and its regions stay
+     * valid after the context is closed.
+     *
+     * @return scratch arena
+     */
+    CapScratch getScratch() {
+        if (scratch == null) {
+            if (pool != null) {
+                scratch = pool.acquireScratch();
+            } else {
+                scratch = new CapScratch(Integer.MAX_VALUE);
+                scratch.lease();
+            }
+        }
+        return scratch;
+    }
+
+    /**
+     * Acquire raw deflate inflater
+     *
+     * @return inflater
+     */
+    Inflater acquireInflater() {
+        return (pool == null) ? new Inflater(true) : pool.acquireInflater();
+    }
+
+    /**
+     * Release inflater obtained from {@link #acquireInflater()}
+     *
+     * @param inflater inflater
+     */
+    void releaseInflater(final Inflater inflater) {
+        if (pool == null) {
+            inflater.end();
+        } else {
+            pool.releaseInflater(inflater);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (instrumented && !completed) {
+            listener.onDecodeAborted(System.nanoTime() - startNanos);
+        }
+        if ((scratch != null) && (pool != null)) {
+            scratch.release();
+            scratch = null;
+        }
+    }
+}
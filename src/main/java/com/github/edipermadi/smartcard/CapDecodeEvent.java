@@ -0,0 +1,58 @@
+package com.github.edipermadi.smartcard;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a CAP decode call, event duration spans the whole decode call.
+ *
+ * @author Edi Permadi
+ */
+@Name("com.github.edipermadi.smartcard.CapDecode")
+@Label("CAP Decode")
+@Category({"Java Card", "CAP"})
+@Description("Decoding of a CAP file")
+final class CapDecodeEvent extends Event {
+    @Label("Package AID")
+    String packageAid;
+
+    @Label("Succeeded")
+    boolean succeeded;
+
+    @Label("Component Count")
+    int componentCount;
+
+    @Label("Compressed Size")
+    @DataAmount
+    long compressedSize;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    /**
+     * End decode event and commit it when flight recorder is recording it
+     *
+     * @param packageAid     package AID, null when unknown
+     * @param succeeded      whether decoding succeeded
+     * @param componentCount count of read components
+     * @param compressedSize total compressed size of read components
+     * @param size           total uncompressed size of read components
+     */
+    void emit(final Aid packageAid, final boolean succeeded, final int componentCount, final long compressedSize,
+              final long size) {
+        end();
+        if (shouldCommit()) {
+            this.packageAid = (packageAid == null) ? null : packageAid.toString();
+            this.succeeded = succeeded;
+            this.componentCount = componentCount;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.edipermadi.smartcard;
+
+/**
+ * Decode instrumentation listener. Decoders invoke these callbacks on the decoding thread around each decode phase,
+ * carrying elapsed time in nanoseconds. Every callback does nothing by default, hence subclasses only override
+ * callbacks they are interested in. Callbacks must be thread-safe when listener is shared between concurrent decode
+ * calls, and must not throw. Decoding with {@link #NOOP} listener reads no clock at all.
+ *
+ * @author Edi Permadi
+ */
+public abstract class CapDecodeListener {
+    /**
+     * Listener ignoring every callback, used by default
+     */
+    public static final CapDecodeListener NOOP = new CapDecodeListener() {
+    };
+
+    /**
+     * Invoked once a decode call has started, before anything is read
+     */
+    public void onDecodeStarted() {
+    }
+
+    /**
+     * Invoked right before a component entry is read out of archive
+     *
+     * @param tag component tag
+     */
+    public void onEntryStarted(final int tag) {
+    }
+
+    /**
+     * Invoked once a component entry has been read out of archive, elapsed time includes inflating
+     *
+     * @param tag            component tag
+     * @param compressedSize compressed size of entry, -1 when unknown
+     * @param size           uncompressed size of entry
+     * @param elapsedNanos   elapsed time in nanoseconds
+     */
+    public void onEntryRead(final int tag, final long compressedSize, final long size, final long elapsedNanos) {
+    }
+
+    /**
+     * Invoked once a deflated component entry has been inflated. Decoders scanning archive stream sequentially
+     * inflate while reading and report {@link #onEntryRead(int, long, long, long)} only.
+     *
+     * @param tag            component tag
+     * @param compressedSize compressed size of entry
+     * @param size           uncompressed size of entry
+     * @param elapsedNanos   elapsed time in nanoseconds
+     */
+    public void onInflate(final int tag, final long compressedSize, final long size, final long elapsedNanos) {
+    }
+
+    /**
+     * Invoked once a component has been parsed
+     *
+     * @param tag          component tag
+     * @param size         component payload size, including tag and size fields
+     * @param elapsedNanos elapsed time in nanoseconds
+     */
+    public void onComponentParsed(final int tag, final int size, final long elapsedNanos) {
+    }
+
+    /**
+     * Invoked once a decode call has completed successfully
+     *
+     * @param cap          decoded CAP object, null when CAP file has been decoded by a visitor
+     * @param elapsedNanos elapsed time of whole decode call in nanoseconds
+     */
+    public void onDecoded(final Cap cap, final long elapsedNanos) {
+    }
+
+    /**
+     * Invoked once a decode call has failed or has been cancelled
+     *
+     * @param elapsedNanos elapsed time of whole decode call in nanoseconds
+     */
+    public void onDecodeAborted(final long elapsedNanos) {
+    }
+}
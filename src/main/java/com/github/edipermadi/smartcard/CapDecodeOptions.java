@@ -0,0 +1,125 @@
+package com.github.edipermadi.smartcard;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * CAP decode options
+ *
+ * @author Edi Permadi
+ */
+public final class CapDecodeOptions {
+    /**
+     * Default options, decodes header, directory and applet component where applet component is optional
+     */
+    public static final CapDecodeOptions DEFAULT = new CapDecodeOptionsBuilder().build();
+
+    private final Set<CapComponent> components;
+    private final Set<CapComponent> optionalComponents;
+    private final int componentMask;
+    private final int optionalMask;
+    private final AidPool aidPool;
+    private final CapDecodeListener listener;
+
+    /**
+     * Class constructor
+     *
+     * @param components         components to decode
+     * @param optionalComponents components which may be missing
+     * @param aidPool            AID intern pool, null when AIDs are not interned
+     * @param listener           decode instrumentation listener
+     */
+    CapDecodeOptions(final EnumSet<CapComponent> components, final EnumSet<CapComponent> optionalComponents,
+                     final AidPool aidPool, final CapDecodeListener listener) {
+        this.components = Collections.unmodifiableSet(EnumSet.copyOf(components));
+        this.optionalComponents = Collections.unmodifiableSet(EnumSet.copyOf(optionalComponents));
+        this.componentMask = mask(components);
+        this.optionalMask = mask(optionalComponents);
+        this.aidPool = aidPool;
+        this.listener = listener;
+    }
+
+    /**
+     * Get components to decode
+     *
+     * @return components to decode
+     */
+    public Set<CapComponent> getComponents() {
+        return components;
+    }
+
+    /**
+     * Get components which may be missing
+     *
+     * @return optional components
+     */
+    public Set<CapComponent> getOptionalComponents() {
+        return optionalComponents;
+    }
+
+    /**
+     * Get AID intern pool
+     *
+     * @return AID intern pool, null when AIDs are not interned
+     */
+    public AidPool getAidPool() {
+        return aidPool;
+    }
+
+    /**
+     * Get decode instrumentation listener. Listener does not affect decoded CAP objects, hence it takes no part in
+     * equality of options.
+     *
+     * @return decode listener, {@link CapDecodeListener#NOOP} by default
+     */
+    public CapDecodeListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Check whether component is decoded
+     *
+     * @param tag component tag
+     * @return true when component is decoded
+     */
+    boolean isDecoded(final int tag) {
+        return (tag > 0) && ((componentMask & (1 << tag)) != 0);
+    }
+
+    /**
+     * Check whether component may be missing
+     *
+     * @param tag component tag
+     * @return true when component is optional
+     */
+    boolean isOptional(final int tag) {
+        return (tag > 0) && ((optionalMask & (1 << tag)) != 0);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other) {
+            return true;
+        } else if (!(other instanceof CapDecodeOptions)) {
+            return false;
+        }
+
+        final CapDecodeOptions that = (CapDecodeOptions) other;
+        return (componentMask == that.componentMask) && (optionalMask == that.optionalMask)
+                && (aidPool == that.aidPool);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * componentMask + optionalMask) + System.identityHashCode(aidPool);
+    }
+
+    private static int mask(final Set<CapComponent> components) {
+        int mask = 0;
+        for (final CapComponent component : components) {
+            mask |= 1 << component.getTag();
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.edipermadi.smartcard;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+/**
+ * CAP decode options builder class
+ *
+ * @author Edi Permadi
+ */
+public final class CapDecodeOptionsBuilder {
+    private final EnumSet<CapComponent> components =
+            EnumSet.of(CapComponent.HEADER, CapComponent.DIRECTORY, CapComponent.APPLET);
+    private final EnumSet<CapComponent> optionalComponents = EnumSet.complementOf(
+            EnumSet.of(CapComponent.HEADER, CapComponent.DIRECTORY));
+    private AidPool aidPool;
+    private CapDecodeListener listener = CapDecodeListener.NOOP;
+
+    /**
+     * Set components to decode, other components are skipped without being inflated. Components added by future
+     * decoders are never decoded unless listed here.
+     *
+     * @param components components to decode
+     * @return this instance
+     */
+    public CapDecodeOptionsBuilder setComponents(final CapComponent... components) {
+        if (components == null) {
+            throw new IllegalArgumentException("components is null");
+        }
+        this.components.clear();
+        this.components.addAll(Arrays.asList(components));
+        return this;
+    }
+
+    /**
+     * Set components which may be missing from CAP file, absence of any other decoded component fails decoding
+     *
+     * @param components optional components
+     * @return this instance
+     */
+    public CapDecodeOptionsBuilder setOptionalComponents(final CapComponent... components) {
+        if (components == null) {
+            throw new IllegalArgumentException("components is null");
+        }
+        this.optionalComponents.clear();
+        this.optionalComponents.addAll(Arrays.asList(components));
+        return this;
+    }
+
+    /**
+     * Set AID intern pool, decoded AIDs are interned into pool and shared with every CAP object decoded with the same
+     * pool
+     *
+     * @param aidPool AID intern pool, null to disable interning
+     * @return this instance
+     */
+    public CapDecodeOptionsBuilder setAidPool(final AidPool aidPool) {
+        this.aidPool = aidPool;
+        return this;
+    }
+
+    /**
+     * Set decode instrumentation listener
+     *
+     * @param listener decode listener, {@link CapDecodeListener#NOOP} to disable instrumentation
+     * @return this instance
+     */
+    public CapDecodeOptionsBuilder setListener(final CapDecodeListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener is null");
+        }
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Build instance of {@link CapDecodeOptions}
+     *
+     * @return instance of {@link CapDecodeOptions}
+     */
+    public CapDecodeOptions build() {
+        if (components.isEmpty()) {
+            throw new IllegalStateException("at least one component must be decoded");
+        }
+
+        return new CapDecodeOptions(components, optionalComponents, aidPool, listener);
+    }
+}
@@ -3,7 +3,148 @@ package com.github.edipermadi.smartcard;
 import com.github.edipermadi.smartcard.exc.CapException;
 
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
+/**
+ * CAP decoder interface
+ *
+ * @author Edi Permadi
+ */
 public interface CapDecoder {
+    /**
+     * Decode CAP file by scanning archive stream sequentially
+     *
+     * @param stream CAP archive stream
+     * @return CAP object
+     * @throws CapException when decoding failed
+     */
     Cap decode(InputStream stream) throws CapException;
+
+    /**
+     * Decode CAP file using archive central directory, only consumed components are read and inflated
+     *
+     * @param path path to CAP file
+     * @return CAP object
+     * @throws CapException when decoding failed
+     */
+    Cap decode(Path path) throws CapException;
+
+    /**
+     * Decode CAP file using archive central directory, only consumed components are read and inflated.
+     * The channel is read using absolute reads and is not closed.
+     *
+     * @param channel CAP file channel
+     * @return CAP object
+     * @throws CapException when decoding failed
+     */
+    Cap decode(FileChannel channel) throws CapException;
+
+    /**
+     * Decode selected components of CAP file by scanning archive stream sequentially
+     *
+     * @param stream  CAP archive stream
+     * @param options decode options
+     * @return CAP object, components which are not decoded are null
+     * @throws CapException when decoding failed
+     */
+    Cap decode(InputStream stream, CapDecodeOptions options) throws CapException;
+
+    /**
+     * Decode selected components of CAP file using archive central directory
+     *
+     * @param path    path to CAP file
+     * @param options decode options
+     * @return CAP object, components which are not decoded are null
+     * @throws CapException when decoding failed
+     */
+    Cap decode(Path path, CapDecodeOptions options) throws CapException;
+
+    /**
+     * Decode selected components of CAP file using archive central directory. The channel is not closed.
+     *
+     * @param channel CAP file channel
+     * @param options decode options
+     * @return CAP object, components which are not decoded are null
+     * @throws CapException when decoding failed
+     */
+    Cap decode(FileChannel channel, CapDecodeOptions options) throws CapException;
+
+    /**
+     * Drive CAP visitor over selected components of CAP file by scanning archive stream sequentially, no CAP object
+     * is built
+     *
+     * @param stream  CAP archive stream
+     * @param options decode options
+     * @param visitor CAP visitor
+     * @throws CapException when decoding failed
+     */
+    void accept(InputStream stream, CapDecodeOptions options, CapVisitor visitor) throws CapException;
+
+    /**
+     * Drive CAP visitor over selected components of CAP file using archive central directory, no CAP object is built
+     *
+     * @param path    path to CAP file
+     * @param options decode options
+     * @param visitor CAP visitor
+     * @throws CapException when decoding failed
+     */
+    void accept(Path path, CapDecodeOptions options, CapVisitor visitor) throws CapException;
+
+    /**
+     * Drive CAP visitor over selected components of CAP file using archive central directory, no CAP object is
+     * built. The channel is not closed.
+     *
+     * @param channel CAP file channel
+     * @param options decode options
+     * @param visitor CAP visitor
+     * @throws CapException when decoding failed
+     */
+    void accept(FileChannel channel, CapDecodeOptions options, CapVisitor visitor) throws CapException;
+
+    /**
+     * Decode CAP file asynchronously by scanning archive stream sequentially. Cancelling returned future stops
+     * decoding at next archive entry or component.
+     *
+     * @param stream   CAP archive stream
+     * @param options  decode options
+     * @param executor executor running decode task
+     * @return future of CAP object, completed exceptionally with {@link CapException} when decoding failed
+     */
+    CompletableFuture<Cap> decodeAsync(InputStream stream, CapDecodeOptions options, Executor executor);
+
+    /**
+     * Decode CAP file asynchronously using archive central directory. Cancelling returned future stops decoding at
+     * next archive entry or component.
+     *
+     * @param path     path to CAP file
+     * @param options  decode options
+     * @param executor executor running decode task
+     * @return future of CAP object, completed exceptionally with {@link CapException} when decoding failed
+     */
+    CompletableFuture<Cap> decodeAsync(Path path, CapDecodeOptions options, Executor executor);
+
+    /**
+     * Decode CAP file asynchronously by scanning archive stream sequentially, using default decode options
+     *
+     * @param stream   CAP archive stream
+     * @param executor executor running decode task
+     * @return future of CAP object
+     */
+    default CompletableFuture<Cap> decodeAsync(InputStream stream, Executor executor) {
+        return decodeAsync(stream, CapDecodeOptions.DEFAULT, executor);
+    }
+
+    /**
+     * Decode CAP file asynchronously using archive central directory, using default decode options
+     *
+     * @param path     path to CAP file
+     * @param executor executor running decode task
+     * @return future of CAP object
+     */
+    default CompletableFuture<Cap> decodeAsync(Path path, Executor executor) {
+        return decodeAsync(path, CapDecodeOptions.DEFAULT, executor);
+    }
 }
@@ -1,16 +1,18 @@
 package com.github.edipermadi.smartcard;
 
 import com.github.edipermadi.smartcard.exc.*;
-import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang3.ArrayUtils;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Paths;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -20,13 +22,167 @@ import java.util.zip.ZipInputStream;
  * @author Edi Permadi
  */
 public class CapDecoderImpl extends CapDecoderImplBase implements CapDecoder {
+    private final CapDecoderPool pool;
+
+    /**
+     * Class constructor, decoder allocates fresh buffers and inflaters for every decode call
+     */
+    public CapDecoderImpl() {
+        this.pool = null;
+    }
+
+    /**
+     * Class constructor of pooled decoder. Archive entries are read and inflated into scratch buffers and inflaters
+     * taken from pool, they are returned to pool once decode call completes.
+     *
+     * @param pool decoder pool
+     */
+    public CapDecoderImpl(final CapDecoderPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("pool is null");
+        }
+        this.pool = pool;
+    }
 
     @Override
     public Cap decode(final InputStream stream) throws CapException {
+        return decode(stream, CapDecodeOptions.DEFAULT);
+    }
+
+    @Override
+    public Cap decode(final Path path) throws CapException {
+        return decode(path, CapDecodeOptions.DEFAULT);
+    }
+
+    @Override
+    public Cap decode(final FileChannel channel) throws CapException {
+        return decode(channel, CapDecodeOptions.DEFAULT);
+    }
+
+    @Override
+    public Cap decode(final InputStream stream, final CapDecodeOptions options) throws CapException {
+        try (final CapDecodeContext context = new CapDecodeContext(options, null, pool)) {
+            return context.decoded(assemble(read(stream, context), context));
+        }
+    }
+
+    @Override
+    public Cap decode(final Path path, final CapDecodeOptions options) throws CapException {
+        try (final CapDecodeContext context = new CapDecodeContext(options, null, pool)) {
+            return context.decoded(assemble(read(path, context), context));
+        }
+    }
+
+    @Override
+    public Cap decode(final FileChannel channel, final CapDecodeOptions options) throws CapException {
+        try (final CapDecodeContext context = new CapDecodeContext(options, null, pool)) {
+            return context.decoded(assemble(read(channel, context), context));
+        }
+    }
+
+    @Override
+    public void accept(final InputStream stream, final CapDecodeOptions options, final CapVisitor visitor)
+            throws CapException {
+        try (final CapDecodeContext context = new CapDecodeContext(options, null, pool)) {
+            visit(read(stream, context), context, visitor);
+            context.decoded(null);
+        }
+    }
+
+    @Override
+    public void accept(final Path path, final CapDecodeOptions options, final CapVisitor visitor)
+            throws CapException {
+        try (final CapDecodeContext context = new CapDecodeContext(options, null, pool)) {
+            visit(read(path, context), context, visitor);
+            context.decoded(null);
+        }
+    }
+
+    @Override
+    public void accept(final FileChannel channel, final CapDecodeOptions options, final CapVisitor visitor)
+            throws CapException {
+        try (final CapDecodeContext context = new CapDecodeContext(options, null, pool)) {
+            visit(read(channel, context), context, visitor);
+            context.decoded(null);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Cap> decodeAsync(final InputStream stream, final CapDecodeOptions options,
+                                              final Executor executor) {
+        return submit(executor, options, context -> assemble(read(stream, context), context));
+    }
+
+    @Override
+    public CompletableFuture<Cap> decodeAsync(final Path path, final CapDecodeOptions options,
+                                              final Executor executor) {
+        return submit(executor, options, context -> assemble(read(path, context), context));
+    }
+
+    /**
+     * Run decode task on executor. Cancelling returned future stops decoding at next archive entry or component.
+     *
+     * @param executor executor running decode task
+     * @param options  decode options
+     * @param task     decode task
+     * @return future of CAP object
+     */
+    private CompletableFuture<Cap> submit(final Executor executor, final CapDecodeOptions options,
+                                          final DecodeTask task) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor is null");
+        } else if (options == null) {
+            throw new IllegalArgumentException("options is null");
+        }
+
+        final CompletableFuture<Cap> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+
+                /* context is created once task runs, hence queueing delay is not reported as decode time */
+                try (final CapDecodeContext context = new CapDecodeContext(options, future, pool)) {
+                    future.complete(context.decoded(task.decode(context)));
+                } catch (final CancellationException ex) {
+                    /* future has been cancelled already */
+                } catch (final CapException | RuntimeException ex) {
+                    future.completeExceptionally(ex);
+                }
+            });
+        } catch (final RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    /**
+     * Read payloads of consumed components by scanning archive stream sequentially. A pooled decoder reads whole
+     * archive into scratch arena instead and then uses its central directory.
+     *
+     * @param stream  CAP archive stream, it is closed once read
+     * @param context decode context
+     * @return component payloads indexed by component tag, missing component has null payload
+     * @throws CapException when reading failed
+     */
+    ByteBuffer[] read(final InputStream stream, final CapDecodeContext context) throws CapException {
+        if (context.isPooled()) {
+            try {
+                return read(CapZipFile.open(context.getScratch().readFully(stream), context), context);
+            } catch (final IOException ex) {
+                throw new CapFormatException("unrecognized CAP format", ex);
+            } finally {
+                IOUtils.closeQuietly(stream);
+            }
+        }
+
+        final CapDecodeOptions options = context.getOptions();
         final ZipInputStream zis = new ZipInputStream(stream);
         try {
-            final CapBuilder builder = new CapBuilder();
+            final ByteBuffer[] payloads = new ByteBuffer[COMPONENT_COUNT + 1];
             while (true) {
+                context.checkCancelled();
                 final ZipEntry ze = zis.getNextEntry();
                 if (ze == null) {
                     break;
@@ -34,34 +190,17 @@ public class CapDecoderImpl extends CapDecoderImplBase implements CapDecoder {
                     continue;
                 }
 
-                final String path = ze.getName();
-                final String name = Paths.get(path).toFile().getName();
-                final byte[] payload = IOUtils.toByteArray(zis);
-                zis.closeEntry();
-
-                switch (name) {
-                    case COMPONENT_Header:
-                        builder.setHeader(decodeCapHeader(payload));
-                        break;
-                    case COMPONENT_Directory:
-                        builder.setDirectory(decodeCapDirectory(payload));
-                        break;
-                    case COMPONENT_Applet:
-                        builder.setApplet(decodeCapApplet(payload));
-                        break;
-                    case COMPONENT_Import:
-                    case COMPONENT_ConstantPool:
-                    case COMPONENT_Class:
-                    case COMPONENT_Method:
-                    case COMPONENT_StaticField:
-                    case COMPONENT_ReferenceLocation:
-                    case COMPONENT_Export:
-                    case COMPONENT_Descriptor:
-                    case COMPONENT_Debug:
+                final int tag = getComponentTag(getComponentName(ze.getName()));
+                if (isConsumed(tag, options)) {
+                    final long start = context.entryStarted(tag);
+                    payloads[tag] = readEntry(zis, ze, context);
+                    context.entryRead(tag, ze.getCompressedSize(), payloads[tag].limit(), start);
                 }
+                zis.closeEntry();
             }
 
-            return builder.build();
+            checkMissingComponents(payloads, options);
+            return payloads;
         } catch (final IOException ex) {
             throw new CapFormatException("unrecogzied CAP format", ex);
         } finally {
@@ -70,7 +209,350 @@ public class CapDecoderImpl extends CapDecoderImplBase implements CapDecoder {
     }
 
     /**
-     * Decode CAP header. The following is the structure of CAP header
+     * Read content of current archive stream entry. Content is read straight into a buffer of exact size when entry
+     * size is known, otherwise it is read into growable scratch arena of decode context.
+     *
+     * @param zis     archive stream positioned at entry content
+     * @param ze      archive entry
+     * @param context decode context
+     * @return entry content, its position is zero
+     * @throws IOException        when reading failed
+     * @throws CapFormatException when entry is too large for a component or its content does not match entry size
+     */
+    static ByteBuffer readEntry(final ZipInputStream zis, final ZipEntry ze, final CapDecodeContext context)
+            throws IOException, CapFormatException {
+        final long size = ze.getSize();
+        if (size < 0) {
+            return context.getScratch().readFully(zis);
+        } else if (size > MAX_COMPONENT_SIZE) {
+            throw new CapFormatException("CAP archive entry " + ze.getName() + " is too large");
+        }
+
+        final ByteBuffer result = context.allocate((int) size);
+        final int count = IOUtils.read(zis, result.array(), result.arrayOffset(), result.remaining());
+        if ((count != size) || (zis.read() >= 0)) {
+            throw new CapFormatException("CAP archive entry " + ze.getName() + " does not match its size");
+        }
+        return result;
+    }
+
+    /**
+     * Read payloads of consumed components of CAP file using archive central directory
+     *
+     * @param path    path to CAP file
+     * @param context decode context
+     * @return component payloads indexed by component tag, missing component has null payload
+     * @throws CapException when reading failed
+     */
+    ByteBuffer[] read(final Path path, final CapDecodeContext context) throws CapException {
+        if (path == null) {
+            throw new IllegalArgumentException("path is null");
+        }
+
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel, context);
+        } catch (final IOException ex) {
+            throw new CapFormatException("failed to read CAP file " + path, ex);
+        }
+    }
+
+    /**
+     * Read payloads of consumed components of CAP file using archive central directory
+     *
+     * @param channel CAP file channel
+     * @param context decode context
+     * @return component payloads indexed by component tag, missing component has null payload
+     * @throws CapException when reading failed
+     */
+    ByteBuffer[] read(final FileChannel channel, final CapDecodeContext context) throws CapException {
+        try {
+            return read(CapZipFile.open(channel, context), context);
+        } catch (final IOException ex) {
+            throw new CapFormatException("unrecognized CAP format", ex);
+        }
+    }
+
+    /**
+     * Read payloads of consumed components out of opened CAP archive
+     *
+     * @param zipFile CAP archive
+     * @param context decode context
+     * @return component payloads indexed by component tag, missing component has null payload
+     * @throws IOException  when reading failed
+     * @throws CapException when archive is malformed
+     */
+    private static ByteBuffer[] read(final CapZipFile zipFile, final CapDecodeContext context)
+            throws IOException, CapException {
+        final CapDecodeOptions options = context.getOptions();
+        final ByteBuffer[] payloads = new ByteBuffer[COMPONENT_COUNT + 1];
+        for (final CapZipFile.Entry entry : zipFile.getEntries()) {
+            context.checkCancelled();
+            final int tag = entry.getTag();
+            if (!entry.isDirectory() && isConsumed(tag, options)) {
+                final long start = context.entryStarted(tag);
+                payloads[tag] = zipFile.read(entry);
+                context.entryRead(tag, entry.getCompressedSize(), entry.getSize(), start);
+            }
+        }
+
+        checkMissingComponents(payloads, options);
+        return payloads;
+    }
+
+    /**
+     * Assemble CAP object out of component payloads. This implementation decodes every component eagerly.
+     *
+     * @param payloads component payloads indexed by component tag, missing component has null payload
+     * @param context  decode context
+     * @return CAP object
+     * @throws CapException when decoding failed
+     */
+    Cap assemble(final ByteBuffer[] payloads, final CapDecodeContext context) throws CapException {
+        final AidPool aidPool = context.getOptions().getAidPool();
+        final CapBuilder builder = new CapBuilder();
+        if (payloads[TAG_COMPONENT_Header] != null) {
+            context.checkCancelled();
+            final long start = context.startTimer();
+            builder.setHeader(decodeCapHeader(payloads[TAG_COMPONENT_Header], aidPool));
+            context.componentParsed(TAG_COMPONENT_Header, payloads[TAG_COMPONENT_Header].limit(), start);
+        }
+        if (payloads[TAG_COMPONENT_Directory] != null) {
+            context.checkCancelled();
+            final long start = context.startTimer();
+            builder.setDirectory(decodeCapDirectory(payloads[TAG_COMPONENT_Directory], aidPool));
+            context.componentParsed(TAG_COMPONENT_Directory, payloads[TAG_COMPONENT_Directory].limit(), start);
+        }
+        if (payloads[TAG_COMPONENT_Applet] != null) {
+            context.checkCancelled();
+            final long start = context.startTimer();
+            builder.setApplet(decodeCapApplet(payloads[TAG_COMPONENT_Applet], aidPool));
+            context.componentParsed(TAG_COMPONENT_Applet, payloads[TAG_COMPONENT_Applet].limit(), start);
+        }
+        if (payloads[TAG_COMPONENT_Import] != null) {
+            context.checkCancelled();
+            final long start = context.startTimer();
+            builder.setImport(decodeCapImport(payloads[TAG_COMPONENT_Import], aidPool));
+            context.componentParsed(TAG_COMPONENT_Import, payloads[TAG_COMPONENT_Import].limit(), start);
+        }
+        if (payloads[TAG_COMPONENT_ConstantPool] != null) {
+            context.checkCancelled();
+            final long start = context.startTimer();
+            builder.setConstantPool(decodeCapConstantPool(payloads[TAG_COMPONENT_ConstantPool]));
+            context.componentParsed(TAG_COMPONENT_ConstantPool, payloads[TAG_COMPONENT_ConstantPool].limit(), start);
+        }
+        if (payloads[TAG_COMPONENT_Class] != null) {
+            context.checkCancelled();
+            final long start = context.startTimer();
+            builder.setClassComponent(decodeCapClass(payloads[TAG_COMPONENT_Class],
+                    getCapVersion(payloads[TAG_COMPONENT_Header])));
+            context.componentParsed(TAG_COMPONENT_Class, payloads[TAG_COMPONENT_Class].limit(), start);
+        }
+        if (payloads[TAG_COMPONENT_Method] != null) {
+            context.checkCancelled();
+            final long start = context.startTimer();
+            builder.setMethodComponent(decodeCapMethod(retain(payloads[TAG_COMPONENT_Method], context),
+                    CapMethodOffsetCollector.collect(payloads)));
+            context.componentParsed(TAG_COMPONENT_Method, payloads[TAG_COMPONENT_Method].limit(), start);
+        }
+
+        return new CapBuilder.CapImpl(builder);
+    }
+
+    /**
+     * Get payload a decoded component may retain, scratch buffers of pooled decode call are reused once it completes
+     *
+     * @param payload component payload
+     * @param context decode context
+     * @return payload itself, or a copy of it when decoding is pooled
+     */
+    private static ByteBuffer retain(final ByteBuffer payload, final CapDecodeContext context) {
+        if (!context.isPooled()) {
+            return payload;
+        }
+
+        final byte[] copy = new byte[payload.remaining()];
+        payload.duplicate().get(copy);
+        return ByteBuffer.wrap(copy);
+    }
+
+    /**
+     * Drive CAP visitor over component payloads in component tag order
+     *
+     * @param payloads component payloads indexed by component tag, missing component has null payload
+     * @param context  decode context
+     * @param visitor  CAP visitor
+     * @throws CapException when decoding failed
+     */
+    void visit(final ByteBuffer[] payloads, final CapDecodeContext context, final CapVisitor visitor)
+            throws CapException {
+        if (visitor == null) {
+            throw new IllegalArgumentException("visitor is null");
+        }
+
+        if (payloads[TAG_COMPONENT_Header] != null) {
+            context.checkCancelled();
+            final long start = context.startTimer();
+            parseCapHeader(payloads[TAG_COMPONENT_Header], visitor);
+            context.componentParsed(TAG_COMPONENT_Header, payloads[TAG_COMPONENT_Header].limit(), start);
+        }
+        if (payloads[TAG_COMPONENT_Directory] != null) {
+            context.checkCancelled();
+            final long start = context.startTimer();
+            parseCapDirectory(payloads[TAG_COMPONENT_Directory], visitor);
+            context.componentParsed(TAG_COMPONENT_Directory, payloads[TAG_COMPONENT_Directory].limit(), start);
+        }
+        if (payloads[TAG_COMPONENT_Applet] != null) {
+            context.checkCancelled();
+            final long start = context.startTimer();
+            parseCapApplet(payloads[TAG_COMPONENT_Applet], visitor);
+            context.componentParsed(TAG_COMPONENT_Applet, payloads[TAG_COMPONENT_Applet].limit(), start);
+        }
+        if (payloads[TAG_COMPONENT_Import] != null) {
+            context.checkCancelled();
+            final long start = context.startTimer();
+            parseCapImport(payloads[TAG_COMPONENT_Import], visitor);
+            context.componentParsed(TAG_COMPONENT_Import, payloads[TAG_COMPONENT_Import].limit(), start);
+        }
+        if (payloads[TAG_COMPONENT_ConstantPool] != null) {
+            context.checkCancelled();
+            final long start = context.startTimer();
+            parseCapConstantPool(payloads[TAG_COMPONENT_ConstantPool], visitor);
+            context.componentParsed(TAG_COMPONENT_ConstantPool, payloads[TAG_COMPONENT_ConstantPool].limit(), start);
+        }
+        if (payloads[TAG_COMPONENT_Class] != null) {
+            context.checkCancelled();
+            final long start = context.startTimer();
+            parseCapClass(payloads[TAG_COMPONENT_Class], getCapVersion(payloads[TAG_COMPONENT_Header]), visitor);
+            context.componentParsed(TAG_COMPONENT_Class, payloads[TAG_COMPONENT_Class].limit(), start);
+        }
+        if (payloads[TAG_COMPONENT_Method] != null) {
+            context.checkCancelled();
+            final long start = context.startTimer();
+            parseCapMethod(payloads[TAG_COMPONENT_Method], CapMethodOffsetCollector.collect(payloads), visitor);
+            context.componentParsed(TAG_COMPONENT_Method, payloads[TAG_COMPONENT_Method].limit(), start);
+        }
+        visitor.visitEnd();
+    }
+
+    /**
+     * Decode CAP header
+     *
+     * @param payload CAP header payload
+     * @param aidPool AID intern pool, null when AIDs are not interned
+     * @return CAP Header object
+     * @throws CapDecodeException when CAP Header decoding failed
+     */
+    static Cap.Header decodeCapHeader(final ByteBuffer payload, final AidPool aidPool) throws CapDecodeException {
+        final CapBuilderVisitor visitor = new CapBuilderVisitor(aidPool);
+        parseCapHeader(payload, visitor);
+        return visitor.buildHeader();
+    }
+
+    /**
+     * Decode CAP directory component
+     *
+     * @param payload CAP directory component payload
+     * @param aidPool AID intern pool, null when AIDs are not interned
+     * @return CAP directory component
+     * @throws CapDecodeException when decoding failed
+     */
+    static Cap.Directory decodeCapDirectory(final ByteBuffer payload, final AidPool aidPool)
+            throws CapDecodeException {
+        final CapBuilderVisitor visitor = new CapBuilderVisitor(aidPool);
+        parseCapDirectory(payload, visitor);
+        return visitor.buildDirectory();
+    }
+
+    /**
+     * Decode CAP Applet
+     *
+     * @param payload CAP applet component payload
+     * @param aidPool AID intern pool, null when AIDs are not interned
+     * @return CAP applet component object
+     * @throws CapDecodeException when decoding failed
+     */
+    static Cap.Applet decodeCapApplet(final ByteBuffer payload, final AidPool aidPool) throws CapDecodeException {
+        final CapBuilderVisitor visitor = new CapBuilderVisitor(aidPool);
+        parseCapApplet(payload, visitor);
+        return visitor.buildApplet();
+    }
+
+    /**
+     * Decode CAP import
+     *
+     * @param payload CAP import component payload
+     * @param aidPool AID intern pool, null when AIDs are not interned
+     * @return CAP import component object
+     * @throws CapDecodeException when decoding failed
+     */
+    static Cap.Import decodeCapImport(final ByteBuffer payload, final AidPool aidPool) throws CapDecodeException {
+        final CapBuilderVisitor visitor = new CapBuilderVisitor(aidPool);
+        parseCapImport(payload, visitor);
+        return visitor.buildImport();
+    }
+
+    /**
+     * Decode CAP constant pool
+     *
+     * @param payload CAP constant pool component payload
+     * @return CAP constant pool component object
+     * @throws CapDecodeException when decoding failed
+     */
+    static Cap.ConstantPool decodeCapConstantPool(final ByteBuffer payload) throws CapDecodeException {
+        final CapBuilderVisitor visitor = new CapBuilderVisitor(null);
+        parseCapConstantPool(payload, visitor);
+        return visitor.buildConstantPool();
+    }
+
+    /**
+     * Decode CAP class component
+     *
+     * @param payload CAP class component payload
+     * @param version CAP version encoded in 0xaabb (major, minor)
+     * @return CAP class component object
+     * @throws CapDecodeException when decoding failed
+     */
+    static Cap.ClassComponent decodeCapClass(final ByteBuffer payload, final int version) throws CapDecodeException {
+        final CapBuilderVisitor visitor = new CapBuilderVisitor(null);
+        parseCapClass(payload, version, visitor);
+        return visitor.buildClassComponent();
+    }
+
+    /**
+     * Decode CAP method component
+     *
+     * @param payload       CAP method component payload, retained by resulting component
+     * @param methodOffsets distinct method offsets in ascending order
+     * @return CAP method component object
+     * @throws CapDecodeException when decoding failed
+     */
+    static Cap.MethodComponent decodeCapMethod(final ByteBuffer payload, final int[] methodOffsets)
+            throws CapDecodeException {
+        final CapBuilderVisitor visitor = new CapBuilderVisitor(null);
+        parseCapMethod(payload, methodOffsets, visitor);
+        return visitor.buildMethodComponent(payload);
+    }
+
+    /**
+     * Read CAP version out of header component without decoding it
+     *
+     * @param payload CAP header payload, null when header is missing
+     * @return CAP version encoded in 0xaabb (major, minor)
+     * @throws CapDecodeException when header is missing or truncated
+     */
+    static int getCapVersion(final ByteBuffer payload) throws CapDecodeException {
+        if (payload == null) {
+            throw CapDecodeClassException.missingHeader();
+        }
+
+        /* skip tag, size and magic */
+        final CapBuffer reader = new CapBuffer(payload, TAG_COMPONENT_Header);
+        reader.skip(7);
+        return reader.version();
+    }
+
+    /**
+     * Parse CAP header. The following is the structure of CAP header
      * <pre>
      * header_component {
      *     u1 tag
@@ -97,83 +579,69 @@ public class CapDecoderImpl extends CapDecoderImplBase implements CapDecoder {
      * </pre>
      *
      * @param payload CAP header payload
-     * @return CAP Header object
+     * @param visitor CAP visitor
      * @throws CapDecodeException when CAP Header decoding failed
      */
-    private Cap.Header decodeCapHeader(final byte[] payload) throws CapDecodeException {
-        if (ArrayUtils.isEmpty(payload)) {
+    static void parseCapHeader(final ByteBuffer payload, final CapVisitor visitor) throws CapDecodeException {
+        if ((payload == null) || !payload.hasRemaining()) {
             throw new IllegalArgumentException("header payload is null");
         }
 
-        final CapHeaderBuilder builder = new CapHeaderBuilder();
-        final ByteArrayInputStream bais = new ByteArrayInputStream(payload);
-        final DataInputStream dis = new DataInputStream(bais);
-        try {
-            /* parse tag */
-            final int componentTag = dis.readByte();
-            if (componentTag != TAG_COMPONENT_Header) {
-                throw CapDecodeHeaderException.invalidTag(componentTag);
-            }
+        final CapBuffer reader = new CapBuffer(payload, TAG_COMPONENT_Header);
 
-            /* parse size */
-            final int componentSize = dis.readShort();
-            if ((componentSize < 0) || (dis.available() < componentSize)) {
-                throw CapDecodeHeaderException.invalidSize();
-            }
+        /* parse tag */
+        final int componentTag = reader.u1();
+        if (componentTag != TAG_COMPONENT_Header) {
+            throw CapDecodeHeaderException.invalidTag(componentTag);
+        }
 
-            /* parse magic */
-            final int componentMagicCode = dis.readInt();
-            if (componentMagicCode != 0xdecaffed) {
-                throw CapDecodeHeaderException.invalidMagic();
-            }
+        /* parse size */
+        final int componentSize = reader.u2();
+        if (reader.remaining() < componentSize) {
+            throw CapDecodeHeaderException.invalidSize();
+        }
+        visitor.visitComponent(componentTag, componentSize);
 
-            /* parse version and flags */
-            builder.setHeaderVersion(parseVersion(dis))
-                    .setHeaderFlags(dis.readByte());
+        /* parse magic */
+        final int componentMagicCode = reader.u4();
+        if (componentMagicCode != 0xdecaffed) {
+            throw CapDecodeHeaderException.invalidMagic();
+        }
 
-            /* parse package info */
-            final int packageInfoVersion = parseVersion(dis);
-            final int aidLength = dis.readByte();
-            if ((aidLength < 5) || (aidLength > 16)) {
-                throw CapDecodeHeaderException.invalidAidLength();
-            }
+        /* parse version and flags */
+        final int version = reader.version();
+        visitor.visitHeader(version, reader.u1());
 
-            /* parse AID payload */
-            final byte[] aid = new byte[aidLength];
-            if (dis.read(aid) != aidLength) {
-                throw CapDecodeHeaderException.invalidPackageAID();
-            }
-            builder.setPackageInfo(packageInfoVersion, Hex.encodeHexString(aid));
+        /* parse package info */
+        final int packageInfoVersion = reader.version();
+        final int aidLength = reader.u1();
+        if ((aidLength < 5) || (aidLength > 16)) {
+            throw CapDecodeHeaderException.invalidAidLength();
+        }
 
-            /* optionally set package name info */
-            if (bais.available() > 0) {
-                final int nameLength = dis.readByte();
-                if (nameLength < 0) {
-                    throw CapDecodeHeaderException.invalidPackageNameLength();
-                }
+        /* parse AID payload */
+        if (reader.remaining() < aidLength) {
+            throw CapDecodeHeaderException.invalidPackageAID();
+        }
+        visitor.visitPackage(packageInfoVersion, reader.array(), reader.advance(aidLength), aidLength);
 
-                /* parse package name */
-                if (nameLength > 0) {
-                    final byte[] name = new byte[nameLength];
-                    if (dis.read(name) != nameLength) {
-                        throw CapDecodeHeaderException.invalidPackageName();
-                    }
+        /* optionally set package name info */
+        if (reader.hasRemaining()) {
+            final int nameLength = reader.u1();
 
-                    builder.setPackageName(new String(name, StandardCharsets.UTF_8));
+            /* parse package name */
+            if (nameLength > 0) {
+                if (reader.remaining() < nameLength) {
+                    throw CapDecodeHeaderException.invalidPackageName();
                 }
-            }
 
-            return builder.build();
-        } catch (final IOException ex) {
-            throw new CapDecodeException("failed to parse CAP header", ex);
-        } finally {
-            IOUtils.closeQuietly(dis);
-            IOUtils.closeQuietly(bais);
+                visitor.visitPackageName(reader.array(), reader.advance(nameLength), nameLength);
+            }
         }
     }
 
     /**
-     * Decode CAP directory component. The following is the structure of directory component
+     * Parse CAP directory component. The following is the structure of directory component
      * <pre>
      * directory_component {
      *     u1 tag
@@ -201,159 +669,513 @@ public class CapDecoderImpl extends CapDecoderImplBase implements CapDecoder {
      * </pre>
      *
      * @param payload CAP directory component payload
-     * @return CAP directory component
+     * @param visitor CAP visitor
      * @throws CapDecodeException when decoding failed
      */
-    private Cap.Directory decodeCapDirectory(final byte[] payload) throws CapDecodeException {
-        if (ArrayUtils.isEmpty(payload)) {
+    static void parseCapDirectory(final ByteBuffer payload, final CapVisitor visitor) throws CapDecodeException {
+        if ((payload == null) || !payload.hasRemaining()) {
             throw new IllegalArgumentException("directory payload is null");
         }
 
-        final CapDirectoryBuilder builder = new CapDirectoryBuilder();
-        final ByteArrayInputStream bais = new ByteArrayInputStream(payload);
-        final DataInputStream dis = new DataInputStream(bais);
-        try {
-            /* parse tag */
-            final int componentTag = dis.readByte();
-            if (componentTag != TAG_COMPONENT_Directory) {
-                throw CapDecodeDirectoryException.invalidTag(componentTag);
+        final CapBuffer reader = new CapBuffer(payload, TAG_COMPONENT_Directory);
+
+        /* parse tag */
+        final int componentTag = reader.u1();
+        if (componentTag != TAG_COMPONENT_Directory) {
+            throw CapDecodeDirectoryException.invalidTag(componentTag);
+        }
+
+        /* parse size */
+        final int componentSize = reader.u2();
+        if (reader.remaining() < componentSize) {
+            throw CapDecodeDirectoryException.invalidSize();
+        }
+        visitor.visitComponent(componentTag, componentSize);
+
+        /* parse component sizes */
+        for (int i = 0; i < 11; i++) {
+            visitor.visitComponentSize(i, reader.u2());
+        }
+
+        /* parse static_field_size_info */
+        final int imageSize = reader.u2();
+        final int arrayInitCount = reader.u2();
+        final int arrayInitSize = reader.u2();
+
+        /* set static_field_size_info, import_count and applet_count */
+        visitor.visitStaticFieldSize(imageSize, arrayInitCount, arrayInitSize);
+        visitor.visitImportCount(reader.u1());
+        visitor.visitAppletCount(reader.u1());
+
+        /* parse array of custom component info */
+        final int customCount = reader.u1();
+        if (customCount > 127) {
+            throw CapDecodeDirectoryException.invalidComponentTag();
+        }
+
+        for (int i = 0; i < customCount; i++) {
+            /* decode component tag */
+            final int customComponentTag = reader.u1();
+            if (customComponentTag < 128) {
+                throw CapDecodeDirectoryException.invalidComponentTag();
             }
 
-            /* parse size */
-            final int componentSize = dis.readShort();
-            if ((componentSize < 0) || (dis.available() < componentSize)) {
-                throw CapDecodeDirectoryException.invalidSize();
+            /* decode component size, it refers to the custom component itself */
+            final int customComponentSize = reader.u2();
+
+            /* decode component AID length */
+            final int customComponentAidLength = reader.u1();
+            if ((customComponentAidLength < 5) || (customComponentAidLength > 16)) {
+                throw CapDecodeDirectoryException.invalidCustomComponentAIDLength();
+            }
+
+            /* decode component AID payload */
+            visitor.visitCustomComponent(customComponentTag, customComponentSize, reader.array(),
+                    reader.advance(customComponentAidLength), customComponentAidLength);
+        }
+    }
+
+    /**
+     * Parse CAP Applet. The following is the structure of applet component
+     * <pre>
+     * applet_component {
+     *     u1 tag
+     *     u2 size
+     *     u1 count
+     *     {
+     *         u1 AID_length
+     *         u1 AID[AID_length]
+     *         u2 install_method_offset
+     *     } applets[count]
+     * }
+     * </pre>
+     *
+     * @param payload CAP applet component payload
+     * @param visitor CAP visitor
+     * @throws CapDecodeException when decoding failed
+     */
+    static void parseCapApplet(final ByteBuffer payload, final CapVisitor visitor) throws CapDecodeException {
+        if ((payload == null) || !payload.hasRemaining()) {
+            throw new IllegalArgumentException("applet payload is null");
+        }
+
+        final CapBuffer reader = new CapBuffer(payload, TAG_COMPONENT_Applet);
+
+        /* parse tag */
+        final int componentTag = reader.u1();
+        if (componentTag != TAG_COMPONENT_Applet) {
+            throw CapDecodeAppletException.invalidTag(componentTag);
+        }
+
+        /* parse size */
+        final int componentSize = reader.u2();
+        if (reader.remaining() < componentSize) {
+            throw CapDecodeAppletException.invalidSize();
+        }
+        visitor.visitComponent(componentTag, componentSize);
+
+        /* parse count of applet */
+        final int count = reader.u1();
+        if (count < 1) {
+            throw CapDecodeAppletException.invalidAppletCount();
+        }
+
+        /* parse applet entries */
+        for (int i = 0; i < count; i++) {
+            /* parse AID length */
+            final int aidLength = reader.u1();
+            if ((aidLength < 5) || (aidLength > 16)) {
+                throw CapDecodeAppletException.invalidAIDLength();
             }
 
-            /* parse component sizes */
-            for (int i = 0; i < 11; i++) {
-                final int v = dis.readShort();
-                builder.addComponentSize(v);
+            /* parse AID */
+            if (reader.remaining() < aidLength) {
+                throw CapDecodeAppletException.invalidAID();
             }
+            final int aidOffset = reader.advance(aidLength);
+
+            /* parse install method offset */
+            visitor.visitApplet(reader.array(), aidOffset, aidLength, reader.u2());
+        }
+    }
 
-            /* parse static_field_size_info */
-            final int imageSize = dis.readShort();
-            final int arrayInitCount = dis.readShort();
-            final int arrayInitSize = dis.readShort();
+    /**
+     * Parse CAP import. The following is the structure of import component
+     * <pre>
+     * import_component {
+     *     u1 tag
+     *     u2 size
+     *     u1 count
+     *     package_info packages[count]
+     * }
+     *
+     * package_info {
+     *     u1 minor_version
+     *     u1 major_version
+     *     u1 AID_length
+     *     u1 AID[AID_length]
+     * }
+     * </pre>
+     *
+     * @param payload CAP import component payload
+     * @param visitor CAP visitor
+     * @throws CapDecodeException when decoding failed
+     */
+    static void parseCapImport(final ByteBuffer payload, final CapVisitor visitor) throws CapDecodeException {
+        if ((payload == null) || !payload.hasRemaining()) {
+            throw new IllegalArgumentException("import payload is null");
+        }
 
-            /* set static_field_size_info, import_count and applet_count */
-            builder.setStaticFieldSize(imageSize, arrayInitCount, arrayInitSize)
-                    .setImportCount(dis.readByte())
-                    .setAppletCount(dis.readByte());
+        final CapBuffer reader = new CapBuffer(payload, TAG_COMPONENT_Import);
 
-            /* parse array of custom component info */
-            final int customCount = dis.readByte();
-            if ((customCount < 0) || (customCount > 127)) {
-                throw CapDecodeDirectoryException.invalidComponentTag();
+        /* parse tag */
+        final int componentTag = reader.u1();
+        if (componentTag != TAG_COMPONENT_Import) {
+            throw CapDecodeImportException.invalidTag(componentTag);
+        }
+
+        /* parse size */
+        final int componentSize = reader.u2();
+        if (reader.remaining() < componentSize) {
+            throw CapDecodeImportException.invalidSize();
+        }
+        visitor.visitComponent(componentTag, componentSize);
+
+        /* parse imported packages */
+        final int count = reader.u1();
+        for (int i = 0; i < count; i++) {
+            final int version = reader.version();
+            final int aidLength = reader.u1();
+            if ((aidLength < 5) || (aidLength > 16)) {
+                throw CapDecodeImportException.invalidAIDLength();
             }
 
-            for (int i = 0; i < customCount; i++) {
-                /* decode component tag */
-                final int customComponentTag = dis.readByte();
-                if (customComponentTag < 128) {
-                    throw CapDecodeDirectoryException.invalidComponentTag();
-                }
+            visitor.visitImport(version, reader.array(), reader.advance(aidLength), aidLength);
+        }
+    }
 
-                /* decode component size */
-                final int customComponentSize = dis.readShort();
-                if (dis.available() < customComponentSize) {
-                    throw CapDecodeDirectoryException.truncatedComponent();
-                }
+    /**
+     * Parse CAP constant pool. The following is the structure of constant pool component
+     * <pre>
+     * constant_pool_component {
+     *     u1 tag
+     *     u2 size
+     *     u2 count
+     *     cp_info constant_pool[count]
+     * }
+     *
+     * cp_info {
+     *     u1 tag
+     *     u1 info[3]
+     * }
+     * </pre>
+     *
+     * @param payload CAP constant pool component payload
+     * @param visitor CAP visitor
+     * @throws CapDecodeException when decoding failed
+     */
+    static void parseCapConstantPool(final ByteBuffer payload, final CapVisitor visitor) throws CapDecodeException {
+        if ((payload == null) || !payload.hasRemaining()) {
+            throw new IllegalArgumentException("constant pool payload is null");
+        }
 
-                /* decode component AID length */
-                final int customComponentAidLength = dis.readByte();
-                if ((customComponentAidLength < 5) || (customComponentAidLength > 16)) {
-                    throw CapDecodeDirectoryException.invalidCustomComponentAIDLength();
-                }
+        final CapBuffer reader = new CapBuffer(payload, TAG_COMPONENT_ConstantPool);
 
-                /* decode component AID payload */
-                final byte[] customComponentAid = new byte[customComponentAidLength];
-                if (dis.read(customComponentAid) != customComponentAidLength) {
-                    throw CapDecodeDirectoryException.truncatedComponent();
-                }
+        /* parse tag */
+        final int componentTag = reader.u1();
+        if (componentTag != TAG_COMPONENT_ConstantPool) {
+            throw CapDecodeConstantPoolException.invalidTag(componentTag);
+        }
+
+        /* parse size */
+        final int componentSize = reader.u2();
+        if (reader.remaining() < componentSize) {
+            throw CapDecodeConstantPoolException.invalidSize();
+        }
+        visitor.visitComponent(componentTag, componentSize);
 
-                builder.addCustomComponent(componentTag, Hex.encodeHexString(customComponentAid));
+        /* parse entries, each one is a tag followed by three info bytes */
+        final int count = reader.u2();
+        for (int i = 0; i < count; i++) {
+            final int tag = reader.u1();
+            if ((tag < Cap.ConstantPool.TAG_CLASSREF) || (tag > Cap.ConstantPool.TAG_STATIC_METHODREF)) {
+                throw CapDecodeConstantPoolException.invalidEntryTag(tag);
             }
 
-            return builder.build();
-        } catch (final IOException ex) {
-            throw new CapDecodeException("failed to parse CAP directory", ex);
-        } finally {
-            IOUtils.closeQuietly(dis);
-            IOUtils.closeQuietly(bais);
+            final int info = (reader.u1() << 16) | reader.u2();
+            visitor.visitConstant(i, tag, info);
         }
     }
 
     /**
-     * Decode CAP Applet
+     * Parse CAP class component. Signature pool and remote interface information only exist since CAP format 2.2,
+     * hence layout is chosen out of CAP version. The following is the structure of class component
+     * <pre>
+     * class_component {
+     *     u1 tag
+     *     u2 size
+     *     u2 signature_pool_length
+     *     type_descriptor signature_pool[]
+     *     interface_info interfaces[]
+     *     class_info classes[]
+     * }
      *
-     * @param payload CAP applet component payload
-     * @return CAP applet component object
-     * @throws CapDecodeException hwn decoding failed
+     * interface_info {
+     *     u1 bitfield {
+     *         bit[4] flags
+     *         bit[4] interface_count
+     *     }
+     *     class_ref superinterfaces[interface_count]
+     *     interface_name_info interface_name
+     * }
+     *
+     * class_info {
+     *     u1 bitfield {
+     *         bit[4] flags
+     *         bit[4] interface_count
+     *     }
+     *     class_ref super_class_ref
+     *     u1 declared_instance_size
+     *     u1 first_reference_token
+     *     u1 reference_count
+     *     u1 public_method_table_base
+     *     u1 public_method_table_count
+     *     u1 package_method_table_base
+     *     u1 package_method_table_count
+     *     u2 public_virtual_method_table[public_method_table_count]
+     *     u2 package_virtual_method_table[package_method_table_count]
+     *     implemented_interface_info interfaces[interface_count]
+     *     remote_interface_info remote_interfaces
+     * }
+     *
+     * implemented_interface_info {
+     *     class_ref interface
+     *     u1 count
+     *     u1 index[count]
+     * }
+     * </pre>
+     * Remote interface information of classes is validated and skipped.
+     *
+     * @param payload CAP class component payload
+     * @param version CAP version encoded in 0xaabb (major, minor)
+     * @param visitor CAP visitor
+     * @throws CapDecodeException when decoding failed
      */
-    private Cap.Applet decodeCapApplet(final byte[] payload) throws CapDecodeException {
-        if (ArrayUtils.isEmpty(payload)) {
-            throw new IllegalArgumentException("applet payload is null");
+    static void parseCapClass(final ByteBuffer payload, final int version, final CapVisitor visitor)
+            throws CapDecodeException {
+        if ((payload == null) || !payload.hasRemaining()) {
+            throw new IllegalArgumentException("class payload is null");
         }
 
-        final CapAppletBuilder builder = new CapAppletBuilder();
-        final ByteArrayInputStream bais = new ByteArrayInputStream(payload);
-        final DataInputStream dis = new DataInputStream(bais);
-        try {
-            /* parse tag */
-            final int componentTag = dis.readByte();
-            if (componentTag != TAG_COMPONENT_Applet) {
-                throw CapDecodeAppletException.invalidTag(componentTag);
+        final CapBuffer reader = new CapBuffer(payload, TAG_COMPONENT_Class);
+
+        /* parse tag */
+        final int componentTag = reader.u1();
+        if (componentTag != TAG_COMPONENT_Class) {
+            throw CapDecodeClassException.invalidTag(componentTag);
+        }
+
+        /* parse size */
+        final int componentSize = reader.u2();
+        if (reader.remaining() < componentSize) {
+            throw CapDecodeClassException.invalidSize();
+        }
+        visitor.visitComponent(componentTag, componentSize);
+
+        /* class references are offsets from start of info item */
+        final int infoStart = reader.position();
+        final int infoEnd = infoStart + componentSize;
+        final boolean extended = version >= 0x0202;
+        if (extended) {
+            reader.skip(reader.u2());
+        }
+
+        /* parse interfaces, followed by classes */
+        boolean hasClass = false;
+        while (reader.position() < infoEnd) {
+            final int offset = reader.position() - infoStart;
+            final int bitfield = reader.u1();
+            final int flags = bitfield >>> 4;
+            final int interfaceCount = bitfield & 0x0f;
+            final boolean isRemote = extended && ((flags & Cap.ClassComponent.ACC_REMOTE) != 0);
+            if ((flags & Cap.ClassComponent.ACC_INTERFACE) != 0) {
+                if (hasClass) {
+                    throw CapDecodeClassException.unexpectedInterface(offset);
+                }
+
+                visitor.visitInterface(offset, flags, reader.array(), reader.advance(2 * interfaceCount),
+                        interfaceCount);
+                if (isRemote) {
+                    final int nameLength = reader.u1();
+                    visitor.visitInterfaceName(reader.array(), reader.advance(nameLength), nameLength);
+                }
+                continue;
             }
 
-            /* parse size */
-            final int componentSize = dis.readShort();
-            if ((componentSize < 0) || (dis.available() < componentSize)) {
-                throw CapDecodeAppletException.invalidSize();
+            hasClass = true;
+            final int superClass = reader.u2();
+            final int declaredInstanceSize = reader.u1();
+            final int firstReferenceToken = reader.u1();
+            final int referenceCount = reader.u1();
+            final int publicMethodTableBase = reader.u1();
+            final int publicMethodTableCount = reader.u1();
+            final int packageMethodTableBase = reader.u1();
+            final int packageMethodTableCount = reader.u1();
+            visitor.visitClass(offset, flags, superClass, declaredInstanceSize, firstReferenceToken, referenceCount);
+            visitor.visitPublicMethodTable(publicMethodTableBase, reader.array(),
+                    reader.advance(2 * publicMethodTableCount), publicMethodTableCount);
+            visitor.visitPackageMethodTable(packageMethodTableBase, reader.array(),
+                    reader.advance(2 * packageMethodTableCount), packageMethodTableCount);
+            for (int i = 0; i < interfaceCount; i++) {
+                final int classRef = reader.u2();
+                final int count = reader.u1();
+                visitor.visitImplementedInterface(classRef, reader.array(), reader.advance(count), count);
             }
 
-            /* parse count of applet */
-            final int count = dis.readByte();
-            if (count < 1) {
-                throw CapDecodeAppletException.invalidAppletCount();
+            if (isRemote) {
+                /* remote methods, hash modifier, class name and remote interfaces */
+                reader.skip(5 * reader.u1());
+                reader.skip(reader.u1());
+                reader.skip(reader.u1());
+                reader.skip(2 * reader.u1());
             }
+        }
 
-            /* parse applet entries */
-            for (int i = 0; i < count; i++) {
-                /* parse AID length */
-                int aidLength = dis.readByte();
-                if ((aidLength < 5) || (aidLength > 16)) {
-                    throw CapDecodeAppletException.invalidAIDLength();
-                }
+        if (reader.position() != infoEnd) {
+            throw CapDecodeClassException.invalidSize();
+        }
+    }
 
-                /* parse AID */
-                final byte[] aid = new byte[aidLength];
-                if (dis.read(aid) != aidLength) {
-                    throw CapDecodeAppletException.invalidAID();
-                }
+    /**
+     * Parse CAP method component. Method info carries no length, hence methods are located by offset out of an index
+     * built by {@link CapMethodOffsetCollector}, each method spanning up to the next one. The following is the
+     * structure of method component
+     * <pre>
+     * method_component {
+     *     u1 tag
+     *     u2 size
+     *     u1 handler_count
+     *     exception_handler_info exception_handlers[handler_count]
+     *     method_info methods[]
+     * }
+     *
+     * exception_handler_info {
+     *     u2 start_offset
+     *     u2 bitfield {
+     *         bit[1] stop_bit
+     *         bit[15] active_length
+     *     }
+     *     u2 handler_offset
+     *     u2 catch_type_index
+     * }
+     *
+     * method_info {
+     *     method_header_info method_header
+     *     u1 bytecodes[]
+     * }
+     *
+     * method_header_info {
+     *     u1 bitfield {
+     *         bit[4] flags
+     *         bit[4] max_stack
+     *     }
+     *     u1 bitfield {
+     *         bit[4] nargs
+     *         bit[4] max_locals
+     *     }
+     * }
+     *
+     * extended_method_header_info {
+     *     u1 bitfield {
+     *         bit[4] flags
+     *         bit[4] padding
+     *     }
+     *     u1 max_stack
+     *     u1 nargs
+     *     u1 max_locals
+     * }
+     * </pre>
+     *
+     * @param payload       CAP method component payload
+     * @param methodOffsets distinct method offsets in ascending order
+     * @param visitor       CAP visitor
+     * @throws CapDecodeException when decoding failed
+     */
+    static void parseCapMethod(final ByteBuffer payload, final int[] methodOffsets, final CapVisitor visitor)
+            throws CapDecodeException {
+        if ((payload == null) || !payload.hasRemaining()) {
+            throw new IllegalArgumentException("method payload is null");
+        } else if (methodOffsets == null) {
+            throw new IllegalArgumentException("method offsets is null");
+        }
 
-                /* parse install method offset */
-                final int installMethodOffset = dis.readShort();
-                if (installMethodOffset < 0) {
-                    throw CapDecodeAppletException.invalidInstallMethodOffset();
-                }
+        final CapBuffer reader = new CapBuffer(payload, TAG_COMPONENT_Method);
+
+        /* parse tag */
+        final int componentTag = reader.u1();
+        if (componentTag != TAG_COMPONENT_Method) {
+            throw CapDecodeMethodException.invalidTag(componentTag);
+        }
+
+        /* parse size */
+        final int componentSize = reader.u2();
+        if (reader.remaining() < componentSize) {
+            throw CapDecodeMethodException.invalidSize();
+        }
+        visitor.visitComponent(componentTag, componentSize);
+
+        /* parse exception handlers, method offsets are relative to info item */
+        final int infoStart = reader.position();
+        final int handlerCount = reader.u1();
+        for (int i = 0; i < handlerCount; i++) {
+            final int startOffset = reader.u2();
+            final int bitfield = reader.u2();
+            final int handlerOffset = reader.u2();
+            final int catchTypeIndex = reader.u2();
+            visitor.visitExceptionHandler(startOffset, bitfield & 0x7fff, (bitfield & 0x8000) != 0, handlerOffset,
+                    catchTypeIndex);
+        }
 
-                builder.addApplet(Hex.encodeHexString(aid), installMethodOffset);
+        /* parse indexed method headers, bytecode is handed out in place */
+        for (int i = 0; i < methodOffsets.length; i++) {
+            final int offset = methodOffsets[i];
+            final int end = (i + 1 < methodOffsets.length) ? methodOffsets[i + 1] : componentSize;
+            if ((offset < reader.position() - infoStart) || (offset >= end) || (end > componentSize)) {
+                throw CapDecodeMethodException.invalidMethodOffset(offset);
             }
 
-            return builder.build();
-        } catch (final IOException ex) {
-            throw new CapDecodeException("failed to parse CAP applet", ex);
-        } finally {
-            IOUtils.closeQuietly(dis);
-            IOUtils.closeQuietly(bais);
+            reader.skip(offset - (reader.position() - infoStart));
+            final int bitfield = reader.u1();
+            final int flags = bitfield >>> 4;
+            final int maxStack;
+            final int nargs;
+            final int maxLocals;
+            if ((flags & Cap.MethodComponent.ACC_EXTENDED) != 0) {
+                maxStack = reader.u1();
+                nargs = reader.u1();
+                maxLocals = reader.u1();
+            } else {
+                final int counts = reader.u1();
+                maxStack = bitfield & 0x0f;
+                nargs = counts >>> 4;
+                maxLocals = counts & 0x0f;
+            }
+
+            final int length = end - (reader.position() - infoStart);
+            if (length < 0) {
+                throw CapDecodeMethodException.invalidMethodOffset(offset);
+            }
+            visitor.visitMethod(offset, flags, maxStack, nargs, maxLocals, reader.array(), reader.advance(length),
+                    length);
         }
     }
 
-    private int parseVersion(final DataInputStream dis) throws IOException {
-        int version;
-        version = dis.readByte() & 0xff;
-        version += (dis.readByte() & 0xff) << 8;
-        return version;
+    /**
+     * Decode task run by {@link #submit(Executor, CapDecodeOptions, DecodeTask)}
+     *
+     * @author Edi Permadi
+     */
+    private interface DecodeTask {
+        Cap decode(CapDecodeContext context) throws CapException;
     }
 }
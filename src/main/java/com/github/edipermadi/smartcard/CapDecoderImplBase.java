@@ -1,5 +1,9 @@
 package com.github.edipermadi.smartcard;
 
+import com.github.edipermadi.smartcard.exc.CapFormatException;
+
+import java.nio.ByteBuffer;
+
 /**
  * CAP decoder base implementation
  *
@@ -22,8 +26,150 @@ abstract class CapDecoderImplBase {
     static final int TAG_COMPONENT_Header = 1;
     static final int TAG_COMPONENT_Directory = 2;
     static final int TAG_COMPONENT_Applet = 3;
+    static final int TAG_COMPONENT_Import = 4;
+    static final int TAG_COMPONENT_ConstantPool = 5;
+    static final int TAG_COMPONENT_Class = 6;
+    static final int TAG_COMPONENT_Method = 7;
+    static final int TAG_COMPONENT_StaticField = 8;
+    static final int TAG_COMPONENT_ReferenceLocation = 9;
+    static final int TAG_COMPONENT_Export = 10;
+    static final int TAG_COMPONENT_Descriptor = 11;
+    static final int TAG_COMPONENT_Debug = 12;
+    static final int COMPONENT_COUNT = 12;
+
+    /* component is made of one byte tag, two bytes size and at most 65535 bytes of info */
+    static final int MAX_COMPONENT_SIZE = 3 + 65535;
+
+    /* component file names indexed by component tag */
+    static final String[] COMPONENT_NAMES = {null, COMPONENT_Header, COMPONENT_Directory, COMPONENT_Applet,
+            COMPONENT_Import, COMPONENT_ConstantPool, COMPONENT_Class, COMPONENT_Method, COMPONENT_StaticField,
+            COMPONENT_ReferenceLocation, COMPONENT_Export, COMPONENT_Descriptor, COMPONENT_Debug};
 
     static final int ACC_INT = 0x01;
     static final int ACC_EXPORT = 0x02;
     static final int ACC_APPLET = 0x04;
+
+    /**
+     * Get component file name out of archive entry path
+     *
+     * @param path archive entry path
+     * @return component file name
+     */
+    static String getComponentName(final String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Get component tag out of component file name
+     *
+     * @param name component file name
+     * @return component tag or -1 when name is not a known component
+     */
+    static int getComponentTag(final String name) {
+        switch (name) {
+            case COMPONENT_Header:
+                return TAG_COMPONENT_Header;
+            case COMPONENT_Directory:
+                return TAG_COMPONENT_Directory;
+            case COMPONENT_Applet:
+                return TAG_COMPONENT_Applet;
+            case COMPONENT_Import:
+                return TAG_COMPONENT_Import;
+            case COMPONENT_ConstantPool:
+                return TAG_COMPONENT_ConstantPool;
+            case COMPONENT_Class:
+                return TAG_COMPONENT_Class;
+            case COMPONENT_Method:
+                return TAG_COMPONENT_Method;
+            case COMPONENT_StaticField:
+                return TAG_COMPONENT_StaticField;
+            case COMPONENT_ReferenceLocation:
+                return TAG_COMPONENT_ReferenceLocation;
+            case COMPONENT_Export:
+                return TAG_COMPONENT_Export;
+            case COMPONENT_Descriptor:
+                return TAG_COMPONENT_Descriptor;
+            case COMPONENT_Debug:
+                return TAG_COMPONENT_Debug;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Get component tag out of archive entry path held as raw bytes, without decoding it into a string
+     *
+     * @param path   array holding archive entry path
+     * @param offset offset of archive entry path
+     * @param length length of archive entry path
+     * @return component tag or -1 when path does not name a known component
+     */
+    static int getComponentTag(final byte[] path, final int offset, final int length) {
+        int start = offset;
+        for (int i = offset + length - 1; i >= offset; i--) {
+            if (path[i] == '/') {
+                start = i + 1;
+                break;
+            }
+        }
+
+        final int nameLength = offset + length - start;
+        for (int tag = 1; tag <= COMPONENT_COUNT; tag++) {
+            final String name = COMPONENT_NAMES[tag];
+            if (name.length() != nameLength) {
+                continue;
+            }
+
+            int i = 0;
+            while ((i < nameLength) && (path[start + i] == name.charAt(i))) {
+                i++;
+            }
+            if (i == nameLength) {
+                return tag;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Check whether component is consumed by decoder. Archive entries of other components are not read. Descriptor
+     * component has no decoder of its own, it is consumed along with method component to index method headers.
+     *
+     * @param tag     component tag
+     * @param options decode options
+     * @return true when component is consumed
+     */
+    static boolean isConsumed(final int tag, final CapDecodeOptions options) {
+        return (hasDecoder(tag) && options.isDecoded(tag))
+                || ((tag == TAG_COMPONENT_Descriptor) && options.isDecoded(TAG_COMPONENT_Method));
+    }
+
+    /**
+     * Check whether component has a decoder
+     *
+     * @param tag component tag
+     * @return true when component can be decoded
+     */
+    static boolean hasDecoder(final int tag) {
+        return (tag == TAG_COMPONENT_Header) || (tag == TAG_COMPONENT_Directory) || (tag == TAG_COMPONENT_Applet)
+                || (tag == TAG_COMPONENT_Import) || (tag == TAG_COMPONENT_ConstantPool)
+                || (tag == TAG_COMPONENT_Class) || (tag == TAG_COMPONENT_Method);
+    }
+
+    /**
+     * Ensure every decoded component which is not optional is present
+     *
+     * @param payloads component payloads indexed by component tag
+     * @param options  decode options
+     * @throws CapFormatException when mandatory component is missing
+     */
+    static void checkMissingComponents(final ByteBuffer[] payloads, final CapDecodeOptions options)
+            throws CapFormatException {
+        for (final CapComponent component : options.getComponents()) {
+            final int tag = component.getTag();
+            if (hasDecoder(tag) && (payloads[tag] == null) && !options.isOptional(tag)) {
+                throw CapFormatException.missingComponent(component.getFileName());
+            }
+        }
+    }
 }
@@ -0,0 +1,93 @@
+package com.github.edipermadi.smartcard;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.Inflater;
+
+/**
+ * Pool of decoding resources shared by decoders, it holds a bounded set of {@link Inflater} instances and one
+ * scratch arena per thread. Decoders using a pool read and inflate archive entries into the scratch arena of calling
+ * thread, hence steady state decoding allocates little more than the resulting CAP object. This class is thread-safe.
+ *
+ * @author Edi Permadi
+ */
+public final class CapDecoderPool {
+    private final AtomicReferenceArray<Inflater> inflaters;
+    private final int maxScratchSize;
+    private final ThreadLocal<CapScratch> scratches;
+
+    /**
+     * Class constructor, pooling two inflaters per processor and retaining up to 1 MiB scratch arena per thread
+     */
+    public CapDecoderPool() {
+        this(Runtime.getRuntime().availableProcessors() * 2, 1024 * 1024);
+    }
+
+    /**
+     * Class constructor
+     *
+     * @param maxInflaters   maximum count of idle inflaters kept by pool
+     * @param maxScratchSize largest scratch arena retained per thread, larger arenas are dropped after use
+     */
+    public CapDecoderPool(final int maxInflaters, final int maxScratchSize) {
+        if (maxInflaters < 0) {
+            throw new IllegalArgumentException("invalid maximum count of inflaters");
+        } else if (maxScratchSize <= 0) {
+            throw new IllegalArgumentException("invalid maximum scratch size");
+        }
+
+        this.inflaters = new AtomicReferenceArray<>(maxInflaters);
+        this.maxScratchSize = maxScratchSize;
+        this.scratches = new ThreadLocal<CapScratch>() {
+            @Override
+            protected CapScratch initialValue() {
+                return new CapScratch(maxScratchSize);
+            }
+        };
+    }
+
+    /**
+     * Take an inflater out of pool, creating one when pool is empty
+     *
+     * @return raw deflate inflater
+     */
+    Inflater acquireInflater() {
+        for (int i = 0; i < inflaters.length(); i++) {
+            final Inflater inflater = inflaters.get(i);
+            if ((inflater != null) && inflaters.compareAndSet(i, inflater, null)) {
+                return inflater;
+            }
+        }
+        return new Inflater(true);
+    }
+
+    /**
+     * Return inflater to pool, it is released when pool is full
+     *
+     * @param inflater inflater obtained from {@link #acquireInflater()}
+     */
+    void releaseInflater(final Inflater inflater) {
+        inflater.reset();
+        for (int i = 0; i < inflaters.length(); i++) {
+            if ((inflaters.get(i) == null) && inflaters.compareAndSet(i, null, inflater)) {
+                return;
+            }
+        }
+        inflater.end();
+    }
+
+    /**
+     * Lease scratch arena of calling thread. A nested decode on the same thread gets a throwaway arena.
+     *
+     * @return leased scratch arena
+     */
+    CapScratch acquireScratch() {
+        final CapScratch scratch = scratches.get();
+        if (scratch.lease()) {
+            return scratch;
+        }
+
+        final CapScratch nested = new CapScratch(maxScratchSize);
+        nested.lease();
+        return nested;
+    }
+}
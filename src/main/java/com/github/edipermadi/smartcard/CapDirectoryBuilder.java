@@ -1,10 +1,10 @@
 package com.github.edipermadi.smartcard;
 
-import com.google.gson.annotations.SerializedName;
-import org.apache.commons.lang3.StringUtils;
-
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * Javacard CAP directory component builder
@@ -12,7 +12,8 @@ import java.util.List;
  * @author Edi Permadi
  */
 final class CapDirectoryBuilder {
-    private final List<Integer> componentSizes = new ArrayList<>();
+    private int[] componentSizes = new int[CapDecoderImplBase.COMPONENT_COUNT];
+    private int componentSizeCount;
     private Cap.Directory.StaticFieldSizeInfo staticFieldSize;
     private int importCount = -1;
     private int appletCount = -1;
@@ -70,7 +71,10 @@ final class CapDirectoryBuilder {
         if ((componentSize < 0) || (componentSize > 65535)) {
             throw new IllegalArgumentException("invalid component size");
         }
-        componentSizes.add(componentSize);
+        if (componentSizeCount == componentSizes.length) {
+            componentSizes = Arrays.copyOf(componentSizes, componentSizes.length * 2);
+        }
+        componentSizes[componentSizeCount++] = componentSize;
         return this;
     }
 
@@ -81,10 +85,10 @@ final class CapDirectoryBuilder {
      * @param aid AID of custom component
      * @return this instance
      */
-    CapDirectoryBuilder addCustomComponent(final int tag, final String aid) {
+    CapDirectoryBuilder addCustomComponent(final int tag, final Aid aid) {
         if ((tag < 128) || (tag > 255)) {
             throw new IllegalArgumentException("tag of custom components is invalid");
-        } else if (StringUtils.isEmpty(aid)) {
+        } else if (aid == null) {
             throw new IllegalArgumentException("aid of custom components is empty");
         }
         customComponents.add(new CapDirectoryCustomComponentInfo(tag, aid));
@@ -97,7 +101,7 @@ final class CapDirectoryBuilder {
      * @return CAP directory object
      */
     Cap.Directory build() {
-        if (componentSizes.isEmpty()) {
+        if (componentSizeCount == 0) {
             throw new IllegalStateException("component sizes is mandatory");
         } else if (staticFieldSize == null) {
             throw new IllegalStateException("static-field-size is mandatory");
@@ -117,11 +121,8 @@ final class CapDirectoryBuilder {
      */
     static final class CapDirectoryCustomComponentInfo implements Cap.Directory.CustomComponentInfo {
 
-        @SerializedName("tag")
         private final int tag;
-
-        @SerializedName("aid")
-        private final String aid;
+        private final Aid aid;
 
         /**
          * Class constructor
@@ -129,7 +130,7 @@ final class CapDirectoryBuilder {
          * @param tag custom component tag
          * @param aid custom component aid
          */
-        CapDirectoryCustomComponentInfo(final int tag, final String aid) {
+        CapDirectoryCustomComponentInfo(final int tag, final Aid aid) {
             this.tag = tag;
             this.aid = aid;
         }
@@ -140,7 +141,7 @@ final class CapDirectoryBuilder {
         }
 
         @Override
-        public String getAID() {
+        public Aid getAID() {
             return aid;
         }
     }
@@ -151,13 +152,8 @@ final class CapDirectoryBuilder {
      * @author Edi Permadi
      */
     static final class CapDirectoryStaticFieldSizeInfo implements Cap.Directory.StaticFieldSizeInfo {
-        @SerializedName("image_size")
         private final int imageSize;
-
-        @SerializedName("array_init_count")
         private final int arrayInitCount;
-
-        @SerializedName("array_init_size")
         private final int arrayInitSize;
 
         /**
@@ -195,19 +191,10 @@ final class CapDirectoryBuilder {
      * @author Edi Permadi
      */
     static final class CapDirectory implements Cap.Directory {
-        @SerializedName("component_sizes")
-        private final List<Integer> componentSizes;
-
-        @SerializedName("static_field_size")
+        private final int[] componentSizes;
         private final StaticFieldSizeInfo staticFieldSize;
-
-        @SerializedName("import_count")
         private final int importCount;
-
-        @SerializedName("applet_count")
         private final int appletCount;
-
-        @SerializedName("custom_components")
         private final List<CustomComponentInfo> customComponents;
 
         /**
@@ -219,7 +206,7 @@ final class CapDirectoryBuilder {
             if (builder == null) {
                 throw new IllegalArgumentException("builder is null");
             }
-            this.componentSizes = builder.componentSizes;
+            this.componentSizes = Arrays.copyOf(builder.componentSizes, builder.componentSizeCount);
             this.staticFieldSize = builder.staticFieldSize;
             this.importCount = builder.importCount;
             this.appletCount = builder.appletCount;
@@ -228,7 +215,20 @@ final class CapDirectoryBuilder {
 
         @Override
         public List<Integer> getComponentSizes() {
-            return componentSizes;
+            return new ComponentSizeList(componentSizes);
+        }
+
+        @Override
+        public int getComponentSize(final int tag) {
+            if ((tag < 1) || (tag > CapDecoderImplBase.COMPONENT_COUNT)) {
+                throw new IllegalArgumentException("invalid component tag");
+            }
+            return (tag <= componentSizes.length) ? componentSizes[tag - 1] : 0;
+        }
+
+        @Override
+        public int getComponentSizeCount() {
+            return componentSizes.length;
         }
 
         @Override
@@ -253,7 +253,30 @@ final class CapDirectoryBuilder {
 
         @Override
         public String toString() {
-            return null;
+            return CapJsonWriter.toJson(this, true);
+        }
+    }
+
+    /**
+     * Read-only list view of component sizes, values are boxed on access only
+     *
+     * @author Edi Permadi
+     */
+    private static final class ComponentSizeList extends AbstractList<Integer> implements RandomAccess {
+        private final int[] componentSizes;
+
+        ComponentSizeList(final int[] componentSizes) {
+            this.componentSizes = componentSizes;
+        }
+
+        @Override
+        public Integer get(final int index) {
+            return componentSizes[index];
+        }
+
+        @Override
+        public int size() {
+            return componentSizes.length;
         }
     }
 }
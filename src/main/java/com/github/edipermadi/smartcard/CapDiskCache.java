@@ -0,0 +1,445 @@
+package com.github.edipermadi.smartcard;
+
+import com.github.edipermadi.smartcard.exc.CapException;
+import com.github.edipermadi.smartcard.exc.CapFormatException;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent CAP cache. Validated component payloads of decoded CAP files are appended to a cache file keyed by
+ * SHA-256 digest of archive bytes, along with size and modification time of the file they were read from. Cache file
+ * is memory-mapped, cached CAP objects are flyweight views over the mapping, hence a warm cache serves unchanged files
+ * without reading nor deserializing anything but a few record headers. This class is thread-safe.
+ * <pre>
+ * cache_file {
+ *     u4 magic
+ *     u2 format_version
+ *     u2 decoder_mask
+ *     record records[]
+ * }
+ *
+ * record {
+ *     u4 length
+ *     u4 crc32
+ *     u1 kind
+ *     u1 body[length - 1]
+ * }
+ *
+ * payload_record_body {
+ *     u1 digest[32]
+ *     u1 count
+ *     {
+ *         u1 tag
+ *         u4 length
+ *         u1 payload[length]
+ *     } components[count]
+ * }
+ *
+ * file_record_body {
+ *     u1 digest[32]
+ *     u8 size
+ *     u8 last_modified
+ *     u2 path_length
+ *     u1 path[path_length]
+ * }
+ * </pre>
+ * Checksum of a record covers its kind and body. On open, records are verified and the file is truncated at the first
+ * record failing verification. A cache file written when a different set of components had decoders is discarded on
+ * open. The cache file only grows, file records made stale by a changed file and payload records no longer referenced
+ * by any file record are never removed, delete the cache file to reclaim their space. A cache file is locked
+ * exclusively while open, hence it is used by one cache instance at a time.
+ *
+ * @author Edi Permadi
+ */
+public final class CapDiskCache implements Closeable {
+    private static final int MAGIC = 0x43415043;
+    private static final int FORMAT_VERSION = 2;
+    private static final int SIZE_FILE_HEADER = 8;
+    private static final int SIZE_RECORD_HEADER = 9;
+    private static final int SIZE_DIGEST = 32;
+    private static final int KIND_PAYLOAD = 1;
+    private static final int KIND_FILE = 2;
+    private static final CapDecodeOptions OPTIONS = new CapDecodeOptionsBuilder()
+            .setComponents(CapComponent.values())
+            .setOptionalComponents(CapComponent.APPLET, CapComponent.IMPORT, CapComponent.CONSTANT_POOL,
+                    CapComponent.CLASS, CapComponent.METHOD, CapComponent.STATIC_FIELD,
+                    CapComponent.REFERENCE_LOCATION, CapComponent.EXPORT, CapComponent.DESCRIPTOR,
+                    CapComponent.DEBUG)
+            .build();
+
+    private final FileChannel channel;
+    private final CapViewDecoderImpl decoder = new CapViewDecoderImpl();
+    private final Map<ByteBuffer, Integer> payloadRecords = new HashMap<>();
+    private final Map<String, FileRecord> fileRecords = new HashMap<>();
+    private MappedByteBuffer mapping;
+    private long end;
+
+    /**
+     * Class constructor
+     *
+     * @param channel cache file channel
+     */
+    private CapDiskCache(final FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Open cache file, creating it when missing
+     *
+     * @param file path to cache file
+     * @return CAP cache
+     * @throws IOException when cache file cannot be read, is not a CAP cache file or is locked by another cache
+     */
+    public static CapDiskCache open(final Path file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("file is null");
+        }
+
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (tryLock(channel) == null) {
+                throw new IOException("cache file " + file + " is locked");
+            }
+
+            final CapDiskCache cache = new CapDiskCache(channel);
+            cache.load();
+            return cache;
+        } catch (final IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Decode CAP file, unchanged files are served from cache without being read
+     *
+     * @param path path to CAP file
+     * @return CAP object
+     * @throws CapException when decoding failed
+     */
+    public Cap decode(final Path path) throws CapException {
+        if (path == null) {
+            throw new IllegalArgumentException("path is null");
+        }
+
+        try {
+            final String name = path.toAbsolutePath().normalize().toString();
+            final long size = Files.size(path);
+            final long lastModified = Files.getLastModifiedTime(path).toMillis();
+            synchronized (this) {
+                final FileRecord record = fileRecords.get(name);
+                if ((record != null) && (record.size == size) && (record.lastModified == lastModified)) {
+                    final Integer offset = payloadRecords.get(record.digest);
+                    if (offset != null) {
+                        return view(offset);
+                    }
+                }
+            }
+
+            final byte[] archive = Files.readAllBytes(path);
+            final ByteBuffer digest = ByteBuffer.wrap(DigestUtils.sha256(archive));
+            final Cap cap = decode(archive, digest);
+            synchronized (this) {
+                appendFileRecord(new FileRecord(digest, size, lastModified), name);
+            }
+            return cap;
+        } catch (final IOException ex) {
+            throw new CapFormatException("failed to read CAP file " + path, ex);
+        }
+    }
+
+    /**
+     * Decode CAP archive stream, archives with cached digest are not decoded again
+     *
+     * @param stream CAP archive stream, it is not closed
+     * @return CAP object
+     * @throws CapException when decoding failed
+     */
+    public Cap decode(final InputStream stream) throws CapException {
+        if (stream == null) {
+            throw new IllegalArgumentException("stream is null");
+        }
+
+        try {
+            final byte[] archive = IOUtils.toByteArray(stream);
+            return decode(archive, ByteBuffer.wrap(DigestUtils.sha256(archive)));
+        } catch (final IOException ex) {
+            throw new CapFormatException("unrecognized CAP format", ex);
+        }
+    }
+
+    /**
+     * Get count of cached CAP archives
+     *
+     * @return count of cached archives
+     */
+    public synchronized int size() {
+        return payloadRecords.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            channel.force(true);
+            channel.close();
+        }
+    }
+
+    private Cap decode(final byte[] archive, final ByteBuffer digest) throws CapException, IOException {
+        synchronized (this) {
+            final Integer offset = payloadRecords.get(digest);
+            if (offset != null) {
+                return view(offset);
+            }
+        }
+
+        final ByteBuffer[] payloads;
+        final Cap cap;
+        try (final CapDecodeContext context = new CapDecodeContext(OPTIONS, null, null)) {
+            payloads = decoder.read(new ByteArrayInputStream(archive), context);
+            cap = decoder.assemble(payloads, context);
+        }
+
+        synchronized (this) {
+            if (!payloadRecords.containsKey(digest)) {
+                appendPayloadRecord(digest, payloads);
+            }
+        }
+        return cap;
+    }
+
+    private void load() throws IOException {
+        final long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("CAP cache file is too large");
+        }
+
+        final int decoderMask = decoderMask();
+        if (size < SIZE_FILE_HEADER) {
+            reset(decoderMask);
+            return;
+        }
+
+        mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        if (mapping.getInt(0) != MAGIC) {
+            throw new IOException("not a CAP cache file");
+        } else if (((mapping.getShort(4) & 0xffff) != FORMAT_VERSION)
+                || ((mapping.getShort(6) & 0xffff) != decoderMask)) {
+            /* written by a decoder handling other components */
+            reset(decoderMask);
+            return;
+        }
+
+        /* index records, a corrupted or truncated tail left by an interrupted write is dropped */
+        int offset = SIZE_FILE_HEADER;
+        while (offset + SIZE_RECORD_HEADER <= size) {
+            final int length = mapping.getInt(offset);
+            if ((length < 1) || (length > size - offset - 8) || (mapping.getInt(offset + 4) != checksum(offset))) {
+                break;
+            }
+
+            final int kind = mapping.get(offset + 8) & 0xff;
+            final int body = offset + SIZE_RECORD_HEADER;
+            if ((kind == KIND_PAYLOAD) && (length > SIZE_DIGEST)) {
+                payloadRecords.put(digest(body), offset);
+            } else if ((kind == KIND_FILE) && (length > SIZE_DIGEST + 18)) {
+                final FileRecord record = new FileRecord(digest(body), mapping.getLong(body + SIZE_DIGEST),
+                        mapping.getLong(body + SIZE_DIGEST + 8));
+                final byte[] name = new byte[mapping.getShort(body + SIZE_DIGEST + 16) & 0xffff];
+                for (int i = 0; i < name.length; i++) {
+                    name[i] = mapping.get(body + SIZE_DIGEST + 18 + i);
+                }
+                fileRecords.put(new String(name, StandardCharsets.UTF_8), record);
+            } else {
+                break;
+            }
+            offset += 8 + length;
+        }
+
+        end = offset;
+        if (end < size) {
+            channel.truncate(end);
+        }
+    }
+
+    private void reset(final int decoderMask) throws IOException {
+        channel.truncate(0);
+        final ByteBuffer header = ByteBuffer.allocate(SIZE_FILE_HEADER);
+        header.putInt(MAGIC).putShort((short) FORMAT_VERSION).putShort((short) decoderMask).flip();
+        write(header, 0);
+        end = SIZE_FILE_HEADER;
+        mapping = null;
+    }
+
+    private void appendPayloadRecord(final ByteBuffer digest, final ByteBuffer[] payloads) throws IOException {
+        int count = 0;
+        int length = 1 + SIZE_DIGEST + 1;
+        for (final ByteBuffer payload : payloads) {
+            if (payload != null) {
+                count++;
+                length += 5 + payload.remaining();
+            }
+        }
+
+        final ByteBuffer record = ByteBuffer.allocate(8 + length);
+        record.putInt(length).putInt(0).put((byte) KIND_PAYLOAD).put(digest.duplicate()).put((byte) count);
+        for (int tag = 0; tag < payloads.length; tag++) {
+            if (payloads[tag] != null) {
+                record.put((byte) tag).putInt(payloads[tag].remaining()).put(payloads[tag].duplicate());
+            }
+        }
+        payloadRecords.put(digest, append(record));
+    }
+
+    private void appendFileRecord(final FileRecord record, final String name) throws IOException {
+        final FileRecord previous = fileRecords.get(name);
+        if ((previous != null) && previous.digest.equals(record.digest) && (previous.size == record.size)
+                && (previous.lastModified == record.lastModified)) {
+            return;
+        }
+
+        final byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+        if (encoded.length > 0xffff) {
+            /* not worth caching */
+            return;
+        }
+
+        final int length = 1 + SIZE_DIGEST + 18 + encoded.length;
+        final ByteBuffer buffer = ByteBuffer.allocate(8 + length);
+        buffer.putInt(length).putInt(0).put((byte) KIND_FILE).put(record.digest.duplicate())
+                .putLong(record.size).putLong(record.lastModified)
+                .putShort((short) encoded.length).put(encoded);
+        append(buffer);
+        fileRecords.put(name, record);
+    }
+
+    /**
+     * Append record to cache file
+     *
+     * @param record filled record buffer, its checksum field is set here
+     * @return offset of record
+     * @throws IOException when writing failed
+     */
+    private int append(final ByteBuffer record) throws IOException {
+        if (end + record.position() > Integer.MAX_VALUE) {
+            throw new IOException("CAP cache file is full");
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(record.array(), 8, record.position() - 8);
+        record.putInt(4, (int) crc.getValue()).flip();
+
+        final int offset = (int) end;
+        write(record, offset);
+        end = offset + record.limit();
+        return offset;
+    }
+
+    private void write(final ByteBuffer buffer, final long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+    }
+
+    /**
+     * Create view CAP over payload record
+     *
+     * @param offset offset of payload record
+     * @return view CAP object
+     * @throws IOException when mapping cache file failed
+     */
+    private Cap view(final int offset) throws IOException {
+        if ((mapping == null) || (offset >= mapping.capacity())) {
+            /* record has been appended after mapping, views handed out before keep the previous mapping */
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+        }
+
+        final int[] offsets = new int[CapDecoderImplBase.COMPONENT_COUNT + 1];
+        final int[] lengths = new int[CapDecoderImplBase.COMPONENT_COUNT + 1];
+        Arrays.fill(offsets, -1);
+        final int count = mapping.get(offset + SIZE_RECORD_HEADER + SIZE_DIGEST) & 0xff;
+        int position = offset + SIZE_RECORD_HEADER + SIZE_DIGEST + 1;
+        for (int i = 0; i < count; i++) {
+            final int tag = mapping.get(position) & 0xff;
+            final int length = mapping.getInt(position + 1);
+            if (tag < offsets.length) {
+                offsets[tag] = position + 5;
+                lengths[tag] = length;
+            }
+            position += 5 + length;
+        }
+        return new CapViewDecoderImpl.ViewCap(mapping, offsets, lengths, null);
+    }
+
+    private int checksum(final int offset) {
+        final ByteBuffer record = mapping.duplicate();
+        record.limit(offset + 8 + mapping.getInt(offset)).position(offset + 8);
+        final CRC32 crc = new CRC32();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    private ByteBuffer digest(final int offset) {
+        final byte[] digest = new byte[SIZE_DIGEST];
+        for (int i = 0; i < SIZE_DIGEST; i++) {
+            digest[i] = mapping.get(offset + i);
+        }
+        return ByteBuffer.wrap(digest);
+    }
+
+    private static FileLock tryLock(final FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (final OverlappingFileLockException ex) {
+            /* lock is already held by this virtual machine */
+            return null;
+        }
+    }
+
+    private static int decoderMask() {
+        int mask = 0;
+        for (int tag = 1; tag <= CapDecoderImplBase.COMPONENT_COUNT; tag++) {
+            if (CapDecoderImplBase.hasDecoder(tag)) {
+                mask |= 1 << tag;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * File record, it tells which archive a file held when it was last decoded
+     *
+     * @author Edi Permadi
+     */
+    private static final class FileRecord {
+        private final ByteBuffer digest;
+        private final long size;
+        private final long lastModified;
+
+        FileRecord(final ByteBuffer digest, final long size, final long lastModified) {
+            this.digest = digest;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
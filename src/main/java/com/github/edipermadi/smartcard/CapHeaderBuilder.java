@@ -1,8 +1,5 @@
 package com.github.edipermadi.smartcard;
 
-import com.google.gson.annotations.SerializedName;
-import org.apache.commons.lang3.StringUtils;
-
 /**
  * CAP header builder class
  *
@@ -49,10 +46,10 @@ final class CapHeaderBuilder {
      * @param aid     package AID
      * @return this instance
      */
-    CapHeaderBuilder setPackageInfo(final int version, final String aid) {
+    CapHeaderBuilder setPackageInfo(final int version, final Aid aid) {
         if (version < 0) {
             throw new IllegalArgumentException("invalid package info version");
-        } else if (StringUtils.isEmpty(aid)) {
+        } else if (aid == null) {
             throw new IllegalArgumentException("invalid package AID");
         }
         this.packageInfo = new CapHeaderPackageInfo(version, aid);
@@ -93,16 +90,9 @@ final class CapHeaderBuilder {
      * @author Edi Permadi
      */
     static final class CapHeader implements Cap.Header {
-        @SerializedName("version")
         private final int version;
-
-        @SerializedName("flags")
         private final int flags;
-
-        @SerializedName("package")
         CapHeaderPackageInfo packageInfo;
-
-        @SerializedName("package_name")
         CapHeaderPackageNameInfo packageName;
 
         /**
@@ -137,6 +127,11 @@ final class CapHeaderBuilder {
         public PackageNameInfo getPackageName() {
             return packageName;
         }
+
+        @Override
+        public String toString() {
+            return CapJsonWriter.toJson(this, true);
+        }
     }
 
     /**
@@ -145,18 +140,15 @@ final class CapHeaderBuilder {
      * @author Edi Permadi
      */
     static final class CapHeaderPackageInfo implements Cap.Header.PackageInfo {
-        @SerializedName("version")
         private final int version;
-
-        @SerializedName("aid")
-        private final String aid;
+        private final Aid aid;
 
         /**
          * Class constructor
          * @param version information version
          * @param aid package AID
          */
-        CapHeaderPackageInfo(final int version, final String aid) {
+        CapHeaderPackageInfo(final int version, final Aid aid) {
             this.version = version;
             this.aid = aid;
         }
@@ -167,7 +159,7 @@ final class CapHeaderBuilder {
         }
 
         @Override
-        public String getAID() {
+        public Aid getAID() {
             return aid;
         }
     }
@@ -178,7 +170,6 @@ final class CapHeaderBuilder {
      * @author Edi Permadi
      */
     static final class CapHeaderPackageNameInfo implements Cap.Header.PackageNameInfo {
-        @SerializedName("name")
         private final String name;
 
         /**
@@ -0,0 +1,176 @@
+package com.github.edipermadi.smartcard;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Javacard CAP import component builder. Imported package AIDs are packed back to back into a single byte array and
+ * versions into a short array, no object is kept per imported package.
+ *
+ * @author Edi Permadi
+ */
+final class CapImportBuilder {
+    private byte[] aids = new byte[64];
+    private int[] aidOffsets = new int[9];
+    private short[] versions = new short[8];
+    private int count;
+
+    /**
+     * Add imported package
+     *
+     * @param version imported package version encoded in 0xaabb (major, minor)
+     * @param aid     array holding imported package AID
+     * @param offset  offset of imported package AID
+     * @param length  length of imported package AID
+     * @return this instance
+     */
+    CapImportBuilder addPackage(final int version, final byte[] aid, final int offset, final int length) {
+        if ((length < 5) || (length > 16)) {
+            throw new IllegalArgumentException("invalid AID length");
+        }
+
+        if (count == versions.length) {
+            versions = Arrays.copyOf(versions, count * 2);
+            aidOffsets = Arrays.copyOf(aidOffsets, count * 2 + 1);
+        }
+        final int aidOffset = aidOffsets[count];
+        if (aidOffset + length > aids.length) {
+            aids = Arrays.copyOf(aids, Math.max(aids.length * 2, aidOffset + length));
+        }
+
+        System.arraycopy(aid, offset, aids, aidOffset, length);
+        versions[count] = (short) version;
+        aidOffsets[++count] = aidOffset + length;
+        return this;
+    }
+
+    /**
+     * Build CAP import component object
+     *
+     * @param aidPool AID intern pool, null when AIDs are not interned
+     * @return CAP import component object
+     */
+    Cap.Import build(final AidPool aidPool) {
+        return new CapImport(this, aidPool);
+    }
+
+    /**
+     * CAP import component object implementation
+     *
+     * @author Edi Permadi
+     */
+    static final class CapImport implements Cap.Import {
+        private final byte[] aids;
+        private final int[] aidOffsets;
+        private final short[] versions;
+        private final AidPool aidPool;
+
+        /**
+         * Class constructor
+         *
+         * @param builder CAP import builder
+         * @param aidPool AID intern pool, null when AIDs are not interned
+         */
+        CapImport(final CapImportBuilder builder, final AidPool aidPool) {
+            this.aids = Arrays.copyOf(builder.aids, builder.aidOffsets[builder.count]);
+            this.aidOffsets = Arrays.copyOf(builder.aidOffsets, builder.count + 1);
+            this.versions = Arrays.copyOf(builder.versions, builder.count);
+            this.aidPool = aidPool;
+        }
+
+        @Override
+        public int getPackageCount() {
+            return versions.length;
+        }
+
+        @Override
+        public Aid getAID(final int index) {
+            checkIndex(index);
+            final int offset = aidOffsets[index];
+            final int length = aidOffsets[index + 1] - offset;
+            return (aidPool == null) ? Aid.valueOf(aids, offset, length) : aidPool.intern(aids, offset, length);
+        }
+
+        @Override
+        public int getVersion(final int index) {
+            checkIndex(index);
+            return versions[index] & 0xffff;
+        }
+
+        @Override
+        public int indexOf(final Aid aid) {
+            if (aid == null) {
+                throw new IllegalArgumentException("aid is null");
+            }
+
+            for (int i = 0; i < versions.length; i++) {
+                final int offset = aidOffsets[i];
+                if (aidOffsets[i + 1] - offset != aid.getLength()) {
+                    continue;
+                }
+
+                int j = 0;
+                while ((j < aid.getLength()) && ((aids[offset + j] & 0xff) == aid.getByte(j))) {
+                    j++;
+                }
+                if (j == aid.getLength()) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public List<Cap.Header.PackageInfo> getPackages() {
+            return new PackageList(this);
+        }
+
+        @Override
+        public String toString() {
+            return CapJsonWriter.toJson(this, true);
+        }
+
+        private void checkIndex(final int index) {
+            if ((index < 0) || (index >= versions.length)) {
+                throw new IndexOutOfBoundsException("invalid import index " + index);
+            }
+        }
+    }
+
+    /**
+     * Read-only list view of imported packages, entries are created on access only
+     *
+     * @author Edi Permadi
+     */
+    static final class PackageList extends AbstractList<Cap.Header.PackageInfo> implements RandomAccess {
+        private final Cap.Import component;
+
+        PackageList(final Cap.Import component) {
+            this.component = component;
+        }
+
+        @Override
+        public Cap.Header.PackageInfo get(final int index) {
+            final int version = component.getVersion(index);
+            final Aid aid = component.getAID(index);
+            return new Cap.Header.PackageInfo() {
+                @Override
+                public int getVersion() {
+                    return version;
+                }
+
+                @Override
+                public Aid getAID() {
+                    return aid;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return component.getPackageCount();
+        }
+    }
+}
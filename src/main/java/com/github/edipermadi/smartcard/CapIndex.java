@@ -0,0 +1,297 @@
+package com.github.edipermadi.smartcard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Corpus-wide index of decoded CAP files. CAP files are added along with a caller defined location, such as a path or
+ * a catalog key, and are looked up by package AID, applet AID, RID or package name. Keys are held in primitive open
+ * addressing tables, a lookup costs a few array probes regardless of index size. This class is thread-safe, lookups
+ * may run concurrently.
+ *
+ * @param <L> type of CAP location
+ * @author Edi Permadi
+ */
+public final class CapIndex<L> {
+    private static final int KIND_PACKAGE = 0x100;
+    private static final int KIND_APPLET = 0x200;
+    private static final int KIND_RID = 0x300;
+    private static final int KIND_NAME = 0x400;
+    private static final Aid[] NO_APPLETS = new Aid[0];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final CapIndexTable table = new CapIndexTable();
+    private Object[] locations = new Object[64];
+    private Aid[] packageAids = new Aid[64];
+    private Aid[][] appletAids = new Aid[64][];
+    private String[] packageNames = new String[64];
+    private int[][] entries = new int[64][];
+    private int[] freeIds = new int[16];
+    private int freeCount;
+    private int nextId;
+    private int count;
+
+    /**
+     * Add CAP file to index
+     *
+     * @param location location of CAP file
+     * @param cap      decoded CAP object, its header component is mandatory
+     * @return entry identifier, used to remove entry
+     */
+    public int add(final L location, final Cap cap) {
+        if (location == null) {
+            throw new IllegalArgumentException("location is null");
+        } else if ((cap == null) || (cap.getHeader() == null)) {
+            throw new IllegalArgumentException("CAP header is missing");
+        }
+
+        final Aid packageAid = cap.getHeader().getPackage().getAID();
+        final Cap.Header.PackageNameInfo nameInfo = cap.getHeader().getPackageName();
+        final String packageName = (nameInfo == null) ? null : nameInfo.getName();
+        Aid[] applets = NO_APPLETS;
+        if (cap.getApplet() != null) {
+            final List<Cap.Applet.Info> infos = cap.getApplet().getApplets();
+            applets = new Aid[infos.size()];
+            for (int i = 0; i < applets.length; i++) {
+                applets[i] = infos.get(i).getAID();
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            final int id = allocateId();
+            locations[id] = location;
+            packageAids[id] = packageAid;
+            appletAids[id] = applets;
+            packageNames[id] = packageName;
+            index(id, true);
+            count++;
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove entry from index
+     *
+     * @param id entry identifier returned by {@link #add(Object, Cap)}
+     * @return true when entry has been removed
+     */
+    public boolean remove(final int id) {
+        lock.writeLock().lock();
+        try {
+            if ((id < 0) || (id >= nextId) || (locations[id] == null)) {
+                return false;
+            }
+
+            index(id, false);
+            locations[id] = null;
+            packageAids[id] = null;
+            appletAids[id] = null;
+            packageNames[id] = null;
+            if (freeCount == freeIds.length) {
+                freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+            }
+            freeIds[freeCount++] = id;
+            count--;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get location of entry
+     *
+     * @param id entry identifier
+     * @return location of CAP file, null when entry does not exist
+     */
+    @SuppressWarnings("unchecked")
+    public L getLocation(final int id) {
+        lock.readLock().lock();
+        try {
+            return ((id < 0) || (id >= nextId)) ? null : (L) locations[id];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get count of indexed CAP files
+     *
+     * @return count of entries
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find CAP files by package AID
+     *
+     * @param aid package AID
+     * @return locations of matching CAP files
+     */
+    public List<L> findByPackageAid(final Aid aid) {
+        return find(aid, KIND_PACKAGE);
+    }
+
+    /**
+     * Find CAP files by applet AID
+     *
+     * @param aid applet AID
+     * @return locations of CAP files holding applet
+     */
+    public List<L> findByAppletAid(final Aid aid) {
+        return find(aid, KIND_APPLET);
+    }
+
+    /**
+     * Find CAP files whose package or any applet belongs to the registered application provider of given AID
+     *
+     * @param aid RID, or any AID starting with RID
+     * @return locations of matching CAP files
+     */
+    public List<L> findByRid(final Aid aid) {
+        if (aid == null) {
+            throw new IllegalArgumentException("aid is null");
+        }
+        return find(aid.getRID(), KIND_RID);
+    }
+
+    /**
+     * Find CAP files by package name
+     *
+     * @param name package name
+     * @return locations of matching CAP files
+     */
+    public List<L> findByPackageName(final String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("name is null");
+        }
+
+        lock.readLock().lock();
+        try {
+            final int[] ids = table.find(hash(name), name.length(), KIND_NAME);
+            final List<L> result = new ArrayList<>(ids.length);
+            for (final int id : ids) {
+                if (name.equals(packageNames[id])) {
+                    result.add(location(id));
+                }
+            }
+            return Collections.unmodifiableList(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<L> find(final Aid aid, final int kind) {
+        if (aid == null) {
+            throw new IllegalArgumentException("aid is null");
+        }
+
+        lock.readLock().lock();
+        try {
+            final int[] ids = table.find(aid.getHigh(), aid.getLow(), kind | aid.getLength());
+            final List<L> result = new ArrayList<>(ids.length);
+            for (final int id : ids) {
+                result.add(location(id));
+            }
+            return Collections.unmodifiableList(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void index(final int id, final boolean add) {
+        /* keys are visited in the same order on removal, each one matching entry handle recorded on addition */
+        final Aid packageAid = packageAids[id];
+        final Aid[] applets = appletAids[id];
+        final Aid[] rids = new Aid[applets.length + 1];
+        final int[] handles = add ? new int[applets.length + rids.length + 2] : entries[id];
+        int ridCount = 0;
+        int n = update(packageAid, KIND_PACKAGE, id, handles, 0, add);
+        rids[ridCount++] = packageAid.getRID();
+        for (int i = 0; i < applets.length; i++) {
+            if (!contains(applets, i, applets[i])) {
+                n = update(applets[i], KIND_APPLET, id, handles, n, add);
+            }
+            final Aid rid = applets[i].getRID();
+            if (!contains(rids, ridCount, rid)) {
+                rids[ridCount++] = rid;
+            }
+        }
+        for (int i = 0; i < ridCount; i++) {
+            n = update(rids[i], KIND_RID, id, handles, n, add);
+        }
+
+        final String packageName = packageNames[id];
+        if (packageName != null) {
+            n = update(hash(packageName), packageName.length(), KIND_NAME, id, handles, n, add);
+        }
+        entries[id] = add ? Arrays.copyOf(handles, n) : null;
+    }
+
+    private int update(final Aid aid, final int kind, final int id, final int[] handles, final int n,
+                       final boolean add) {
+        return update(aid.getHigh(), aid.getLow(), kind | aid.getLength(), id, handles, n, add);
+    }
+
+    private int update(final long high, final long low, final int kind, final int id, final int[] handles,
+                       final int n, final boolean add) {
+        if (add) {
+            handles[n] = table.put(high, low, kind, id);
+        } else {
+            table.remove(high, low, kind, handles[n]);
+        }
+        return n + 1;
+    }
+
+    private int allocateId() {
+        if (freeCount > 0) {
+            return freeIds[--freeCount];
+        }
+
+        if (nextId == locations.length) {
+            final int capacity = locations.length * 2;
+            locations = Arrays.copyOf(locations, capacity);
+            packageAids = Arrays.copyOf(packageAids, capacity);
+            appletAids = Arrays.copyOf(appletAids, capacity);
+            packageNames = Arrays.copyOf(packageNames, capacity);
+            entries = Arrays.copyOf(entries, capacity);
+        }
+        return nextId++;
+    }
+
+    private static boolean contains(final Aid[] aids, final int count, final Aid aid) {
+        for (int i = 0; i < count; i++) {
+            if (aids[i].equals(aid)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private L location(final int id) {
+        return (L) locations[id];
+    }
+
+    private static long hash(final String name) {
+        /* 64 bit FNV-1a, matches are confirmed against stored name */
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            h = (h ^ name.charAt(i)) * 0x100000001b3L;
+        }
+        return h;
+    }
+}
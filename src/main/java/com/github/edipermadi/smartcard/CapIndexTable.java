@@ -0,0 +1,231 @@
+package com.github.edipermadi.smartcard;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing multimap of 128 bit keys to int values, backed by primitive arrays. A key is made of two longs and
+ * a positive int kind. Each distinct key takes one slot, which heads a doubly linked posting list of its values held
+ * in a shared entry pool, so that adding and removing a value costs a single key lookup regardless of how many values
+ * share the key. Values are addressed by entry handle returned when added, callers are responsible for not adding
+ * the same key and value pair twice. Slots of keys left without values are turned into tombstones until the table is
+ * rehashed. This class is not thread-safe.
+ *
+ * @author Edi Permadi
+ */
+final class CapIndexTable {
+    private static final int EMPTY = 0;
+    private static final int REMOVED = -1;
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] highs;
+    private long[] lows;
+    private int[] kinds;
+    private int[] heads;
+    private int[] counts;
+    private int keyCount;
+    private int used;
+
+    private int[] values = new int[INITIAL_CAPACITY];
+    private int[] nexts = new int[INITIAL_CAPACITY];
+    private int[] prevs = new int[INITIAL_CAPACITY];
+    private int entryCount;
+    private int freeEntry = NONE;
+    private int size;
+
+    /**
+     * Class constructor
+     */
+    CapIndexTable() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Get count of stored key and value pairs
+     *
+     * @return count of pairs
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Store key and value pair
+     *
+     * @param high  high bits of key
+     * @param low   low bits of key
+     * @param kind  kind of key, positive
+     * @param value value
+     * @return entry handle of pair, used to remove pair
+     */
+    int put(final long high, final long low, final int kind, final int value) {
+        int slot = lookup(high, low, kind);
+        if (slot < 0) {
+            slot = insert(high, low, kind);
+        }
+
+        final int entry = allocateEntry();
+        final int head = heads[slot];
+        values[entry] = value;
+        prevs[entry] = NONE;
+        nexts[entry] = head;
+        if (head != NONE) {
+            prevs[head] = entry;
+        }
+        heads[slot] = entry;
+        counts[slot]++;
+        size++;
+        return entry;
+    }
+
+    /**
+     * Remove key and value pair
+     *
+     * @param high  high bits of key
+     * @param low   low bits of key
+     * @param kind  kind of key, positive
+     * @param entry entry handle of pair, as returned by {@link #put(long, long, int, int)}
+     * @return true when pair has been removed
+     */
+    boolean remove(final long high, final long low, final int kind, final int entry) {
+        final int slot = lookup(high, low, kind);
+        if ((slot < 0) || (entry < 0) || (entry >= entryCount) || ((prevs[entry] == NONE) && (heads[slot] != entry))) {
+            return false;
+        }
+
+        final int prev = prevs[entry];
+        final int next = nexts[entry];
+        if (prev == NONE) {
+            heads[slot] = next;
+        } else {
+            nexts[prev] = next;
+        }
+        if (next != NONE) {
+            prevs[next] = prev;
+        }
+
+        if (--counts[slot] == 0) {
+            kinds[slot] = REMOVED;
+            keyCount--;
+        }
+        nexts[entry] = freeEntry;
+        prevs[entry] = NONE;
+        freeEntry = entry;
+        size--;
+        return true;
+    }
+
+    /**
+     * Find values of key
+     *
+     * @param high high bits of key
+     * @param low  low bits of key
+     * @param kind kind of key, positive
+     * @return values of key, most recently added first
+     */
+    int[] find(final long high, final long low, final int kind) {
+        final int slot = lookup(high, low, kind);
+        if (slot < 0) {
+            return new int[0];
+        }
+
+        final int[] result = new int[counts[slot]];
+        int count = 0;
+        for (int entry = heads[slot]; entry != NONE; entry = nexts[entry]) {
+            result[count++] = values[entry];
+        }
+        return result;
+    }
+
+    private int lookup(final long high, final long low, final int kind) {
+        final int mask = kinds.length - 1;
+        for (int slot = hash(high, low, kind) & mask; kinds[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if ((highs[slot] == high) && (lows[slot] == low) && (kinds[slot] == kind)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int insert(final long high, final long low, final int kind) {
+        if ((used + 1) * 4 >= kinds.length * 3) {
+            /* grow only when live keys fill half of table, otherwise purge tombstones */
+            rehash((keyCount + 1) * 2 >= kinds.length ? kinds.length * 2 : kinds.length);
+        }
+
+        final int mask = kinds.length - 1;
+        int slot = hash(high, low, kind) & mask;
+        while (kinds[slot] > 0) {
+            slot = (slot + 1) & mask;
+        }
+
+        if (kinds[slot] == EMPTY) {
+            used++;
+        }
+        highs[slot] = high;
+        lows[slot] = low;
+        kinds[slot] = kind;
+        heads[slot] = NONE;
+        counts[slot] = 0;
+        keyCount++;
+        return slot;
+    }
+
+    private int allocateEntry() {
+        if (freeEntry != NONE) {
+            final int entry = freeEntry;
+            freeEntry = nexts[entry];
+            return entry;
+        }
+
+        if (entryCount == values.length) {
+            final int capacity = entryCount * 2;
+            values = Arrays.copyOf(values, capacity);
+            nexts = Arrays.copyOf(nexts, capacity);
+            prevs = Arrays.copyOf(prevs, capacity);
+        }
+        return entryCount++;
+    }
+
+    private void rehash(final int capacity) {
+        final long[] oldHighs = highs;
+        final long[] oldLows = lows;
+        final int[] oldKinds = kinds;
+        final int[] oldHeads = heads;
+        final int[] oldCounts = counts;
+        allocate(capacity);
+
+        final int mask = capacity - 1;
+        for (int i = 0; i < oldKinds.length; i++) {
+            if (oldKinds[i] > 0) {
+                int slot = hash(oldHighs[i], oldLows[i], oldKinds[i]) & mask;
+                while (kinds[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                highs[slot] = oldHighs[i];
+                lows[slot] = oldLows[i];
+                kinds[slot] = oldKinds[i];
+                heads[slot] = oldHeads[i];
+                counts[slot] = oldCounts[i];
+                keyCount++;
+                used++;
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        highs = new long[capacity];
+        lows = new long[capacity];
+        kinds = new int[capacity];
+        heads = new int[capacity];
+        counts = new int[capacity];
+        keyCount = 0;
+        used = 0;
+    }
+
+    private static int hash(final long high, final long low, final int kind) {
+        long h = high * 0x9e3779b97f4a7c15L + low;
+        h = (h ^ (h >>> 29) ^ kind) * 0xbf58476d1ce4e5b9L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
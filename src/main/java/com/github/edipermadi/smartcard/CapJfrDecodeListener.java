@@ -0,0 +1,176 @@
+package com.github.edipermadi.smartcard;
+
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+
+import java.util.Arrays;
+
+/**
+ * Decode listener emitting Java Flight Recorder events, one per decode call and one per read component. Events begin
+ * when decode call or component read starts, component timings are gathered per thread while decoding and events are
+ * committed along with package AID once decode call completes.
+ * Events cost nothing beyond gathering timings unless a recording has enabled them, otherwise no event is allocated and
+ * package AID is not looked up. Instances are thread-safe and meant to be shared.
+ *
+ * @author Edi Permadi
+ */
+public final class CapJfrDecodeListener extends CapDecodeListener {
+    private static final EventType DECODE_EVENT_TYPE = EventType.getEventType(CapDecodeEvent.class);
+    private static final EventType COMPONENT_EVENT_TYPE = EventType.getEventType(CapComponentEvent.class);
+
+    private final ThreadLocal<Trace> traces = ThreadLocal.withInitial(Trace::new);
+
+    private CapJfrDecodeListener() {
+    }
+
+    /**
+     * Create flight recorder decode listener
+     *
+     * @return flight recorder decode listener, {@link CapDecodeListener#NOOP} when runtime has no flight recorder
+     */
+    public static CapDecodeListener create() {
+        try {
+            return FlightRecorder.isAvailable() ? new CapJfrDecodeListener() : NOOP;
+        } catch (final LinkageError ex) {
+            /* jdk.jfr is missing from runtime */
+            return NOOP;
+        }
+    }
+
+    @Override
+    public void onDecodeStarted() {
+        final Trace trace = traces.get();
+        trace.reset();
+        if (trace.decodeEvent != null) {
+            trace.decodeEvent.begin();
+        }
+    }
+
+    @Override
+    public void onEntryStarted(final int tag) {
+        final CapComponentEvent event = traces.get().componentEvent(tag);
+        if (event != null) {
+            event.begin();
+        }
+    }
+
+    @Override
+    public void onEntryRead(final int tag, final long compressedSize, final long size, final long elapsedNanos) {
+        final Trace trace = traces.get();
+        final CapComponentEvent event = trace.componentEvent(tag);
+        if (event != null) {
+            event.end();
+        }
+        trace.mask |= 1 << tag;
+        trace.compressedSizes[tag] = compressedSize;
+        trace.sizes[tag] = size;
+        trace.readTimes[tag] = elapsedNanos;
+    }
+
+    @Override
+    public void onInflate(final int tag, final long compressedSize, final long size, final long elapsedNanos) {
+        traces.get().inflateTimes[tag] = elapsedNanos;
+    }
+
+    @Override
+    public void onComponentParsed(final int tag, final int size, final long elapsedNanos) {
+        final Trace trace = traces.get();
+        final CapComponentEvent event = trace.componentEvent(tag);
+        if (event != null) {
+            event.end();
+        }
+        trace.parseTimes[tag] = elapsedNanos;
+    }
+
+    @Override
+    public void onDecoded(final Cap cap, final long elapsedNanos) {
+        commit(cap, true);
+    }
+
+    @Override
+    public void onDecodeAborted(final long elapsedNanos) {
+        commit(null, false);
+    }
+
+    private void commit(final Cap cap, final boolean succeeded) {
+        final Trace trace = traces.get();
+        if (!trace.recording) {
+            return;
+        }
+
+        final Aid packageAid = packageAid(cap);
+        int componentCount = 0;
+        long compressedSize = 0;
+        long size = 0;
+        for (int tag = 1; tag <= CapDecoderImplBase.COMPONENT_COUNT; tag++) {
+            if ((trace.mask & (1 << tag)) != 0) {
+                if (trace.componentEvents[tag] != null) {
+                    trace.componentEvents[tag].emit(packageAid, tag, trace.compressedSizes[tag], trace.sizes[tag],
+                            trace.readTimes[tag], trace.inflateTimes[tag], trace.parseTimes[tag]);
+                }
+                componentCount++;
+                compressedSize += Math.max(trace.compressedSizes[tag], 0);
+                size += trace.sizes[tag];
+            }
+        }
+        if (trace.decodeEvent != null) {
+            trace.decodeEvent.emit(packageAid, succeeded, componentCount, compressedSize, size);
+        }
+    }
+
+    private static Aid packageAid(final Cap cap) {
+        try {
+            final Cap.Header header = (cap == null) ? null : cap.getHeader();
+            return (header == null) ? null : header.getPackage().getAID();
+        } catch (final RuntimeException ex) {
+            /* lazily decoded header may turn out to be malformed, it is reported to whoever reads it */
+            return null;
+        }
+    }
+
+    /**
+     * Component timings of the decode call running on current thread
+     *
+     * @author Edi Permadi
+     */
+    private static final class Trace {
+        private final long[] compressedSizes = new long[CapDecoderImplBase.COMPONENT_COUNT + 1];
+        private final long[] sizes = new long[CapDecoderImplBase.COMPONENT_COUNT + 1];
+        private final long[] readTimes = new long[CapDecoderImplBase.COMPONENT_COUNT + 1];
+        private final long[] inflateTimes = new long[CapDecoderImplBase.COMPONENT_COUNT + 1];
+        private final long[] parseTimes = new long[CapDecoderImplBase.COMPONENT_COUNT + 1];
+        private final CapComponentEvent[] componentEvents =
+                new CapComponentEvent[CapDecoderImplBase.COMPONENT_COUNT + 1];
+        private CapDecodeEvent decodeEvent;
+        private boolean componentEventsEnabled;
+        private boolean recording;
+        private int mask;
+
+        /**
+         * Get event of component read by current decode call
+         *
+         * @param tag component tag
+         * @return component event, null when component events are not being recorded
+         */
+        private CapComponentEvent componentEvent(final int tag) {
+            if (componentEventsEnabled && (componentEvents[tag] == null)) {
+                componentEvents[tag] = new CapComponentEvent();
+            }
+            return componentEvents[tag];
+        }
+
+        /**
+         * Forget previous decode call, events are created anew since committed events cannot be reused, and only when
+         * a recording has enabled them
+         */
+        private void reset() {
+            Arrays.fill(inflateTimes, 0L);
+            Arrays.fill(parseTimes, 0L);
+            Arrays.fill(componentEvents, null);
+            decodeEvent = DECODE_EVENT_TYPE.isEnabled() ? new CapDecodeEvent() : null;
+            componentEventsEnabled = COMPONENT_EVENT_TYPE.isEnabled();
+            recording = (decodeEvent != null) || componentEventsEnabled;
+            mask = 0;
+        }
+    }
+}
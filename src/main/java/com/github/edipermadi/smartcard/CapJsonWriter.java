@@ -0,0 +1,486 @@
+package com.github.edipermadi.smartcard;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Streaming JSON serializer of CAP objects. Components are written field by field through their interfaces straight
+ * to the underlying writer, no reflection is involved and no intermediate string is built. Missing components and
+ * fields are omitted. JSON allows a single top level value, several CAP objects are written through one writer by
+ * enclosing them between {@link #beginCorpus()} and {@link #endCorpus()}, which wrap them in a JSON array. This class
+ * is not thread-safe.
+ *
+ * @author Edi Permadi
+ */
+public final class CapJsonWriter implements Closeable, Flushable {
+    private final Writer out;
+    private final JsonWriter writer;
+
+    /**
+     * Class constructor
+     *
+     * @param out    character stream receiving JSON
+     * @param pretty whether JSON is indented
+     */
+    public CapJsonWriter(final Writer out, final boolean pretty) {
+        if (out == null) {
+            throw new IllegalArgumentException("out is null");
+        }
+
+        this.out = out;
+        this.writer = new JsonWriter(out);
+        if (pretty) {
+            writer.setIndent("  ");
+        }
+    }
+
+    /**
+     * Class constructor, JSON is encoded in UTF-8
+     *
+     * @param out    byte stream receiving JSON
+     * @param pretty whether JSON is indented
+     */
+    public CapJsonWriter(final OutputStream out, final boolean pretty) {
+        this(new OutputStreamWriter(out, StandardCharsets.UTF_8), pretty);
+    }
+
+    /**
+     * Serialize CAP object into JSON string
+     *
+     * @param cap    CAP object
+     * @param pretty whether JSON is indented
+     * @return JSON string
+     */
+    public static String toJson(final Cap cap, final boolean pretty) {
+        return toJson(pretty, json -> json.write(cap));
+    }
+
+    /**
+     * Serialize CAP header component into JSON string
+     *
+     * @param header CAP header component
+     * @param pretty whether JSON is indented
+     * @return JSON string
+     */
+    static String toJson(final Cap.Header header, final boolean pretty) {
+        return toJson(pretty, json -> json.write(header));
+    }
+
+    /**
+     * Serialize CAP directory component into JSON string
+     *
+     * @param directory CAP directory component
+     * @param pretty    whether JSON is indented
+     * @return JSON string
+     */
+    static String toJson(final Cap.Directory directory, final boolean pretty) {
+        return toJson(pretty, json -> json.write(directory));
+    }
+
+    /**
+     * Serialize CAP applet component into JSON string
+     *
+     * @param applet CAP applet component
+     * @param pretty whether JSON is indented
+     * @return JSON string
+     */
+    static String toJson(final Cap.Applet applet, final boolean pretty) {
+        return toJson(pretty, json -> json.write(applet));
+    }
+
+    /**
+     * Serialize CAP import component into JSON string
+     *
+     * @param importComponent CAP import component
+     * @param pretty          whether JSON is indented
+     * @return JSON string
+     */
+    static String toJson(final Cap.Import importComponent, final boolean pretty) {
+        return toJson(pretty, json -> json.write(importComponent));
+    }
+
+    /**
+     * Serialize CAP constant pool component into JSON string
+     *
+     * @param constantPool CAP constant pool component
+     * @param pretty       whether JSON is indented
+     * @return JSON string
+     */
+    static String toJson(final Cap.ConstantPool constantPool, final boolean pretty) {
+        return toJson(pretty, json -> json.write(constantPool));
+    }
+
+    /**
+     * Serialize CAP class component into JSON string
+     *
+     * @param classComponent CAP class component
+     * @param pretty         whether JSON is indented
+     * @return JSON string
+     */
+    static String toJson(final Cap.ClassComponent classComponent, final boolean pretty) {
+        return toJson(pretty, json -> json.write(classComponent));
+    }
+
+    /**
+     * Serialize CAP method component into JSON string
+     *
+     * @param methodComponent CAP method component
+     * @param pretty          whether JSON is indented
+     * @return JSON string
+     */
+    static String toJson(final Cap.MethodComponent methodComponent, final boolean pretty) {
+        return toJson(pretty, json -> json.write(methodComponent));
+    }
+
+    /**
+     * Begin corpus, a JSON array holding CAP objects written until {@link #endCorpus()}
+     *
+     * @return this instance
+     * @throws IOException when writing failed
+     */
+    public CapJsonWriter beginCorpus() throws IOException {
+        writer.beginArray();
+        return this;
+    }
+
+    /**
+     * End corpus begun by {@link #beginCorpus()}
+     *
+     * @return this instance
+     * @throws IOException when writing failed
+     */
+    public CapJsonWriter endCorpus() throws IOException {
+        writer.endArray();
+        return this;
+    }
+
+    /**
+     * Write CAP object
+     *
+     * @param cap CAP object
+     * @return this instance
+     * @throws IOException when writing failed
+     */
+    public CapJsonWriter write(final Cap cap) throws IOException {
+        if (cap == null) {
+            throw new IllegalArgumentException("cap is null");
+        }
+
+        writer.beginObject();
+        if (cap.getHeader() != null) {
+            writer.name("header");
+            write(cap.getHeader());
+        }
+        if (cap.getDirectory() != null) {
+            writer.name("directory");
+            write(cap.getDirectory());
+        }
+        if (cap.getApplet() != null) {
+            writer.name("applet");
+            write(cap.getApplet());
+        }
+        if (cap.getImport() != null) {
+            writer.name("import");
+            write(cap.getImport());
+        }
+        if (cap.getConstantPool() != null) {
+            writer.name("constant_pool");
+            write(cap.getConstantPool());
+        }
+        if (cap.getClassComponent() != null) {
+            writer.name("class");
+            write(cap.getClassComponent());
+        }
+        if (cap.getMethodComponent() != null) {
+            writer.name("method");
+            write(cap.getMethodComponent());
+        }
+        writer.endObject();
+        return this;
+    }
+
+    /**
+     * Write CAP header component
+     *
+     * @param header CAP header component
+     * @return this instance
+     * @throws IOException when writing failed
+     */
+    public CapJsonWriter write(final Cap.Header header) throws IOException {
+        writer.beginObject();
+        writer.name("version").value(header.getVersion());
+        writer.name("flags").value(header.getFlags());
+
+        final Cap.Header.PackageInfo packageInfo = header.getPackage();
+        if (packageInfo != null) {
+            writer.name("package").beginObject();
+            writer.name("version").value(packageInfo.getVersion());
+            writeAid(packageInfo.getAID());
+            writer.endObject();
+        }
+
+        final Cap.Header.PackageNameInfo packageName = header.getPackageName();
+        if (packageName != null) {
+            writer.name("package_name").beginObject();
+            if (packageName.getName() != null) {
+                writer.name("name").value(packageName.getName());
+            }
+            writer.endObject();
+        }
+        writer.endObject();
+        return this;
+    }
+
+    /**
+     * Write CAP directory component
+     *
+     * @param directory CAP directory component
+     * @return this instance
+     * @throws IOException when writing failed
+     */
+    public CapJsonWriter write(final Cap.Directory directory) throws IOException {
+        writer.beginObject();
+        writer.name("component_sizes").beginArray();
+        for (int tag = 1; tag <= directory.getComponentSizeCount(); tag++) {
+            writer.value(directory.getComponentSize(tag));
+        }
+        writer.endArray();
+
+        final Cap.Directory.StaticFieldSizeInfo staticFieldSize = directory.getStaticFieldSize();
+        if (staticFieldSize != null) {
+            writer.name("static_field_size").beginObject();
+            writer.name("image_size").value(staticFieldSize.getImageSize());
+            writer.name("array_init_count").value(staticFieldSize.getArrayInitCount());
+            writer.name("array_init_size").value(staticFieldSize.getArrayInitSize());
+            writer.endObject();
+        }
+
+        writer.name("import_count").value(directory.getImportCount());
+        writer.name("applet_count").value(directory.getAppletCount());
+        writer.name("custom_components").beginArray();
+        for (final Cap.Directory.CustomComponentInfo customComponent : directory.getCustomComponents()) {
+            writer.beginObject();
+            writer.name("tag").value(customComponent.getTag());
+            writeAid(customComponent.getAID());
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+        return this;
+    }
+
+    /**
+     * Write CAP applet component
+     *
+     * @param applet CAP applet component
+     * @return this instance
+     * @throws IOException when writing failed
+     */
+    public CapJsonWriter write(final Cap.Applet applet) throws IOException {
+        writer.beginObject();
+        writer.name("applets").beginArray();
+        final List<Cap.Applet.Info> applets = applet.getApplets();
+        for (final Cap.Applet.Info info : applets) {
+            writer.beginObject();
+            writeAid(info.getAID());
+            writer.name("install_method_offset").value(info.getInstallMethodOffset());
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+        return this;
+    }
+
+    /**
+     * Write CAP import component
+     *
+     * @param importComponent CAP import component
+     * @return this instance
+     * @throws IOException when writing failed
+     */
+    public CapJsonWriter write(final Cap.Import importComponent) throws IOException {
+        writer.beginObject();
+        writer.name("packages").beginArray();
+        for (int i = 0; i < importComponent.getPackageCount(); i++) {
+            writer.beginObject();
+            writer.name("version").value(importComponent.getVersion(i));
+            writeAid(importComponent.getAID(i));
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+        return this;
+    }
+
+    /**
+     * Write CAP constant pool component
+     *
+     * @param constantPool CAP constant pool component
+     * @return this instance
+     * @throws IOException when writing failed
+     */
+    public CapJsonWriter write(final Cap.ConstantPool constantPool) throws IOException {
+        writer.beginObject();
+        writer.name("entries").beginArray();
+        for (int i = 0; i < constantPool.getCount(); i++) {
+            writer.beginObject();
+            writer.name("tag").value(constantPool.getTag(i));
+            writer.name("info").value(constantPool.getInfo(i));
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+        return this;
+    }
+
+    /**
+     * Write CAP class component, virtual method tables are written flattened
+     *
+     * @param classComponent CAP class component
+     * @return this instance
+     * @throws IOException when writing failed
+     */
+    public CapJsonWriter write(final Cap.ClassComponent classComponent) throws IOException {
+        writer.beginObject();
+        writer.name("interfaces").beginArray();
+        for (final Cap.ClassComponent.InterfaceInfo interfaceInfo : classComponent.getInterfaces()) {
+            writer.beginObject();
+            writer.name("offset").value(interfaceInfo.getOffset());
+            writer.name("flags").value(interfaceInfo.getFlags());
+            writer.name("super_interfaces").beginArray();
+            for (int i = 0; i < interfaceInfo.getSuperInterfaceCount(); i++) {
+                writer.value(interfaceInfo.getSuperInterface(i));
+            }
+            writer.endArray();
+            if (interfaceInfo.getName() != null) {
+                writer.name("name").value(interfaceInfo.getName());
+            }
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.name("classes").beginArray();
+        for (final Cap.ClassComponent.ClassInfo classInfo : classComponent.getClasses()) {
+            writer.beginObject();
+            writer.name("offset").value(classInfo.getOffset());
+            writer.name("flags").value(classInfo.getFlags());
+            writer.name("super_class").value(classInfo.getSuperClass());
+            writer.name("declared_instance_size").value(classInfo.getDeclaredInstanceSize());
+            writer.name("first_reference_token").value(classInfo.getFirstReferenceToken());
+            writer.name("reference_count").value(classInfo.getReferenceCount());
+            writer.name("public_method_table_base").value(classInfo.getPublicMethodTableBase());
+            writer.name("public_methods").beginArray();
+            for (int token = 0; token < classInfo.getPublicMethodTableSize(); token++) {
+                writer.value(classInfo.getPublicMethod(token));
+            }
+            writer.endArray();
+            writer.name("package_method_table_base").value(classInfo.getPackageMethodTableBase());
+            writer.name("package_methods").beginArray();
+            for (int token = 0; token < classInfo.getPackageMethodTableSize(); token++) {
+                writer.value(classInfo.getPackageMethod(token));
+            }
+            writer.endArray();
+            writer.name("interfaces").beginArray();
+            for (final Cap.ClassComponent.ImplementedInterfaceInfo implemented : classInfo.getInterfaces()) {
+                writer.beginObject();
+                writer.name("interface").value(implemented.getInterface());
+                writer.name("tokens").beginArray();
+                for (int token = 0; token < implemented.getMethodCount(); token++) {
+                    writer.value(implemented.getMethodToken(token));
+                }
+                writer.endArray();
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+        return this;
+    }
+
+    /**
+     * Write CAP method component, bytecode is summarized by its length
+     *
+     * @param methodComponent CAP method component
+     * @return this instance
+     * @throws IOException when writing failed
+     */
+    public CapJsonWriter write(final Cap.MethodComponent methodComponent) throws IOException {
+        writer.beginObject();
+        writer.name("exception_handlers").beginArray();
+        for (final Cap.MethodComponent.ExceptionHandlerInfo handler : methodComponent.getExceptionHandlers()) {
+            writer.beginObject();
+            writer.name("start_offset").value(handler.getStartOffset());
+            writer.name("active_length").value(handler.getActiveLength());
+            writer.name("stop").value(handler.isStop());
+            writer.name("handler_offset").value(handler.getHandlerOffset());
+            writer.name("catch_type_index").value(handler.getCatchTypeIndex());
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.name("methods").beginArray();
+        for (int i = 0; i < methodComponent.getMethodCount(); i++) {
+            final Cap.MethodComponent.MethodInfo method = methodComponent.getMethod(i);
+            writer.beginObject();
+            writer.name("offset").value(method.getOffset());
+            writer.name("flags").value(method.getFlags());
+            writer.name("max_stack").value(method.getMaxStack());
+            writer.name("nargs").value(method.getNargs());
+            writer.name("max_locals").value(method.getMaxLocals());
+            writer.name("bytecode_length").value(method.getBytecodeLength());
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private static String toJson(final boolean pretty, final Task task) {
+        final StringWriter out = new StringWriter();
+        try {
+            final CapJsonWriter json = new CapJsonWriter(out, pretty);
+            task.write(json);
+            json.flush();
+        } catch (final IOException ex) {
+            throw new IllegalStateException("failed to write JSON", ex);
+        }
+        return out.toString();
+    }
+
+    private void writeAid(final Aid aid) throws IOException {
+        if (aid != null) {
+            /* json writer emits separators and opening quote, hex digits need no escaping and go straight out */
+            writer.name("aid").jsonValue("\"");
+            aid.appendHex(out);
+            out.write('"');
+        }
+    }
+
+    /**
+     * Write task run by {@link #toJson(boolean, Task)}
+     *
+     * @author Edi Permadi
+     */
+    private interface Task {
+        void write(CapJsonWriter json) throws IOException;
+    }
+}
@@ -0,0 +1,209 @@
+package com.github.edipermadi.smartcard;
+
+import com.github.edipermadi.smartcard.exc.CapDecodeException;
+import com.github.edipermadi.smartcard.exc.CapException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Lazy CAP File decoder implementation. Component payloads are kept raw and each component is decoded on first
+ * access, hence decoding errors of a component are reported by its getter as {@link IllegalStateException}.
+ *
+ * @author Edi Permadi
+ */
+public class CapLazyDecoderImpl extends CapDecoderImpl {
+
+    /**
+     * Class constructor, decoder allocates fresh buffers and inflaters for every decode call
+     */
+    public CapLazyDecoderImpl() {
+        super();
+    }
+
+    /**
+     * Class constructor of pooled decoder. Payloads retained by resulting CAP object are copied out of scratch
+     * buffers of pool.
+     *
+     * @param pool decoder pool
+     */
+    public CapLazyDecoderImpl(final CapDecoderPool pool) {
+        super(pool);
+    }
+
+    @Override
+    Cap assemble(final ByteBuffer[] payloads, final CapDecodeContext context) throws CapException {
+        return new LazyCap(payloads, context.isPooled(), context.getOptions().getAidPool());
+    }
+
+    /**
+     * Lazy CAP object implementation. Decoded components are immutable and published through volatile fields, a
+     * component may be decoded more than once under contention but every reader observes a fully decoded instance.
+     *
+     * @author Edi Permadi
+     */
+    static final class LazyCap implements Cap, CapRetainedSize {
+        private final ByteBuffer headerPayload;
+        private final ByteBuffer directoryPayload;
+        private final ByteBuffer appletPayload;
+        private final ByteBuffer importPayload;
+        private final ByteBuffer constantPoolPayload;
+        private final ByteBuffer classPayload;
+        private final ByteBuffer methodPayload;
+        private final ByteBuffer descriptorPayload;
+        private final AidPool aidPool;
+        private volatile Header header;
+        private volatile Directory directory;
+        private volatile Applet applet;
+        private volatile Import importComponent;
+        private volatile ConstantPool constantPool;
+        private volatile ClassComponent classComponent;
+        private volatile MethodComponent methodComponent;
+
+        /**
+         * Class constructor
+         *
+         * @param payloads component payloads indexed by component tag
+         * @param copy     whether retained payloads are copied, scratch buffers of pooled decoders are reused once
+         *                 decode call completes
+         * @param aidPool  AID intern pool, null when AIDs are not interned
+         */
+        LazyCap(final ByteBuffer[] payloads, final boolean copy, final AidPool aidPool) {
+            this.headerPayload = retain(payloads[TAG_COMPONENT_Header], copy);
+            this.directoryPayload = retain(payloads[TAG_COMPONENT_Directory], copy);
+            this.appletPayload = retain(payloads[TAG_COMPONENT_Applet], copy);
+            this.importPayload = retain(payloads[TAG_COMPONENT_Import], copy);
+            this.constantPoolPayload = retain(payloads[TAG_COMPONENT_ConstantPool], copy);
+            this.classPayload = retain(payloads[TAG_COMPONENT_Class], copy);
+            this.methodPayload = retain(payloads[TAG_COMPONENT_Method], copy);
+            this.descriptorPayload = (methodPayload == null)
+                    ? null
+                    : retain(payloads[TAG_COMPONENT_Descriptor], copy);
+            this.aidPool = aidPool;
+        }
+
+        @Override
+        public Header getHeader() {
+            Header result = header;
+            if ((result == null) && (headerPayload != null)) {
+                try {
+                    result = decodeCapHeader(headerPayload, aidPool);
+                } catch (final CapDecodeException ex) {
+                    throw new IllegalStateException("failed to decode CAP header", ex);
+                }
+                header = result;
+            }
+            return result;
+        }
+
+        @Override
+        public Directory getDirectory() {
+            Directory result = directory;
+            if ((result == null) && (directoryPayload != null)) {
+                try {
+                    result = decodeCapDirectory(directoryPayload, aidPool);
+                } catch (final CapDecodeException ex) {
+                    throw new IllegalStateException("failed to decode CAP directory", ex);
+                }
+                directory = result;
+            }
+            return result;
+        }
+
+        @Override
+        public Applet getApplet() {
+            Applet result = applet;
+            if ((result == null) && (appletPayload != null)) {
+                try {
+                    result = decodeCapApplet(appletPayload, aidPool);
+                } catch (final CapDecodeException ex) {
+                    throw new IllegalStateException("failed to decode CAP applet", ex);
+                }
+                applet = result;
+            }
+            return result;
+        }
+
+        @Override
+        public Import getImport() {
+            Import result = importComponent;
+            if ((result == null) && (importPayload != null)) {
+                try {
+                    result = decodeCapImport(importPayload, aidPool);
+                } catch (final CapDecodeException ex) {
+                    throw new IllegalStateException("failed to decode CAP import", ex);
+                }
+                importComponent = result;
+            }
+            return result;
+        }
+
+        @Override
+        public ConstantPool getConstantPool() {
+            ConstantPool result = constantPool;
+            if ((result == null) && (constantPoolPayload != null)) {
+                try {
+                    result = decodeCapConstantPool(constantPoolPayload);
+                } catch (final CapDecodeException ex) {
+                    throw new IllegalStateException("failed to decode CAP constant pool", ex);
+                }
+                constantPool = result;
+            }
+            return result;
+        }
+
+        @Override
+        public ClassComponent getClassComponent() {
+            ClassComponent result = classComponent;
+            if ((result == null) && (classPayload != null)) {
+                try {
+                    result = decodeCapClass(classPayload, getCapVersion(headerPayload));
+                } catch (final CapDecodeException ex) {
+                    throw new IllegalStateException("failed to decode CAP class component", ex);
+                }
+                classComponent = result;
+            }
+            return result;
+        }
+
+        @Override
+        public MethodComponent getMethodComponent() {
+            MethodComponent result = methodComponent;
+            if ((result == null) && (methodPayload != null)) {
+                try {
+                    result = decodeCapMethod(methodPayload, CapMethodOffsetCollector.collect(descriptorPayload,
+                            headerPayload, appletPayload, constantPoolPayload, classPayload));
+                } catch (final CapDecodeException ex) {
+                    throw new IllegalStateException("failed to decode CAP method component", ex);
+                }
+                methodComponent = result;
+            }
+            return result;
+        }
+
+        @Override
+        public long getRetainedSize() {
+            return OBJECT_SIZE + sizeOf(headerPayload) + sizeOf(directoryPayload) + sizeOf(appletPayload)
+                    + sizeOf(importPayload) + sizeOf(constantPoolPayload) + sizeOf(classPayload)
+                    + sizeOf(methodPayload) + sizeOf(descriptorPayload);
+        }
+
+        @Override
+        public String toString() {
+            return CapJsonWriter.toJson(this, true);
+        }
+
+        private static long sizeOf(final ByteBuffer payload) {
+            return (payload == null) ? 0 : OBJECT_SIZE + payload.remaining();
+        }
+
+        private static ByteBuffer retain(final ByteBuffer payload, final boolean copy) {
+            if ((payload == null) || !copy) {
+                return payload;
+            }
+
+            final byte[] array = new byte[payload.remaining()];
+            payload.duplicate().get(array);
+            return ByteBuffer.wrap(array);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.github.edipermadi.smartcard;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Javacard CAP method component builder. Exception handlers are built eagerly, methods are only indexed by offset of
+ * their header, headers and bytecode are read out of component payload on access.
+ *
+ * @author Edi Permadi
+ */
+final class CapMethodBuilder {
+    private final List<Cap.MethodComponent.ExceptionHandlerInfo> exceptionHandlers = new ArrayList<>();
+    private int[] methodOffsets = new int[32];
+    private int methodCount;
+    private int size;
+
+    /**
+     * Set component size
+     *
+     * @param size component size, excluding tag and size fields
+     * @return this instance
+     */
+    CapMethodBuilder setSize(final int size) {
+        this.size = size;
+        return this;
+    }
+
+    /**
+     * Add exception handler
+     *
+     * @param startOffset    offset of first bytecode covered by handler
+     * @param activeLength   count of bytecode bytes covered by handler
+     * @param stop           whether handler is the last one covering its active range
+     * @param handlerOffset  offset of handler bytecode
+     * @param catchTypeIndex constant pool index of caught class
+     * @return this instance
+     */
+    CapMethodBuilder addExceptionHandler(final int startOffset, final int activeLength, final boolean stop,
+                                         final int handlerOffset, final int catchTypeIndex) {
+        exceptionHandlers.add(new CapExceptionHandlerInfo(startOffset, activeLength, stop, handlerOffset,
+                catchTypeIndex));
+        return this;
+    }
+
+    /**
+     * Add method
+     *
+     * @param offset method offset, greater than offset of previously added method
+     * @return this instance
+     */
+    CapMethodBuilder addMethod(final int offset) {
+        if ((methodCount > 0) && (offset <= methodOffsets[methodCount - 1])) {
+            throw new IllegalArgumentException("methods are not in ascending offset order");
+        }
+
+        if (methodCount == methodOffsets.length) {
+            methodOffsets = Arrays.copyOf(methodOffsets, methodCount * 2);
+        }
+        methodOffsets[methodCount++] = offset;
+        return this;
+    }
+
+    /**
+     * Build CAP method component object
+     *
+     * @param payload CAP method component payload, retained by resulting object
+     * @return CAP method component object
+     */
+    Cap.MethodComponent build(final ByteBuffer payload) {
+        if (payload == null) {
+            throw new IllegalArgumentException("payload is null");
+        }
+
+        /* method offsets are relative to info item, which follows tag and size */
+        final ByteBuffer info = payload.duplicate();
+        info.position(payload.position() + 3).limit(payload.position() + 3 + size);
+        return new CapMethodComponent(this, info.slice().asReadOnlyBuffer());
+    }
+
+    /**
+     * CAP method component object implementation, methods are looked up by offset with a binary search
+     *
+     * @author Edi Permadi
+     */
+    static final class CapMethodComponent implements Cap.MethodComponent {
+        private final List<ExceptionHandlerInfo> exceptionHandlers;
+        private final int[] methodOffsets;
+        private final ByteBuffer info;
+
+        /**
+         * Class constructor
+         *
+         * @param builder CAP method builder
+         * @param info    read-only buffer spanning info item of component
+         */
+        CapMethodComponent(final CapMethodBuilder builder, final ByteBuffer info) {
+            this.exceptionHandlers = builder.exceptionHandlers.isEmpty()
+                    ? Collections.<ExceptionHandlerInfo>emptyList()
+                    : Collections.unmodifiableList(new ArrayList<>(builder.exceptionHandlers));
+            this.methodOffsets = Arrays.copyOf(builder.methodOffsets, builder.methodCount);
+            this.info = info;
+        }
+
+        @Override
+        public List<ExceptionHandlerInfo> getExceptionHandlers() {
+            return exceptionHandlers;
+        }
+
+        @Override
+        public int getMethodCount() {
+            return methodOffsets.length;
+        }
+
+        @Override
+        public MethodInfo getMethod(final int index) {
+            if ((index < 0) || (index >= methodOffsets.length)) {
+                throw new IndexOutOfBoundsException("invalid method index " + index);
+            }
+            return new CapMethodInfo(index);
+        }
+
+        @Override
+        public MethodInfo findMethod(final int offset) {
+            final int index = Arrays.binarySearch(methodOffsets, offset);
+            return (index < 0) ? null : new CapMethodInfo(index);
+        }
+
+        @Override
+        public List<MethodInfo> getMethods() {
+            return new MethodList();
+        }
+
+        @Override
+        public String toString() {
+            return CapJsonWriter.toJson(this, true);
+        }
+
+        /**
+         * Read-only list view of methods, entries are created on access only
+         *
+         * @author Edi Permadi
+         */
+        private final class MethodList extends AbstractList<MethodInfo> implements RandomAccess {
+            @Override
+            public MethodInfo get(final int index) {
+                return getMethod(index);
+            }
+
+            @Override
+            public int size() {
+                return methodOffsets.length;
+            }
+        }
+
+        /**
+         * Method view reading its header out of component payload, method spans up to next indexed method
+         *
+         * @author Edi Permadi
+         */
+        private final class CapMethodInfo implements MethodInfo {
+            private final int index;
+
+            private CapMethodInfo(final int index) {
+                this.index = index;
+            }
+
+            @Override
+            public int getOffset() {
+                return methodOffsets[index];
+            }
+
+            @Override
+            public int getFlags() {
+                return u1(getOffset()) >>> 4;
+            }
+
+            @Override
+            public int getMaxStack() {
+                return isExtended() ? u1(getOffset() + 1) : u1(getOffset()) & 0x0f;
+            }
+
+            @Override
+            public int getNargs() {
+                return isExtended() ? u1(getOffset() + 2) : u1(getOffset() + 1) >>> 4;
+            }
+
+            @Override
+            public int getMaxLocals() {
+                return isExtended() ? u1(getOffset() + 3) : u1(getOffset() + 1) & 0x0f;
+            }
+
+            @Override
+            public int getBytecodeLength() {
+                return getEnd() - getBytecodeOffset();
+            }
+
+            @Override
+            public ByteBuffer getBytecode() {
+                final ByteBuffer result = info.duplicate();
+                result.limit(getEnd()).position(getBytecodeOffset());
+                return result.slice();
+            }
+
+            private boolean isExtended() {
+                return (getFlags() & ACC_EXTENDED) != 0;
+            }
+
+            private int getBytecodeOffset() {
+                return getOffset() + (isExtended() ? 4 : 2);
+            }
+
+            private int getEnd() {
+                return (index + 1 < methodOffsets.length) ? methodOffsets[index + 1] : info.limit();
+            }
+
+            private int u1(final int offset) {
+                return info.get(offset) & 0xff;
+            }
+        }
+    }
+
+    /**
+     * CAP exception handler info object implementation
+     *
+     * @author Edi Permadi
+     */
+    static final class CapExceptionHandlerInfo implements Cap.MethodComponent.ExceptionHandlerInfo {
+        private final int startOffset;
+        private final int activeLength;
+        private final boolean stop;
+        private final int handlerOffset;
+        private final int catchTypeIndex;
+
+        private CapExceptionHandlerInfo(final int startOffset, final int activeLength, final boolean stop,
+                                        final int handlerOffset, final int catchTypeIndex) {
+            this.startOffset = startOffset;
+            this.activeLength = activeLength;
+            this.stop = stop;
+            this.handlerOffset = handlerOffset;
+            this.catchTypeIndex = catchTypeIndex;
+        }
+
+        @Override
+        public int getStartOffset() {
+            return startOffset;
+        }
+
+        @Override
+        public int getActiveLength() {
+            return activeLength;
+        }
+
+        @Override
+        public boolean isStop() {
+            return stop;
+        }
+
+        @Override
+        public int getHandlerOffset() {
+            return handlerOffset;
+        }
+
+        @Override
+        public int getCatchTypeIndex() {
+            return catchTypeIndex;
+        }
+    }
+}
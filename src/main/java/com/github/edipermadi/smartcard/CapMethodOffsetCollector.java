@@ -0,0 +1,178 @@
+package com.github.edipermadi.smartcard;
+
+import com.github.edipermadi.smartcard.exc.CapDecodeException;
+import com.github.edipermadi.smartcard.exc.CapDecodeMethodException;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Collector of method header offsets. Descriptor component lists every method of package along with its offset, it
+ * is the source of method offsets whenever present. Otherwise offsets are gathered out of method references held by
+ * applet, constant pool and class components, in which case bytecode of a method nothing refers to is reported as
+ * part of preceding method.
+ *
+ * @author Edi Permadi
+ */
+final class CapMethodOffsetCollector extends CapVisitor {
+    private int[] offsets = new int[32];
+    private int count;
+
+    private CapMethodOffsetCollector() {
+    }
+
+    /**
+     * Collect method header offsets
+     *
+     * @param payloads component payloads indexed by component tag, missing component has null payload
+     * @return distinct method offsets in ascending order
+     * @throws CapDecodeException when a component holding method offsets is malformed
+     */
+    static int[] collect(final ByteBuffer[] payloads) throws CapDecodeException {
+        return collect(payloads[CapDecoderImplBase.TAG_COMPONENT_Descriptor],
+                payloads[CapDecoderImplBase.TAG_COMPONENT_Header], payloads[CapDecoderImplBase.TAG_COMPONENT_Applet],
+                payloads[CapDecoderImplBase.TAG_COMPONENT_ConstantPool],
+                payloads[CapDecoderImplBase.TAG_COMPONENT_Class]);
+    }
+
+    /**
+     * Collect method header offsets. Other payloads are only read when descriptor payload is missing.
+     *
+     * @param descriptor   CAP descriptor component payload, null when missing
+     * @param header       CAP header component payload, null when missing
+     * @param applet       CAP applet component payload, null when missing
+     * @param constantPool CAP constant pool component payload, null when missing
+     * @param classPayload CAP class component payload, null when missing
+     * @return distinct method offsets in ascending order
+     * @throws CapDecodeException when a component holding method offsets is malformed
+     */
+    static int[] collect(final ByteBuffer descriptor, final ByteBuffer header, final ByteBuffer applet,
+                         final ByteBuffer constantPool, final ByteBuffer classPayload) throws CapDecodeException {
+        final CapMethodOffsetCollector collector = new CapMethodOffsetCollector();
+        if (descriptor != null) {
+            collector.parseDescriptor(descriptor);
+        } else {
+            if (applet != null) {
+                CapDecoderImpl.parseCapApplet(applet, collector);
+            }
+            if (constantPool != null) {
+                CapDecoderImpl.parseCapConstantPool(constantPool, collector);
+            }
+            if ((classPayload != null) && (header != null)) {
+                CapDecoderImpl.parseCapClass(classPayload, CapDecoderImpl.getCapVersion(header), collector);
+            }
+        }
+        return collector.toSortedArray();
+    }
+
+    @Override
+    public void visitApplet(final byte[] aid, final int offset, final int length, final int installMethodOffset) {
+        add(installMethodOffset);
+    }
+
+    @Override
+    public void visitConstant(final int index, final int tag, final int info) {
+        /* internal static method references hold method offset, external ones have high bit of package token set */
+        if ((tag == Cap.ConstantPool.TAG_STATIC_METHODREF) && ((info & 0x800000) == 0)) {
+            add(info & 0xffff);
+        }
+    }
+
+    @Override
+    public void visitPublicMethodTable(final int base, final byte[] table, final int position, final int count) {
+        addAll(table, position, count);
+    }
+
+    @Override
+    public void visitPackageMethodTable(final int base, final byte[] table, final int position, final int count) {
+        addAll(table, position, count);
+    }
+
+    /**
+     * Parse method offsets out of descriptor component. The following is the part of descriptor component being
+     * read, type descriptors following class descriptors are ignored
+     * <pre>
+     * descriptor_component {
+     *     u1 tag
+     *     u2 size
+     *     u1 class_count
+     *     class_descriptor_info classes[class_count]
+     * }
+     *
+     * class_descriptor_info {
+     *     u1 token
+     *     u1 access_flags
+     *     class_ref this_class_ref
+     *     u1 interface_count
+     *     u2 field_count
+     *     u2 method_count
+     *     class_ref interfaces[interface_count]
+     *     field_descriptor_info fields[field_count]
+     *     method_descriptor_info methods[method_count]
+     * }
+     *
+     * method_descriptor_info {
+     *     u1 token
+     *     u1 access_flags
+     *     u2 method_offset
+     *     u2 type_offset
+     *     u2 bytecode_count
+     *     u2 exception_handler_count
+     *     u2 exception_handler_index
+     * }
+     * </pre>
+     * Interface methods have no method info, their method offset is zero.
+     *
+     * @param payload CAP descriptor component payload
+     * @throws CapDecodeException when decoding failed
+     */
+    private void parseDescriptor(final ByteBuffer payload) throws CapDecodeException {
+        final CapBuffer reader = new CapBuffer(payload, CapDecoderImplBase.TAG_COMPONENT_Descriptor);
+        final int componentTag = reader.u1();
+        if (componentTag != CapDecoderImplBase.TAG_COMPONENT_Descriptor) {
+            throw CapDecodeMethodException.invalidDescriptorTag(componentTag);
+        }
+
+        reader.skip(2);
+        final int classCount = reader.u1();
+        for (int i = 0; i < classCount; i++) {
+            reader.skip(4);
+            final int interfaceCount = reader.u1();
+            final int fieldCount = reader.u2();
+            final int methodCount = reader.u2();
+            reader.skip(2 * interfaceCount + 7 * fieldCount);
+            for (int j = 0; j < methodCount; j++) {
+                reader.skip(2);
+                final int methodOffset = reader.u2();
+                reader.skip(8);
+                if (methodOffset != 0) {
+                    add(methodOffset);
+                }
+            }
+        }
+    }
+
+    private void addAll(final byte[] table, final int position, final int count) {
+        for (int i = 0; i < count; i++) {
+            add(((table[position + 2 * i] & 0xff) << 8) | (table[position + 2 * i + 1] & 0xff));
+        }
+    }
+
+    private void add(final int offset) {
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+        }
+        offsets[count++] = offset;
+    }
+
+    private int[] toSortedArray() {
+        Arrays.sort(offsets, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if ((distinct == 0) || (offsets[distinct - 1] != offsets[i])) {
+                offsets[distinct++] = offsets[i];
+            }
+        }
+        return Arrays.copyOf(offsets, distinct);
+    }
+}
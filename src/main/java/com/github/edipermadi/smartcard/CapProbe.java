@@ -0,0 +1,181 @@
+package com.github.edipermadi.smartcard;
+
+import com.github.edipermadi.smartcard.exc.CapException;
+import com.github.edipermadi.smartcard.exc.CapFormatException;
+import org.apache.commons.io.input.CloseShieldInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * CAP header probe. Identifies CAP package by reading nothing but header component, reading stops as soon as header
+ * component has been parsed.
+ *
+ * @author Edi Permadi
+ */
+public final class CapProbe {
+    private final int version;
+    private final int flags;
+    private final int packageVersion;
+    private final Aid packageAID;
+
+    /**
+     * Class constructor
+     *
+     * @param visitor header visitor
+     */
+    private CapProbe(final HeaderVisitor visitor) {
+        this.version = visitor.version;
+        this.flags = visitor.flags;
+        this.packageVersion = visitor.packageVersion;
+        this.packageAID = visitor.packageAID;
+    }
+
+    /**
+     * Probe CAP file by scanning archive stream up to header component
+     *
+     * @param stream CAP archive stream, it is not closed
+     * @return CAP probe result
+     * @throws CapException when header component is missing or malformed
+     */
+    public static CapProbe probe(final InputStream stream) throws CapException {
+        if (stream == null) {
+            throw new IllegalArgumentException("stream is null");
+        }
+
+        /* archive stream releases its inflater on close, caller stream is shielded from it */
+        try (final ZipInputStream zis = new ZipInputStream(new CloseShieldInputStream(stream));
+             final CapDecodeContext context = new CapDecodeContext(CapDecodeOptions.DEFAULT, null, null)) {
+            while (true) {
+                final ZipEntry ze = zis.getNextEntry();
+                if (ze == null) {
+                    break;
+                } else if (ze.isDirectory()) {
+                    continue;
+                }
+
+                final String name = CapDecoderImplBase.getComponentName(ze.getName());
+                if (CapDecoderImplBase.COMPONENT_Header.equals(name)) {
+                    return parse(CapDecoderImpl.readEntry(zis, ze, context));
+                }
+            }
+
+            throw CapFormatException.missingComponent(CapDecoderImplBase.COMPONENT_Header);
+        } catch (final IOException ex) {
+            throw new CapFormatException("unrecognized CAP format", ex);
+        }
+    }
+
+    /**
+     * Probe CAP file using archive central directory, only header component is read
+     *
+     * @param path path to CAP file
+     * @return CAP probe result
+     * @throws CapException when header component is missing or malformed
+     */
+    public static CapProbe probe(final Path path) throws CapException {
+        if (path == null) {
+            throw new IllegalArgumentException("path is null");
+        }
+
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return probe(channel);
+        } catch (final IOException ex) {
+            throw new CapFormatException("failed to read CAP file " + path, ex);
+        }
+    }
+
+    /**
+     * Probe CAP file using archive central directory, only header component is read. The channel is not closed.
+     *
+     * @param channel CAP file channel
+     * @return CAP probe result
+     * @throws CapException when header component is missing or malformed
+     */
+    public static CapProbe probe(final FileChannel channel) throws CapException {
+        try (final CapDecodeContext context = new CapDecodeContext(CapDecodeOptions.DEFAULT, null, null)) {
+            final CapZipFile zipFile = CapZipFile.open(channel, context);
+            for (final CapZipFile.Entry entry : zipFile.getEntries()) {
+                if (!entry.isDirectory() && (entry.getTag() == CapDecoderImplBase.TAG_COMPONENT_Header)) {
+                    return parse(zipFile.read(entry));
+                }
+            }
+
+            throw CapFormatException.missingComponent(CapDecoderImplBase.COMPONENT_Header);
+        } catch (final IOException ex) {
+            throw new CapFormatException("unrecognized CAP format", ex);
+        }
+    }
+
+    private static CapProbe parse(final ByteBuffer payload) throws CapException {
+        final HeaderVisitor visitor = new HeaderVisitor();
+        CapDecoderImpl.parseCapHeader(payload, visitor);
+        return new CapProbe(visitor);
+    }
+
+    /**
+     * Get CAP version encoded in 0xaabb (major, minor)
+     *
+     * @return CAP version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Get CAP header flags
+     *
+     * @return CAP header flags
+     */
+    public int getFlags() {
+        return flags;
+    }
+
+    /**
+     * Get package version encoded in 0xaabb (major, minor)
+     *
+     * @return package version
+     */
+    public int getPackageVersion() {
+        return packageVersion;
+    }
+
+    /**
+     * Get package AID
+     *
+     * @return package AID
+     */
+    public Aid getPackageAID() {
+        return packageAID;
+    }
+
+    /**
+     * CAP visitor collecting header fields
+     *
+     * @author Edi Permadi
+     */
+    private static final class HeaderVisitor extends CapVisitor {
+        private int version;
+        private int flags;
+        private int packageVersion;
+        private Aid packageAID;
+
+        @Override
+        public void visitHeader(final int version, final int flags) {
+            this.version = version;
+            this.flags = flags;
+        }
+
+        @Override
+        public void visitPackage(final int version, final byte[] aid, final int offset, final int length) {
+            this.packageVersion = version;
+            this.packageAID = Aid.valueOf(aid, offset, length);
+        }
+    }
+}
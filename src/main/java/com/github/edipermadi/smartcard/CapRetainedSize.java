@@ -0,0 +1,99 @@
+package com.github.edipermadi.smartcard;
+
+import java.util.List;
+
+/**
+ * Decoded CAP object reporting bytes it retains. CAP objects of other implementations are estimated out of their
+ * components.
+ *
+ * @author Edi Permadi
+ */
+interface CapRetainedSize {
+    /**
+     * Approximate size of object header and a few fields
+     */
+    int OBJECT_SIZE = 16;
+
+    /**
+     * Approximate size of AID object
+     */
+    int AID_SIZE = 40;
+
+    /**
+     * Get bytes retained by this object
+     *
+     * @return retained size in bytes
+     */
+    long getRetainedSize();
+
+    /**
+     * Estimate bytes retained by CAP object
+     *
+     * @param cap CAP object
+     * @return retained size in bytes
+     */
+    static long estimate(final Cap cap) {
+        if (cap == null) {
+            throw new IllegalArgumentException("cap is null");
+        } else if (cap instanceof CapRetainedSize) {
+            return ((CapRetainedSize) cap).getRetainedSize();
+        }
+
+        long size = OBJECT_SIZE;
+        final Cap.Header header = cap.getHeader();
+        if (header != null) {
+            size += 3 * OBJECT_SIZE + AID_SIZE;
+            if (header.getPackageName() != null) {
+                size += OBJECT_SIZE + 2L * header.getPackageName().getName().length();
+            }
+        }
+
+        final Cap.Directory directory = cap.getDirectory();
+        if (directory != null) {
+            size += 3 * OBJECT_SIZE + 4L * directory.getComponentSizeCount()
+                    + (long) (OBJECT_SIZE + AID_SIZE) * directory.getCustomComponents().size();
+        }
+
+        final Cap.Applet applet = cap.getApplet();
+        if (applet != null) {
+            size += OBJECT_SIZE + (long) (OBJECT_SIZE + AID_SIZE) * applet.getApplets().size();
+        }
+
+        final Cap.Import importComponent = cap.getImport();
+        if (importComponent != null) {
+            size += OBJECT_SIZE + (long) (AID_SIZE + 4) * importComponent.getPackageCount();
+        }
+
+        final Cap.ConstantPool constantPool = cap.getConstantPool();
+        if (constantPool != null) {
+            size += OBJECT_SIZE + 5L * constantPool.getCount();
+        }
+
+        final Cap.ClassComponent classComponent = cap.getClassComponent();
+        if (classComponent != null) {
+            size += OBJECT_SIZE;
+            for (final Cap.ClassComponent.InterfaceInfo info : classComponent.getInterfaces()) {
+                size += OBJECT_SIZE + 4L * info.getSuperInterfaceCount();
+            }
+            for (final Cap.ClassComponent.ClassInfo info : classComponent.getClasses()) {
+                size += OBJECT_SIZE + 4L * (info.getPublicMethodTableSize() + info.getPackageMethodTableSize());
+                for (final Cap.ClassComponent.ImplementedInterfaceInfo implemented : info.getInterfaces()) {
+                    size += OBJECT_SIZE + implemented.getMethodCount();
+                }
+            }
+        }
+
+        final Cap.MethodComponent methodComponent = cap.getMethodComponent();
+        if (methodComponent != null) {
+            /* method component retains its payload, which ends with bytecode of last method */
+            final List<Cap.MethodComponent.MethodInfo> methods = methodComponent.getMethods();
+            size += OBJECT_SIZE + 4L * methods.size()
+                    + (long) OBJECT_SIZE * methodComponent.getExceptionHandlers().size();
+            if (!methods.isEmpty()) {
+                final Cap.MethodComponent.MethodInfo last = methods.get(methods.size() - 1);
+                size += last.getOffset() + 4 + last.getBytecodeLength();
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.edipermadi.smartcard;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Scratch arena handing out regions of a reusable array. Regions stay valid until the arena is reset, growing the
+ * arena switches to a larger array and never moves regions handed out before.
+ *
+ * @author Edi Permadi
+ */
+final class CapScratch {
+    private static final int INITIAL_SIZE = 16 * 1024;
+
+    private final int maxRetainedSize;
+    private byte[] array;
+    private int used;
+    private boolean leased;
+
+    /**
+     * Class constructor
+     *
+     * @param maxRetainedSize largest array kept across resets
+     */
+    CapScratch(final int maxRetainedSize) {
+        this.maxRetainedSize = maxRetainedSize;
+        this.array = new byte[Math.min(INITIAL_SIZE, maxRetainedSize)];
+    }
+
+    /**
+     * Lease this arena
+     *
+     * @return true when arena has been leased, false when it is already leased
+     */
+    boolean lease() {
+        if (leased) {
+            return false;
+        }
+        leased = true;
+        used = 0;
+        return true;
+    }
+
+    /**
+     * Return this arena, regions handed out since lease must not be used anymore
+     */
+    void release() {
+        leased = false;
+        used = 0;
+        if (array.length > maxRetainedSize) {
+            array = new byte[Math.min(INITIAL_SIZE, maxRetainedSize)];
+        }
+    }
+
+    /**
+     * Allocate region
+     *
+     * @param size region size
+     * @return buffer spanning region, its position is zero
+     */
+    ByteBuffer allocate(final int size) {
+        ensure(size);
+        final ByteBuffer result = ByteBuffer.wrap(array, used, size).slice();
+        used += size;
+        return result;
+    }
+
+    /**
+     * Read stream until its end into a region
+     *
+     * @param stream input stream
+     * @return buffer spanning region holding stream content, its position is zero
+     * @throws IOException when reading failed
+     */
+    ByteBuffer readFully(final InputStream stream) throws IOException {
+        int start = used;
+        int count = 0;
+        while (true) {
+            if (start + count == array.length) {
+                /* move partial content into larger array */
+                final byte[] larger = new byte[Math.max(array.length, count) * 2];
+                System.arraycopy(array, start, larger, 0, count);
+                array = larger;
+                start = 0;
+            }
+
+            final int n = stream.read(array, start + count, array.length - start - count);
+            if (n < 0) {
+                break;
+            }
+            count += n;
+        }
+
+        used = start + count;
+        return ByteBuffer.wrap(array, start, count).slice();
+    }
+
+    private void ensure(final int size) {
+        if (array.length - used < size) {
+            array = new byte[Math.max(array.length * 2, size)];
+            used = 0;
+        }
+    }
+}
@@ -0,0 +1,545 @@
+package com.github.edipermadi.smartcard;
+
+import com.github.edipermadi.smartcard.exc.CapDecodeException;
+import com.github.edipermadi.smartcard.exc.CapException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Flyweight CAP File decoder implementation. Components are validated once while decoding, then kept as raw bytes
+ * packed into a single array. Component objects returned by resulting CAP object are thin views reading their
+ * fields out of those bytes on every call, hence a CAP object retains little more than its component payloads.
+ *
+ * @author Edi Permadi
+ */
+public class CapViewDecoderImpl extends CapDecoderImpl {
+    private static final CapVisitor VALIDATOR = new CapVisitor() {
+    };
+
+    /**
+     * Class constructor, decoder allocates fresh buffers and inflaters for every decode call
+     */
+    public CapViewDecoderImpl() {
+        super();
+    }
+
+    /**
+     * Class constructor of pooled decoder, component payloads are copied out of scratch buffers of pool
+     *
+     * @param pool decoder pool
+     */
+    public CapViewDecoderImpl(final CapDecoderPool pool) {
+        super(pool);
+    }
+
+    @Override
+    Cap assemble(final ByteBuffer[] payloads, final CapDecodeContext context) throws CapException {
+        if (payloads[TAG_COMPONENT_Header] != null) {
+            context.checkCancelled();
+            final long start = context.startTimer();
+            parseCapHeader(payloads[TAG_COMPONENT_Header].duplicate(), VALIDATOR);
+            context.componentParsed(TAG_COMPONENT_Header, payloads[TAG_COMPONENT_Header].limit(), start);
+        }
+        if (payloads[TAG_COMPONENT_Directory] != null) {
+            context.checkCancelled();
+            final long start = context.startTimer();
+            parseCapDirectory(payloads[TAG_COMPONENT_Directory].duplicate(), VALIDATOR);
+            context.componentParsed(TAG_COMPONENT_Directory, payloads[TAG_COMPONENT_Directory].limit(), start);
+        }
+        if (payloads[TAG_COMPONENT_Applet] != null) {
+            context.checkCancelled();
+            final long start = context.startTimer();
+            parseCapApplet(payloads[TAG_COMPONENT_Applet].duplicate(), VALIDATOR);
+            context.componentParsed(TAG_COMPONENT_Applet, payloads[TAG_COMPONENT_Applet].limit(), start);
+        }
+        if (payloads[TAG_COMPONENT_Import] != null) {
+            context.checkCancelled();
+            final long start = context.startTimer();
+            parseCapImport(payloads[TAG_COMPONENT_Import].duplicate(), VALIDATOR);
+            context.componentParsed(TAG_COMPONENT_Import, payloads[TAG_COMPONENT_Import].limit(), start);
+        }
+        if (payloads[TAG_COMPONENT_ConstantPool] != null) {
+            context.checkCancelled();
+            final long start = context.startTimer();
+            parseCapConstantPool(payloads[TAG_COMPONENT_ConstantPool].duplicate(), VALIDATOR);
+            context.componentParsed(TAG_COMPONENT_ConstantPool, payloads[TAG_COMPONENT_ConstantPool].limit(), start);
+        }
+        if (payloads[TAG_COMPONENT_Class] != null) {
+            context.checkCancelled();
+            final long start = context.startTimer();
+            parseCapClass(payloads[TAG_COMPONENT_Class].duplicate(), getCapVersion(payloads[TAG_COMPONENT_Header]),
+                    VALIDATOR);
+            context.componentParsed(TAG_COMPONENT_Class, payloads[TAG_COMPONENT_Class].limit(), start);
+        }
+        if (payloads[TAG_COMPONENT_Method] != null) {
+            context.checkCancelled();
+            final long start = context.startTimer();
+            parseCapMethod(payloads[TAG_COMPONENT_Method].duplicate(), CapMethodOffsetCollector.collect(payloads),
+                    VALIDATOR);
+            context.componentParsed(TAG_COMPONENT_Method, payloads[TAG_COMPONENT_Method].limit(), start);
+        }
+
+        return ViewCap.pack(payloads, context.getOptions().getAidPool());
+    }
+
+    /**
+     * Flyweight CAP object implementation. Component bytes are read with absolute gets only, hence backing buffer may
+     * be shared, e.g. a read-only mapping of a cache file.
+     *
+     * @author Edi Permadi
+     */
+    static final class ViewCap implements Cap, CapRetainedSize {
+        private static final int DIRECTORY_COMPONENT_SIZE_COUNT = 11;
+
+        private final ByteBuffer data;
+        private final int[] offsets;
+        private final int[] lengths;
+        private final int headerOffset;
+        private final int directoryOffset;
+        private final int appletOffset;
+        private final int importOffset;
+        private final int constantPoolOffset;
+        private final AidPool aidPool;
+        private volatile ClassComponent classComponent;
+        private volatile MethodComponent methodComponent;
+
+        /**
+         * Class constructor
+         *
+         * @param data    buffer holding validated component payloads
+         * @param offsets absolute offsets of component payloads indexed by component tag, -1 for missing component
+         * @param lengths lengths of component payloads indexed by component tag
+         * @param aidPool AID intern pool, null when AIDs are not interned
+         */
+        ViewCap(final ByteBuffer data, final int[] offsets, final int[] lengths, final AidPool aidPool) {
+            this.data = data;
+            this.offsets = offsets;
+            this.lengths = lengths;
+            this.headerOffset = offsets[TAG_COMPONENT_Header];
+            this.directoryOffset = offsets[TAG_COMPONENT_Directory];
+            this.appletOffset = offsets[TAG_COMPONENT_Applet];
+            this.importOffset = offsets[TAG_COMPONENT_Import];
+            this.constantPoolOffset = offsets[TAG_COMPONENT_ConstantPool];
+            this.aidPool = aidPool;
+        }
+
+        /**
+         * Create view CAP owning a packed copy of validated component payloads
+         *
+         * @param payloads component payloads indexed by component tag
+         * @param aidPool  AID intern pool, null when AIDs are not interned
+         * @return view CAP object
+         */
+        static ViewCap pack(final ByteBuffer[] payloads, final AidPool aidPool) {
+            int size = 0;
+            for (final ByteBuffer payload : payloads) {
+                size += (payload == null) ? 0 : payload.remaining();
+            }
+
+            final byte[] data = new byte[size];
+            final int[] offsets = new int[payloads.length];
+            final int[] lengths = new int[payloads.length];
+            int offset = 0;
+            for (int tag = 0; tag < payloads.length; tag++) {
+                if (payloads[tag] == null) {
+                    offsets[tag] = -1;
+                    continue;
+                }
+
+                offsets[tag] = offset;
+                lengths[tag] = payloads[tag].remaining();
+                payloads[tag].duplicate().get(data, offset, lengths[tag]);
+                offset += lengths[tag];
+            }
+            return new ViewCap(ByteBuffer.wrap(data), offsets, lengths, aidPool);
+        }
+
+        @Override
+        public Header getHeader() {
+            return (headerOffset < 0) ? null : new HeaderView();
+        }
+
+        @Override
+        public Directory getDirectory() {
+            return (directoryOffset < 0) ? null : new DirectoryView();
+        }
+
+        @Override
+        public Applet getApplet() {
+            return (appletOffset < 0) ? null : new AppletView();
+        }
+
+        @Override
+        public Import getImport() {
+            return (importOffset < 0) ? null : new ImportView();
+        }
+
+        @Override
+        public ConstantPool getConstantPool() {
+            return (constantPoolOffset < 0) ? null : new ConstantPoolView();
+        }
+
+        /**
+         * Get class component, unlike other components it is decoded once on first access so that flattened method
+         * tables are not recomputed per query
+         *
+         * @return CAP class component
+         */
+        @Override
+        public ClassComponent getClassComponent() {
+            ClassComponent result = classComponent;
+            if ((result == null) && (offsets[TAG_COMPONENT_Class] >= 0)) {
+                try {
+                    result = decodeCapClass(slice(TAG_COMPONENT_Class),
+                            getCapVersion((headerOffset < 0) ? null : slice(TAG_COMPONENT_Header)));
+                } catch (final CapDecodeException ex) {
+                    throw new IllegalStateException("failed to decode CAP class component", ex);
+                }
+                classComponent = result;
+            }
+            return result;
+        }
+
+        /**
+         * Get method component, it is decoded once on first access so that method index is not rebuilt per query.
+         * Bytecode of decoded methods is sliced out of view buffer.
+         *
+         * @return CAP method component
+         */
+        @Override
+        public MethodComponent getMethodComponent() {
+            MethodComponent result = methodComponent;
+            if ((result == null) && (offsets[TAG_COMPONENT_Method] >= 0)) {
+                try {
+                    result = decodeCapMethod(slice(TAG_COMPONENT_Method), CapMethodOffsetCollector.collect(
+                            payload(TAG_COMPONENT_Descriptor), payload(TAG_COMPONENT_Header),
+                            payload(TAG_COMPONENT_Applet), payload(TAG_COMPONENT_ConstantPool),
+                            payload(TAG_COMPONENT_Class)));
+                } catch (final CapDecodeException ex) {
+                    throw new IllegalStateException("failed to decode CAP method component", ex);
+                }
+                methodComponent = result;
+            }
+            return result;
+        }
+
+        @Override
+        public long getRetainedSize() {
+            return OBJECT_SIZE + data.capacity() + 4L * (offsets.length + lengths.length);
+        }
+
+        @Override
+        public String toString() {
+            return CapJsonWriter.toJson(this, true);
+        }
+
+        /**
+         * Get payload of a component
+         *
+         * @param tag component tag
+         * @return buffer spanning component payload, its position is zero
+         */
+        ByteBuffer slice(final int tag) {
+            final ByteBuffer result = data.duplicate();
+            result.limit(offsets[tag] + lengths[tag]).position(offsets[tag]);
+            return result.slice();
+        }
+
+        private ByteBuffer payload(final int tag) {
+            return (offsets[tag] < 0) ? null : slice(tag);
+        }
+
+        private int u1(final int offset) {
+            return data.get(offset) & 0xff;
+        }
+
+        private int u2(final int offset) {
+            return ((data.get(offset) & 0xff) << 8) | (data.get(offset + 1) & 0xff);
+        }
+
+        private int version(final int offset) {
+            return (data.get(offset) & 0xff) | ((data.get(offset + 1) & 0xff) << 8);
+        }
+
+        private Aid aid(final int offset, final int length) {
+            final Aid aid = Aid.valueOf(data, offset, length);
+            return (aidPool == null) ? aid : aidPool.intern(aid);
+        }
+
+        /**
+         * Header component view
+         *
+         * @author Edi Permadi
+         */
+        private final class HeaderView implements Cap.Header {
+            @Override
+            public int getVersion() {
+                return version(headerOffset + 7);
+            }
+
+            @Override
+            public int getFlags() {
+                return u1(headerOffset + 9);
+            }
+
+            @Override
+            public PackageInfo getPackage() {
+                return new PackageInfo() {
+                    @Override
+                    public int getVersion() {
+                        return version(headerOffset + 10);
+                    }
+
+                    @Override
+                    public Aid getAID() {
+                        return aid(headerOffset + 13, u1(headerOffset + 12));
+                    }
+                };
+            }
+
+            @Override
+            public PackageNameInfo getPackageName() {
+                /* package name info follows package AID, it is optional */
+                final int nameInfoOffset = headerOffset + 13 + u1(headerOffset + 12);
+                if ((nameInfoOffset >= headerOffset + lengths[TAG_COMPONENT_Header]) || (u1(nameInfoOffset) == 0)) {
+                    return null;
+                }
+
+                return new PackageNameInfo() {
+                    @Override
+                    public String getName() {
+                        final byte[] name = new byte[u1(nameInfoOffset)];
+                        for (int i = 0; i < name.length; i++) {
+                            name[i] = data.get(nameInfoOffset + 1 + i);
+                        }
+                        return new String(name, StandardCharsets.UTF_8);
+                    }
+                };
+            }
+        }
+
+        /**
+         * Directory component view
+         *
+         * @author Edi Permadi
+         */
+        private final class DirectoryView implements Cap.Directory {
+            private static final int STATIC_FIELD_SIZE = 3 + 2 * DIRECTORY_COMPONENT_SIZE_COUNT;
+            private static final int IMPORT_COUNT = STATIC_FIELD_SIZE + 6;
+            private static final int APPLET_COUNT = IMPORT_COUNT + 1;
+            private static final int CUSTOM_COUNT = APPLET_COUNT + 1;
+
+            @Override
+            public List<Integer> getComponentSizes() {
+                final List<Integer> result = new ArrayList<>(DIRECTORY_COMPONENT_SIZE_COUNT);
+                for (int tag = 1; tag <= DIRECTORY_COMPONENT_SIZE_COUNT; tag++) {
+                    result.add(getComponentSize(tag));
+                }
+                return Collections.unmodifiableList(result);
+            }
+
+            @Override
+            public int getComponentSize(final int tag) {
+                if ((tag < 1) || (tag > COMPONENT_COUNT)) {
+                    throw new IllegalArgumentException("invalid component tag");
+                }
+                return (tag <= DIRECTORY_COMPONENT_SIZE_COUNT) ? u2(directoryOffset + 3 + 2 * (tag - 1)) : 0;
+            }
+
+            @Override
+            public int getComponentSizeCount() {
+                return DIRECTORY_COMPONENT_SIZE_COUNT;
+            }
+
+            @Override
+            public StaticFieldSizeInfo getStaticFieldSize() {
+                final int offset = directoryOffset + STATIC_FIELD_SIZE;
+                return new StaticFieldSizeInfo() {
+                    @Override
+                    public int getImageSize() {
+                        return u2(offset);
+                    }
+
+                    @Override
+                    public int getArrayInitCount() {
+                        return u2(offset + 2);
+                    }
+
+                    @Override
+                    public int getArrayInitSize() {
+                        return u2(offset + 4);
+                    }
+                };
+            }
+
+            @Override
+            public int getImportCount() {
+                return u1(directoryOffset + IMPORT_COUNT);
+            }
+
+            @Override
+            public int getAppletCount() {
+                return u1(directoryOffset + APPLET_COUNT);
+            }
+
+            @Override
+            public List<CustomComponentInfo> getCustomComponents() {
+                final int count = u1(directoryOffset + CUSTOM_COUNT);
+                final List<CustomComponentInfo> result = new ArrayList<>(count);
+                int offset = directoryOffset + CUSTOM_COUNT + 1;
+                for (int i = 0; i < count; i++) {
+                    final int tag = u1(offset);
+                    final Aid aid = aid(offset + 4, u1(offset + 3));
+                    result.add(new CustomComponentInfo() {
+                        @Override
+                        public int getTag() {
+                            return tag;
+                        }
+
+                        @Override
+                        public Aid getAID() {
+                            return aid;
+                        }
+                    });
+                    offset += 4 + aid.getLength();
+                }
+                return Collections.unmodifiableList(result);
+            }
+        }
+
+        /**
+         * Applet component view
+         *
+         * @author Edi Permadi
+         */
+        private final class AppletView implements Cap.Applet {
+            @Override
+            public List<Info> getApplets() {
+                final int count = u1(appletOffset + 3);
+                final List<Info> result = new ArrayList<>(count);
+                int offset = appletOffset + 4;
+                for (int i = 0; i < count; i++) {
+                    final int aidLength = u1(offset);
+                    final int aidOffset = offset + 1;
+                    final int installMethodOffset = aidOffset + aidLength;
+                    result.add(new Info() {
+                        @Override
+                        public Aid getAID() {
+                            return aid(aidOffset, aidLength);
+                        }
+
+                        @Override
+                        public int getInstallMethodOffset() {
+                            return u2(installMethodOffset);
+                        }
+                    });
+                    offset = installMethodOffset + 2;
+                }
+                return Collections.unmodifiableList(result);
+            }
+        }
+
+        /**
+         * Import component view, offsets of imported packages are located once per view
+         *
+         * @author Edi Permadi
+         */
+        private final class ImportView implements Cap.Import {
+            private final int[] packageOffsets;
+
+            ImportView() {
+                packageOffsets = new int[u1(importOffset + 3)];
+                int offset = importOffset + 4;
+                for (int i = 0; i < packageOffsets.length; i++) {
+                    packageOffsets[i] = offset;
+                    offset += 3 + u1(offset + 2);
+                }
+            }
+
+            @Override
+            public int getPackageCount() {
+                return packageOffsets.length;
+            }
+
+            @Override
+            public Aid getAID(final int index) {
+                final int offset = packageOffset(index);
+                return aid(offset + 3, u1(offset + 2));
+            }
+
+            @Override
+            public int getVersion(final int index) {
+                return version(packageOffset(index));
+            }
+
+            @Override
+            public int indexOf(final Aid aid) {
+                if (aid == null) {
+                    throw new IllegalArgumentException("aid is null");
+                }
+
+                for (int i = 0; i < packageOffsets.length; i++) {
+                    final int offset = packageOffsets[i];
+                    if (u1(offset + 2) != aid.getLength()) {
+                        continue;
+                    }
+
+                    int j = 0;
+                    while ((j < aid.getLength()) && (u1(offset + 3 + j) == aid.getByte(j))) {
+                        j++;
+                    }
+                    if (j == aid.getLength()) {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+
+            @Override
+            public List<Header.PackageInfo> getPackages() {
+                return new CapImportBuilder.PackageList(this);
+            }
+
+            private int packageOffset(final int index) {
+                if ((index < 0) || (index >= packageOffsets.length)) {
+                    throw new IndexOutOfBoundsException("invalid import index " + index);
+                }
+                return packageOffsets[index];
+            }
+        }
+
+        /**
+         * Constant pool component view, entries are four bytes wide and follow entry count
+         *
+         * @author Edi Permadi
+         */
+        private final class ConstantPoolView implements Cap.ConstantPool {
+            @Override
+            public int getCount() {
+                return u2(constantPoolOffset + 3);
+            }
+
+            @Override
+            public int getTag(final int index) {
+                return u1(entryOffset(index));
+            }
+
+            @Override
+            public int getInfo(final int index) {
+                final int offset = entryOffset(index);
+                return (u1(offset + 1) << 16) | u2(offset + 2);
+            }
+
+            private int entryOffset(final int index) {
+                if ((index < 0) || (index >= getCount())) {
+                    throw new IndexOutOfBoundsException("invalid constant pool index " + index);
+                }
+                return constantPoolOffset + 5 + 4 * index;
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.github.edipermadi.smartcard;
+
+/**
+ * Streaming CAP visitor. Component parsers invoke these callbacks as they walk over component payloads, no object
+ * tree is built. Byte arrays passed to callbacks are shared with the decoder and only valid during the callback.
+ * Every callback does nothing by default, hence subclasses only override callbacks they are interested in.
+ *
+ * @author Edi Permadi
+ */
+public abstract class CapVisitor {
+    /**
+     * Visit start of a component
+     *
+     * @param tag  component tag
+     * @param size component size, excluding tag and size fields
+     */
+    public void visitComponent(final int tag, final int size) {
+    }
+
+    /**
+     * Visit CAP header
+     *
+     * @param version CAP version encoded in 0xaabb (major, minor)
+     * @param flags   CAP header flags
+     */
+    public void visitHeader(final int version, final int flags) {
+    }
+
+    /**
+     * Visit CAP package info
+     *
+     * @param version package version encoded in 0xaabb (major, minor)
+     * @param aid     array holding package AID
+     * @param offset  offset of package AID
+     * @param length  length of package AID
+     */
+    public void visitPackage(final int version, final byte[] aid, final int offset, final int length) {
+    }
+
+    /**
+     * Visit CAP package name
+     *
+     * @param name   array holding UTF-8 encoded package name
+     * @param offset offset of package name
+     * @param length length of package name
+     */
+    public void visitPackageName(final byte[] name, final int offset, final int length) {
+    }
+
+    /**
+     * Visit component size of directory component
+     *
+     * @param index component size index, which is component tag minus one
+     * @param size  component size
+     */
+    public void visitComponentSize(final int index, final int size) {
+    }
+
+    /**
+     * Visit static field size of directory component
+     *
+     * @param imageSize      image size
+     * @param arrayInitCount array init count
+     * @param arrayInitSize  array init size
+     */
+    public void visitStaticFieldSize(final int imageSize, final int arrayInitCount, final int arrayInitSize) {
+    }
+
+    /**
+     * Visit import count of directory component
+     *
+     * @param importCount count of import
+     */
+    public void visitImportCount(final int importCount) {
+    }
+
+    /**
+     * Visit applet count of directory component
+     *
+     * @param appletCount count of applet
+     */
+    public void visitAppletCount(final int appletCount) {
+    }
+
+    /**
+     * Visit custom component of directory component
+     *
+     * @param tag    custom component tag
+     * @param size   custom component size
+     * @param aid    array holding custom component AID
+     * @param offset offset of custom component AID
+     * @param length length of custom component AID
+     */
+    public void visitCustomComponent(final int tag, final int size, final byte[] aid, final int offset,
+                                     final int length) {
+    }
+
+    /**
+     * Visit applet of applet component
+     *
+     * @param aid                 array holding applet AID
+     * @param offset              offset of applet AID
+     * @param length              length of applet AID
+     * @param installMethodOffset applet installation method offset
+     */
+    public void visitApplet(final byte[] aid, final int offset, final int length, final int installMethodOffset) {
+    }
+
+    /**
+     * Visit imported package of import component
+     *
+     * @param version imported package version encoded in 0xaabb (major, minor)
+     * @param aid     array holding imported package AID
+     * @param offset  offset of imported package AID
+     * @param length  length of imported package AID
+     */
+    public void visitImport(final int version, final byte[] aid, final int offset, final int length) {
+    }
+
+    /**
+     * Visit entry of constant pool component
+     *
+     * @param index index of entry
+     * @param tag   entry tag
+     * @param info  three info bytes of entry, packed big-endian into the low 24 bits
+     */
+    public void visitConstant(final int index, final int tag, final int info) {
+    }
+
+    /**
+     * Visit interface of class component
+     *
+     * @param offset          interface offset within class component info item
+     * @param flags           interface flags
+     * @param superInterfaces array holding big-endian u2 class references of super interfaces
+     * @param position        offset of first super interface
+     * @param count           count of super interfaces
+     */
+    public void visitInterface(final int offset, final int flags, final byte[] superInterfaces, final int position,
+                               final int count) {
+    }
+
+    /**
+     * Visit name of remote interface of class component, following {@link #visitInterface}
+     *
+     * @param name   array holding interface name
+     * @param offset offset of interface name
+     * @param length length of interface name
+     */
+    public void visitInterfaceName(final byte[] name, final int offset, final int length) {
+    }
+
+    /**
+     * Visit class of class component
+     *
+     * @param offset               class offset within class component info item
+     * @param flags                class flags
+     * @param superClass           class reference of super class
+     * @param declaredInstanceSize declared instance size
+     * @param firstReferenceToken  first reference token
+     * @param referenceCount       count of reference fields
+     */
+    public void visitClass(final int offset, final int flags, final int superClass, final int declaredInstanceSize,
+                           final int firstReferenceToken, final int referenceCount) {
+    }
+
+    /**
+     * Visit public virtual method table of class, following {@link #visitClass}
+     *
+     * @param base     token of first method in table
+     * @param table    array holding big-endian u2 method offsets
+     * @param position offset of first method
+     * @param count    count of methods
+     */
+    public void visitPublicMethodTable(final int base, final byte[] table, final int position, final int count) {
+    }
+
+    /**
+     * Visit package virtual method table of class, following {@link #visitClass}
+     *
+     * @param base     token of first method in table
+     * @param table    array holding big-endian u2 method offsets
+     * @param position offset of first method
+     * @param count    count of methods
+     */
+    public void visitPackageMethodTable(final int base, final byte[] table, final int position, final int count) {
+    }
+
+    /**
+     * Visit interface implemented by class, following {@link #visitClass}
+     *
+     * @param classRef class reference of interface
+     * @param tokens   array holding virtual method tokens indexed by interface method token
+     * @param offset   offset of first token
+     * @param count    count of tokens
+     */
+    public void visitImplementedInterface(final int classRef, final byte[] tokens, final int offset,
+                                          final int count) {
+    }
+
+    /**
+     * Visit exception handler of method component
+     *
+     * @param startOffset    offset of first bytecode covered by handler
+     * @param activeLength   count of bytecode bytes covered by handler
+     * @param stop           whether handler is the last one covering its active range
+     * @param handlerOffset  offset of handler bytecode
+     * @param catchTypeIndex constant pool index of caught class, zero when handler catches every exception
+     */
+    public void visitExceptionHandler(final int startOffset, final int activeLength, final boolean stop,
+                                      final int handlerOffset, final int catchTypeIndex) {
+    }
+
+    /**
+     * Visit method of method component, methods are visited in ascending offset order
+     *
+     * @param offset    method offset within method component info item
+     * @param flags     method flags
+     * @param maxStack  maximum operand stack size
+     * @param nargs     count of argument words
+     * @param maxLocals count of local variable words
+     * @param bytecode  array holding method bytecode
+     * @param position  offset of first bytecode
+     * @param length    count of bytecode bytes
+     */
+    public void visitMethod(final int offset, final int flags, final int maxStack, final int nargs,
+                            final int maxLocals, final byte[] bytecode, final int position, final int length) {
+    }
+
+    /**
+     * Visit end of CAP file, invoked once every decoded component has been visited
+     */
+    public void visitEnd() {
+    }
+}
@@ -0,0 +1,23 @@
+package com.github.edipermadi.smartcard;
+
+/**
+ * Weigher of decoded CAP objects, used by {@link CapCachingDecoder} to bound memory held by cached entries.
+ * Implementations must be thread-safe and must not throw.
+ *
+ * @author Edi Permadi
+ */
+public interface CapWeigher {
+    /**
+     * Weigher estimating bytes retained by decoded CAP object, used by default. CAP objects decoded by this library
+     * report size of payloads and arrays they hold, components decoded on first access are not accounted.
+     */
+    CapWeigher RETAINED_SIZE = CapRetainedSize::estimate;
+
+    /**
+     * Weigh decoded CAP object
+     *
+     * @param cap decoded CAP object
+     * @return weight of CAP object, non-negative
+     */
+    long weigh(Cap cap);
+}
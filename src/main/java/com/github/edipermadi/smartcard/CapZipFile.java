@@ -0,0 +1,348 @@
+package com.github.edipermadi.smartcard;
+
+import com.github.edipermadi.smartcard.exc.CapFormatException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Random access reader of CAP archive held in a file channel or in memory. Only the end of central directory record
+ * and the central directory are read up front, entry payloads are read and inflated on demand. Buffers and inflaters
+ * are obtained from decode context.
+ *
+ * @author Edi Permadi
+ */
+final class CapZipFile {
+    private static final int SIGNATURE_END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int SIGNATURE_CENTRAL_DIRECTORY = 0x02014b50;
+    private static final int SIGNATURE_LOCAL_HEADER = 0x04034b50;
+    private static final int SIZE_END_OF_CENTRAL_DIRECTORY = 22;
+    private static final int SIZE_CENTRAL_DIRECTORY = 46;
+    private static final int SIZE_LOCAL_HEADER = 30;
+    private static final int MAX_COMMENT_LENGTH = 0xffff;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+
+    private final FileChannel channel;
+    private final ByteBuffer archive;
+    private final CapDecodeContext context;
+    private final List<Entry> entries;
+
+    /**
+     * Class constructor
+     *
+     * @param channel file channel of CAP archive, null when archive is held in memory
+     * @param archive CAP archive content, null when archive is read from file channel
+     * @param context decode context
+     */
+    private CapZipFile(final FileChannel channel, final ByteBuffer archive, final CapDecodeContext context) {
+        this.channel = channel;
+        this.archive = (archive == null) ? null : archive.slice().order(ByteOrder.LITTLE_ENDIAN);
+        this.context = context;
+        this.entries = new ArrayList<>();
+    }
+
+    /**
+     * Open CAP archive by reading its central directory
+     *
+     * @param channel file channel of CAP archive
+     * @param context decode context
+     * @return CAP archive reader
+     * @throws IOException        when reading failed
+     * @throws CapFormatException when archive is malformed
+     */
+    static CapZipFile open(final FileChannel channel, final CapDecodeContext context)
+            throws IOException, CapFormatException {
+        if (channel == null) {
+            throw new IllegalArgumentException("channel is null");
+        }
+
+        final CapZipFile zipFile = new CapZipFile(channel, null, context);
+        zipFile.readCentralDirectory(channel.size());
+        return zipFile;
+    }
+
+    /**
+     * Open CAP archive held in memory by reading its central directory. Stored entries are returned as slices of
+     * the archive without copying.
+     *
+     * @param archive CAP archive content, from its position up to its limit
+     * @param context decode context
+     * @return CAP archive reader
+     * @throws CapFormatException when archive is malformed
+     */
+    static CapZipFile open(final ByteBuffer archive, final CapDecodeContext context) throws CapFormatException {
+        if (archive == null) {
+            throw new IllegalArgumentException("archive is null");
+        }
+
+        final CapZipFile zipFile = new CapZipFile(null, archive, context);
+        try {
+            zipFile.readCentralDirectory(archive.remaining());
+        } catch (final IOException ex) {
+            throw new CapFormatException("unrecognized CAP format", ex);
+        }
+        return zipFile;
+    }
+
+    /**
+     * Get archive entries in central directory order
+     *
+     * @return list of archive entries
+     */
+    List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Read and inflate entry payload
+     *
+     * @param entry archive entry
+     * @return uncompressed entry payload
+     * @throws IOException        when reading failed
+     * @throws CapFormatException when entry is malformed
+     */
+    ByteBuffer read(final Entry entry) throws IOException, CapFormatException {
+        if (entry.size > Integer.MAX_VALUE) {
+            throw new CapFormatException("CAP archive entry " + entry.getName() + " is too large");
+        }
+
+        /* skip local header, its name and extra field lengths may differ from central directory */
+        final ByteBuffer header = region(entry.localHeaderOffset, SIZE_LOCAL_HEADER);
+        if (header.getInt(0) != SIGNATURE_LOCAL_HEADER) {
+            throw new CapFormatException("CAP archive entry " + entry.getName() + " is malformed");
+        }
+        final long dataOffset = entry.localHeaderOffset + SIZE_LOCAL_HEADER
+                + (header.getShort(26) & 0xffff) + (header.getShort(28) & 0xffff);
+
+        switch (entry.method) {
+            case METHOD_STORED:
+                if (entry.compressedSize != entry.size) {
+                    throw new CapFormatException("CAP archive entry " + entry.getName() + " is malformed");
+                }
+                return region(dataOffset, (int) entry.size).order(ByteOrder.BIG_ENDIAN);
+            case METHOD_DEFLATED:
+                return inflate(entry, region(dataOffset, (int) entry.compressedSize));
+            default:
+                throw new CapFormatException("CAP archive entry " + entry.getName()
+                        + " uses unsupported compression");
+        }
+    }
+
+    private void readCentralDirectory(final long archiveSize) throws IOException, CapFormatException {
+        /* locate end of central directory record, it is followed by an optional comment */
+        if (archiveSize < SIZE_END_OF_CENTRAL_DIRECTORY) {
+            throw new CapFormatException("CAP archive is truncated");
+        }
+
+        /* archives rarely carry a comment, read the bare record first and widen to longest comment only if absent */
+        ByteBuffer tail = region(archiveSize - SIZE_END_OF_CENTRAL_DIRECTORY, SIZE_END_OF_CENTRAL_DIRECTORY);
+        int eocd = (tail.getInt(0) == SIGNATURE_END_OF_CENTRAL_DIRECTORY) ? 0 : -1;
+        if ((eocd < 0) && (archiveSize > SIZE_END_OF_CENTRAL_DIRECTORY)) {
+            final int tailSize = (int) Math.min(archiveSize, SIZE_END_OF_CENTRAL_DIRECTORY + MAX_COMMENT_LENGTH);
+            tail = region(archiveSize - tailSize, tailSize);
+            for (int i = tailSize - SIZE_END_OF_CENTRAL_DIRECTORY - 1; i >= 0; i--) {
+                if (tail.getInt(i) == SIGNATURE_END_OF_CENTRAL_DIRECTORY) {
+                    eocd = i;
+                    break;
+                }
+            }
+        }
+        if (eocd < 0) {
+            throw new CapFormatException("CAP archive central directory not found");
+        }
+
+        final int count = tail.getShort(eocd + 10) & 0xffff;
+        final long directorySize = tail.getInt(eocd + 12) & 0xffffffffL;
+        final long directoryOffset = tail.getInt(eocd + 16) & 0xffffffffL;
+        if ((count == 0xffff) || (directorySize == 0xffffffffL) || (directoryOffset == 0xffffffffL)) {
+            throw new CapFormatException("ZIP64 CAP archive is not supported");
+        } else if (directoryOffset + directorySize > archiveSize) {
+            throw new CapFormatException("CAP archive central directory is truncated");
+        }
+
+        /* parse central directory */
+        final ByteBuffer directory = region(directoryOffset, (int) directorySize);
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            if ((directory.limit() - position < SIZE_CENTRAL_DIRECTORY)
+                    || (directory.getInt(position) != SIGNATURE_CENTRAL_DIRECTORY)) {
+                throw new CapFormatException("CAP archive central directory is malformed");
+            }
+
+            final int method = directory.getShort(position + 10) & 0xffff;
+            final long compressedSize = directory.getInt(position + 20) & 0xffffffffL;
+            final long size = directory.getInt(position + 24) & 0xffffffffL;
+            final int nameLength = directory.getShort(position + 28) & 0xffff;
+            final int extraLength = directory.getShort(position + 30) & 0xffff;
+            final int commentLength = directory.getShort(position + 32) & 0xffff;
+            final long localHeaderOffset = directory.getInt(position + 42) & 0xffffffffL;
+            if ((compressedSize == 0xffffffffL) || (size == 0xffffffffL) || (localHeaderOffset == 0xffffffffL)) {
+                throw new CapFormatException("ZIP64 CAP archive is not supported");
+            } else if (directory.limit() - position - SIZE_CENTRAL_DIRECTORY < nameLength) {
+                throw new CapFormatException("CAP archive central directory is malformed");
+            }
+
+            /* entry name is matched in place against component names */
+            final int nameOffset = directory.arrayOffset() + position + SIZE_CENTRAL_DIRECTORY;
+            final boolean isDirectory = (nameLength > 0) && (directory.array()[nameOffset + nameLength - 1] == '/');
+            final int tag = isDirectory
+                    ? -1
+                    : CapDecoderImplBase.getComponentTag(directory.array(), nameOffset, nameLength);
+            if ((tag > 0) && ((compressedSize > CapDecoderImplBase.MAX_COMPONENT_SIZE)
+                    || (size > CapDecoderImplBase.MAX_COMPONENT_SIZE))) {
+                throw new CapFormatException("CAP archive entry "
+                        + CapDecoderImplBase.COMPONENT_NAMES[tag] + " is too large");
+            }
+            entries.add(new Entry(tag, isDirectory, method, compressedSize, size, localHeaderOffset));
+            position += SIZE_CENTRAL_DIRECTORY + nameLength + extraLength + commentLength;
+        }
+    }
+
+    /**
+     * Inflate entry payload
+     *
+     * @param entry      archive entry
+     * @param compressed compressed entry payload
+     * @return uncompressed entry payload
+     * @throws CapFormatException when payload is malformed
+     */
+    private ByteBuffer inflate(final Entry entry, final ByteBuffer compressed) throws CapFormatException {
+        final ByteBuffer result = context.allocate((int) entry.size);
+        final byte[] output = result.array();
+        final int outputOffset = result.arrayOffset();
+        final long start = context.startTimer();
+        final Inflater inflater = context.acquireInflater();
+        try {
+            inflater.setInput(compressed.array(), compressed.arrayOffset(), compressed.limit());
+            int count = 0;
+            while (count < result.limit()) {
+                final int n = inflater.inflate(output, outputOffset + count, result.limit() - count);
+                if ((n == 0) && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                count += n;
+            }
+
+            if (count != result.limit()) {
+                throw new CapFormatException("CAP archive entry " + entry.getName() + " is truncated");
+            }
+            context.inflated(entry.getTag(), entry.compressedSize, entry.size, start);
+            return result;
+        } catch (final DataFormatException ex) {
+            throw new CapFormatException("CAP archive entry " + entry.getName() + " is malformed", ex);
+        } finally {
+            context.releaseInflater(inflater);
+        }
+    }
+
+    /**
+     * Get region of archive as little-endian heap buffer
+     *
+     * @param position region position
+     * @param length   region length
+     * @return buffer holding region content, its position is zero
+     * @throws IOException        when reading failed
+     * @throws CapFormatException when archive is shorter than expected
+     */
+    private ByteBuffer region(final long position, final int length) throws IOException, CapFormatException {
+        if (archive != null) {
+            if ((position < 0) || (position + length > archive.limit())) {
+                throw new CapFormatException("CAP archive is truncated");
+            }
+
+            final ByteBuffer result = archive.duplicate();
+            result.position((int) position).limit((int) position + length);
+            return result.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        final ByteBuffer buffer = context.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new CapFormatException("CAP archive is truncated");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * CAP archive entry
+     *
+     * @author Edi Permadi
+     */
+    static final class Entry {
+        private final int tag;
+        private final boolean isDirectory;
+        private final int method;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+
+        /**
+         * Class constructor
+         *
+         * @param tag               component tag or -1 when entry is not a component
+         * @param isDirectory       whether entry is a directory
+         * @param method            compression method
+         * @param compressedSize    compressed size
+         * @param size              uncompressed size
+         * @param localHeaderOffset offset of local file header
+         */
+        Entry(final int tag, final boolean isDirectory, final int method, final long compressedSize,
+              final long size, final long localHeaderOffset) {
+            this.tag = tag;
+            this.isDirectory = isDirectory;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        /**
+         * Get tag of component held by entry
+         *
+         * @return component tag or -1 when entry is not a component
+         */
+        int getTag() {
+            return tag;
+        }
+
+        /**
+         * Check whether entry is a directory
+         *
+         * @return true when entry is a directory
+         */
+        boolean isDirectory() {
+            return isDirectory;
+        }
+
+        /**
+         * Get uncompressed size
+         *
+         * @return uncompressed size
+         */
+        long getSize() {
+            return size;
+        }
+
+        /**
+         * Get compressed size
+         *
+         * @return compressed size
+         */
+        long getCompressedSize() {
+            return compressedSize;
+        }
+
+        private String getName() {
+            return (tag > 0) ? CapDecoderImplBase.COMPONENT_NAMES[tag] : "entry";
+        }
+    }
+}
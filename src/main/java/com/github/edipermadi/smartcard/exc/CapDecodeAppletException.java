@@ -48,4 +48,8 @@ public final class CapDecodeAppletException extends CapDecodeException {
     public static CapDecodeException invalidInstallMethodOffset() {
         return new CapDecodeAppletException("invalid CAP install method offset");
     }
+
+    public static CapDecodeAppletException truncated() {
+        return new CapDecodeAppletException("CAP applet is truncated");
+    }
 }
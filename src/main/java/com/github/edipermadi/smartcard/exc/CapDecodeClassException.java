@@ -0,0 +1,47 @@
+package com.github.edipermadi.smartcard.exc;
+
+/**
+ * CAP class component decoding exception
+ *
+ * @author Edi Permadi
+ */
+public final class CapDecodeClassException extends CapDecodeException {
+    /**
+     * Class constructor
+     *
+     * @param message exception message
+     * @param cause   exception cause
+     */
+    public CapDecodeClassException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * Class constructor
+     *
+     * @param message exception message
+     */
+    public CapDecodeClassException(final String message) {
+        super(message);
+    }
+
+    public static CapDecodeClassException invalidTag(int componentTag) {
+        return new CapDecodeClassException("unexpected CAP class component tag " + componentTag);
+    }
+
+    public static CapDecodeClassException invalidSize() {
+        return new CapDecodeClassException("invalid CAP class component size");
+    }
+
+    public static CapDecodeClassException missingHeader() {
+        return new CapDecodeClassException("CAP class component requires header component");
+    }
+
+    public static CapDecodeClassException unexpectedInterface(int offset) {
+        return new CapDecodeClassException("unexpected CAP interface at offset " + offset + " following a class");
+    }
+
+    public static CapDecodeClassException truncated() {
+        return new CapDecodeClassException("CAP class component is truncated");
+    }
+}
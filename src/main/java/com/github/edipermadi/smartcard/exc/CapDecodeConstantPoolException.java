@@ -0,0 +1,43 @@
+package com.github.edipermadi.smartcard.exc;
+
+/**
+ * CAP constant pool decoding exception
+ *
+ * @author Edi Permadi
+ */
+public final class CapDecodeConstantPoolException extends CapDecodeException {
+    /**
+     * Class constructor
+     *
+     * @param message exception message
+     * @param cause   exception cause
+     */
+    public CapDecodeConstantPoolException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * Class constructor
+     *
+     * @param message exception message
+     */
+    public CapDecodeConstantPoolException(final String message) {
+        super(message);
+    }
+
+    public static CapDecodeConstantPoolException invalidTag(int componentTag) {
+        return new CapDecodeConstantPoolException("unexpected CAP constant pool tag " + componentTag);
+    }
+
+    public static CapDecodeConstantPoolException invalidSize() {
+        return new CapDecodeConstantPoolException("invalid CAP constant pool size");
+    }
+
+    public static CapDecodeConstantPoolException invalidEntryTag(int entryTag) {
+        return new CapDecodeConstantPoolException("unexpected CAP constant pool entry tag " + entryTag);
+    }
+
+    public static CapDecodeConstantPoolException truncated() {
+        return new CapDecodeConstantPoolException("CAP constant pool is truncated");
+    }
+}
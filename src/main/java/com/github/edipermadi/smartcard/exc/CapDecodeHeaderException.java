@@ -36,4 +36,8 @@ public class CapDecodeHeaderException extends CapDecodeException {
     public static CapDecodeHeaderException invalidAidLength() {
         return new CapDecodeHeaderException("invalid CAP header AID length");
     }
+
+    public static CapDecodeHeaderException truncated() {
+        return new CapDecodeHeaderException("CAP header is truncated");
+    }
 }
@@ -0,0 +1,43 @@
+package com.github.edipermadi.smartcard.exc;
+
+/**
+ * CAP import decoding exception
+ *
+ * @author Edi Permadi
+ */
+public final class CapDecodeImportException extends CapDecodeException {
+    /**
+     * Class constructor
+     *
+     * @param message exception message
+     * @param cause   exception cause
+     */
+    public CapDecodeImportException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * Class constructor
+     *
+     * @param message exception message
+     */
+    public CapDecodeImportException(final String message) {
+        super(message);
+    }
+
+    public static CapDecodeImportException invalidTag(int componentTag) {
+        return new CapDecodeImportException("unexpected CAP import tag " + componentTag);
+    }
+
+    public static CapDecodeImportException invalidSize() {
+        return new CapDecodeImportException("invalid CAP import size");
+    }
+
+    public static CapDecodeImportException invalidAIDLength() {
+        return new CapDecodeImportException("invalid CAP import AID length");
+    }
+
+    public static CapDecodeImportException truncated() {
+        return new CapDecodeImportException("CAP import is truncated");
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.edipermadi.smartcard.exc;
+
+/**
+ * CAP method component decoding exception
+ *
+ * @author Edi Permadi
+ */
+public final class CapDecodeMethodException extends CapDecodeException {
+    /**
+     * Method constructor
+     *
+     * @param message exception message
+     * @param cause   exception cause
+     */
+    public CapDecodeMethodException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * Method constructor
+     *
+     * @param message exception message
+     */
+    public CapDecodeMethodException(final String message) {
+        super(message);
+    }
+
+    public static CapDecodeMethodException invalidTag(int componentTag) {
+        return new CapDecodeMethodException("unexpected CAP method component tag " + componentTag);
+    }
+
+    public static CapDecodeMethodException invalidSize() {
+        return new CapDecodeMethodException("invalid CAP method component size");
+    }
+
+    public static CapDecodeMethodException invalidMethodOffset(int offset) {
+        return new CapDecodeMethodException("invalid CAP method offset " + offset);
+    }
+
+    public static CapDecodeMethodException invalidDescriptorTag(int componentTag) {
+        return new CapDecodeMethodException("unexpected CAP descriptor component tag " + componentTag);
+    }
+
+    public static CapDecodeMethodException truncated() {
+        return new CapDecodeMethodException("CAP method component is truncated");
+    }
+}
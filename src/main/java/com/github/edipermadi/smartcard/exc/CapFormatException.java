@@ -4,4 +4,12 @@ public class CapFormatException extends CapException {
     public CapFormatException(String message, Throwable ex) {
         super(message, ex);
     }
+
+    public CapFormatException(String message) {
+        super(message);
+    }
+
+    public static CapFormatException missingComponent(final String name) {
+        return new CapFormatException("CAP component " + name + " is missing");
+    }
 }
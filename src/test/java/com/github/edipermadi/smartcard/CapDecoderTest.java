@@ -1,14 +1,51 @@
 package com.github.edipermadi.smartcard;
 
 
+import com.github.edipermadi.smartcard.exc.CapDecodeHeaderException;
+import com.github.edipermadi.smartcard.exc.CapDecodeMethodException;
 import com.github.edipermadi.smartcard.exc.CapException;
+import com.github.edipermadi.smartcard.exc.CapFormatException;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.apache.commons.io.IOUtils;
 import org.testng.Assert;
 import org.testng.Reporter;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 public final class CapDecoderTest {
     @Test
@@ -21,4 +58,861 @@ public final class CapDecoderTest {
         Assert.assertNotNull(cap);
         Reporter.log(cap.toString(), true);
     }
+
+    @Test
+    public void testDecodeComponents() throws IOException, CapException {
+        final Cap cap = new CapDecoderImpl().decode(new FileInputStream("src/test/resources/ykneo-oath-1.0.0.cap"));
+
+        Assert.assertEquals(cap.getHeader().getVersion(), 0x0201);
+        Assert.assertEquals(cap.getHeader().getFlags(), 4);
+        Assert.assertEquals(cap.getHeader().getPackage().getVersion(), 1);
+        Assert.assertEquals(cap.getHeader().getPackage().getAID(), Aid.fromHex("a0000005272101"));
+
+        Assert.assertEquals(cap.getDirectory().getComponentSizes(),
+                Arrays.asList(17, 31, 12, 31, 350, 54, 3253, 16, 359, 0, 911));
+        Assert.assertEquals(cap.getDirectory().getComponentSizeCount(), 11);
+        Assert.assertEquals(cap.getDirectory().getComponentSize(CapComponent.METHOD.getTag()), 3253);
+        Assert.assertEquals(cap.getDirectory().getComponentSize(CapComponent.DEBUG.getTag()), 0);
+        Assert.assertEquals(cap.getDirectory().getStaticFieldSize().getImageSize(), 12);
+        Assert.assertEquals(cap.getDirectory().getImportCount(), 3);
+        Assert.assertEquals(cap.getDirectory().getAppletCount(), 1);
+
+        Assert.assertEquals(cap.getApplet().getApplets().size(), 1);
+        Assert.assertEquals(cap.getApplet().getApplets().get(0).getAID(), Aid.fromHex("a000000527210101"));
+        Assert.assertEquals(cap.getApplet().getApplets().get(0).getInstallMethodOffset(), 1121);
+    }
+
+    @Test
+    public void testDecodePath() throws IOException, CapException {
+        final File file = new File("src/test/resources/ykneo-oath-1.0.0.cap");
+        final Cap expected = new CapDecoderImpl().decode(new FileInputStream(file));
+        final Cap stored = new CapDecoderImpl().decode(file.toPath());
+        Assert.assertEquals(stored.toString(), expected.toString());
+
+        /* re-pack archive with deflated entries and a comment trailing central directory */
+        final Path deflated = Files.createTempFile("cap", ".cap");
+        try {
+            final ZipInputStream zis = new ZipInputStream(new FileInputStream(file));
+            final ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(deflated.toFile()));
+            for (ZipEntry ze = zis.getNextEntry(); ze != null; ze = zis.getNextEntry()) {
+                zos.putNextEntry(new ZipEntry(ze.getName()));
+                IOUtils.copy(zis, zos);
+                zos.closeEntry();
+            }
+            zos.setComment("re-packed CAP archive");
+            zos.close();
+            zis.close();
+
+            Assert.assertEquals(new CapDecoderImpl().decode(deflated).toString(), expected.toString());
+            Assert.assertEquals(CapProbe.probe(deflated).getPackageAID(), Aid.fromHex("a0000005272101"));
+
+            /* deflated entries carry no size in stream, they are read into growable buffer */
+            Assert.assertEquals(new CapDecoderImpl().decode(new FileInputStream(deflated.toFile())).toString(),
+                    expected.toString());
+        } finally {
+            Files.delete(deflated);
+        }
+    }
+
+    @Test
+    public void testDecodeLazy() throws IOException, CapException {
+        final File file = new File("src/test/resources/ykneo-oath-1.0.0.cap");
+        final Cap expected = new CapDecoderImpl().decode(file.toPath());
+        final Cap cap = new CapLazyDecoderImpl().decode(file.toPath());
+        Assert.assertEquals(cap.getHeader().getPackage().getAID(), Aid.fromHex("a0000005272101"));
+        Assert.assertSame(cap.getHeader(), cap.getHeader());
+        Assert.assertEquals(cap.toString(), expected.toString());
+    }
+
+    @Test
+    public void testDecodeView() throws IOException, CapException {
+        final File file = new File("src/test/resources/ykneo-oath-1.0.0.cap");
+        final Cap expected = new CapDecoderImpl().decode(file.toPath());
+        final Cap cap = new CapViewDecoderImpl(new CapDecoderPool()).decode(new FileInputStream(file));
+        Assert.assertEquals(cap.getHeader().getVersion(), 0x0201);
+        Assert.assertEquals(cap.getHeader().getPackage().getAID(), Aid.fromHex("a0000005272101"));
+        Assert.assertEquals(cap.getHeader().getPackageName(), null);
+        Assert.assertEquals(cap.getDirectory().getComponentSizes(), expected.getDirectory().getComponentSizes());
+        Assert.assertEquals(cap.getDirectory().getStaticFieldSize().getArrayInitSize(), 3);
+        Assert.assertEquals(cap.getDirectory().getAppletCount(), 1);
+        Assert.assertEquals(cap.getApplet().getApplets().get(0).getInstallMethodOffset(), 1121);
+        Assert.assertEquals(cap.toString(), expected.toString());
+    }
+
+    @Test
+    public void testDecodePooled() throws IOException, CapException {
+        final File file = new File("src/test/resources/ykneo-oath-1.0.0.cap");
+        final Cap expected = new CapDecoderImpl().decode(file.toPath());
+        final CapDecoderPool pool = new CapDecoderPool(1, 4096);
+        final CapDecoder decoder = new CapDecoderImpl(pool);
+        final CapDecoder lazyDecoder = new CapLazyDecoderImpl(pool);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(decoder.decode(new FileInputStream(file)).toString(), expected.toString());
+            Assert.assertEquals(decoder.decode(file.toPath()).toString(), expected.toString());
+        }
+
+        /* lazy CAP must not refer to scratch buffers reused by later decode calls */
+        final Cap lazy = lazyDecoder.decode(new FileInputStream(file));
+        decoder.decode(new FileInputStream(file));
+        Assert.assertEquals(lazy.toString(), expected.toString());
+
+        /* pooled decoders read whole archive, stream is closed as sequential decoders do */
+        final boolean[] closed = new boolean[1];
+        decoder.decode(new ByteArrayInputStream(Files.readAllBytes(file.toPath())) {
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+                super.close();
+            }
+        });
+        Assert.assertTrue(closed[0]);
+    }
+
+    @Test
+    public void testAid() throws IOException {
+        final Aid packageAid = Aid.fromHex("A0000005272101");
+        final Aid appletAid = Aid.fromHex("a000000527210101");
+        final StringBuilder hex = new StringBuilder("aid:");
+        appletAid.appendHex(hex);
+        Assert.assertEquals(packageAid.toString(), "a0000005272101");
+        Assert.assertEquals(hex.toString(), "aid:a000000527210101");
+        Assert.assertEquals(packageAid.getLength(), 7);
+        Assert.assertEquals(packageAid, Aid.valueOf(packageAid.getBytes()));
+        Assert.assertEquals(packageAid.hashCode(), Aid.valueOf(packageAid.getBytes()).hashCode());
+        Assert.assertEquals(appletAid.getRID(), packageAid.getRID());
+        Assert.assertEquals(appletAid.getRID().toString(), "a000000527");
+        Assert.assertTrue(appletAid.startsWith(packageAid));
+        Assert.assertFalse(packageAid.startsWith(appletAid));
+        Assert.assertTrue(packageAid.compareTo(appletAid) < 0);
+        Assert.assertTrue(Aid.fromHex("ff00000000").compareTo(packageAid) > 0);
+        Assert.assertTrue(Aid.fromHex("00112233445566778899aabbccddeeff")
+                .startsWith(Aid.fromHex("00112233445566778899aabbccddee")));
+    }
+
+    @Test
+    public void testAidPool() throws IOException, CapException {
+        final File file = new File("src/test/resources/ykneo-oath-1.0.0.cap");
+        final AidPool aidPool = new AidPool();
+        final CapDecodeOptions options = new CapDecodeOptionsBuilder()
+                .setAidPool(aidPool)
+                .build();
+
+        final Cap first = new CapDecoderImpl().decode(file.toPath(), options);
+        final Cap second = new CapLazyDecoderImpl().decode(new FileInputStream(file), options);
+        Assert.assertSame(first.getHeader().getPackage().getAID(), second.getHeader().getPackage().getAID());
+        Assert.assertSame(first.getApplet().getApplets().get(0).getAID(),
+                second.getApplet().getApplets().get(0).getAID());
+        Assert.assertSame(aidPool.intern(Aid.fromHex("a0000005272101")), first.getHeader().getPackage().getAID());
+        Assert.assertEquals(aidPool.size(), 2);
+    }
+
+    @Test
+    public void testDecodeOptions() throws IOException, CapException {
+        final File file = new File("src/test/resources/ykneo-oath-1.0.0.cap");
+        final CapDecodeOptions options = new CapDecodeOptionsBuilder()
+                .setComponents(CapComponent.HEADER, CapComponent.DIRECTORY)
+                .build();
+
+        final Cap cap = new CapDecoderImpl().decode(file.toPath(), options);
+        Assert.assertEquals(cap.getHeader().getPackage().getAID(), Aid.fromHex("a0000005272101"));
+        Assert.assertEquals(cap.getDirectory().getAppletCount(), 1);
+        Assert.assertNull(cap.getApplet());
+    }
+
+    @Test
+    public void testAcceptVisitor() throws IOException, CapException {
+        final File file = new File("src/test/resources/ykneo-oath-1.0.0.cap");
+        final int[] totals = new int[3];
+        new CapDecoderImpl().accept(file.toPath(), CapDecodeOptions.DEFAULT, new CapVisitor() {
+            @Override
+            public void visitComponentSize(final int index, final int size) {
+                totals[0] += size;
+            }
+
+            @Override
+            public void visitApplet(final byte[] aid, final int offset, final int length, final int installOffset) {
+                totals[1]++;
+            }
+
+            @Override
+            public void visitEnd() {
+                totals[2]++;
+            }
+        });
+
+        Assert.assertEquals(totals[0], 17 + 31 + 12 + 31 + 350 + 54 + 3253 + 16 + 359 + 911);
+        Assert.assertEquals(totals[1], 1);
+        Assert.assertEquals(totals[2], 1);
+    }
+
+    @Test
+    public void testProbe() throws IOException, CapException {
+        final File file = new File("src/test/resources/ykneo-oath-1.0.0.cap");
+        final CapProbe probe = CapProbe.probe(file.toPath());
+        Assert.assertEquals(probe.getPackageAID(), Aid.fromHex("a0000005272101"));
+        Assert.assertEquals(probe.getPackageVersion(), 1);
+        Assert.assertEquals(probe.getVersion(), 0x0201);
+        Assert.assertEquals(probe.getFlags(), 4);
+
+        try (final FileInputStream fis = new FileInputStream(file)) {
+            Assert.assertEquals(CapProbe.probe(fis).getPackageAID(), Aid.fromHex("a0000005272101"));
+
+            /* caller stream stays open */
+            Assert.assertTrue(fis.getChannel().isOpen());
+        }
+    }
+
+    @Test
+    public void testBatchDecode() throws IOException, InterruptedException {
+        final Path file = Paths.get("src/test/resources/ykneo-oath-1.0.0.cap");
+        final Path missing = Paths.get("src/test/resources/missing.cap");
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            final List<CapBatchDecoder.Result<Path>> results = new CapBatchDecoder(new CapDecoderImpl(), pool)
+                    .decodePaths(Arrays.asList(file, missing, file));
+            Assert.assertEquals(results.size(), 3);
+            Assert.assertTrue(results.get(0).isSuccess());
+            Assert.assertFalse(results.get(1).isSuccess());
+            Assert.assertSame(results.get(1).getSource(), missing);
+            Assert.assertEquals(results.get(2).getCap().getHeader().getPackage().getAID(), Aid.fromHex("a0000005272101"));
+
+            /* direct executor completes paths in submission order, largest file first */
+            final List<Integer> completed = new ArrayList<>();
+            new CapBatchDecoder(new CapDecoderImpl(), CapDecodeOptions.DEFAULT, Runnable::run, true)
+                    .decodePaths(Arrays.asList(missing, file), result -> completed.add(result.getIndex()));
+            Assert.assertEquals(completed, Arrays.asList(1, 0));
+
+            /* streams are closed even when decoder leaves them open */
+            final boolean[] closed = new boolean[1];
+            final InputStream stream = new ByteArrayInputStream(Files.readAllBytes(file)) {
+                @Override
+                public void close() throws IOException {
+                    closed[0] = true;
+                    super.close();
+                }
+            };
+            Assert.assertTrue(new CapBatchDecoder(new CapCachingDecoder(new CapDecoderImpl(), 1024 * 1024), pool)
+                    .decodeStreams(Collections.singletonList(stream)).get(0).isSuccess());
+            Assert.assertTrue(closed[0]);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatchDecodeInterrupted() throws IOException, InterruptedException {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final boolean[] read = new boolean[1];
+        final InputStream blocking = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                try {
+                    new CountDownLatch(1).await();
+                } catch (final InterruptedException ex) {
+                    throw new InterruptedIOException();
+                }
+                return -1;
+            }
+        };
+        final InputStream pending = new InputStream() {
+            @Override
+            public int read() {
+                read[0] = true;
+                return -1;
+            }
+        };
+
+        try {
+            Thread.currentThread().interrupt();
+            new CapBatchDecoder(new CapDecoderImpl(), executor).decodeStreams(Arrays.asList(blocking, pending));
+            Assert.fail("batch has not been interrupted");
+        } catch (final InterruptedException ex) {
+            /* running decode is interrupted, pending one never starts */
+            executor.shutdown();
+            Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            Assert.assertFalse(read[0]);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDecodeAsync() throws Exception {
+        final Path file = Paths.get("src/test/resources/ykneo-oath-1.0.0.cap");
+        final CompletableFuture<Cap> future = new CapDecoderImpl().decodeAsync(file, Runnable::run);
+        Assert.assertEquals(future.get().getHeader().getPackage().getAID(), Aid.fromHex("a0000005272101"));
+
+        final CompletableFuture<Cap> failed = new CapDecoderImpl()
+                .decodeAsync(Paths.get("src/test/resources/missing.cap"), Runnable::run);
+        try {
+            failed.get();
+            Assert.fail("decoding missing file must fail");
+        } catch (final ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof CapException);
+        }
+
+        /* cancel before task starts running */
+        final List<Runnable> queue = new ArrayList<>();
+        final CompletableFuture<Cap> cancelled = new CapDecoderImpl().decodeAsync(file, queue::add);
+        Assert.assertTrue(cancelled.cancel(true));
+        queue.get(0).run();
+        Assert.assertTrue(cancelled.isCancelled());
+    }
+
+    @Test
+    public void testCachingDecoder() throws Exception {
+        final File file = new File("src/test/resources/ykneo-oath-1.0.0.cap");
+        final CapCachingDecoder decoder = new CapCachingDecoder(new CapDecoderImpl(), 1024 * 1024);
+        final Cap first = decoder.decode(file.toPath());
+        Assert.assertSame(decoder.decode(new FileInputStream(file)), first);
+        Assert.assertSame(decoder.decodeAsync(file.toPath(), ForkJoinPool.commonPool()).get(), first);
+        Assert.assertSame(decoder.decode(file.toPath(), new CapDecodeOptionsBuilder().build()), first);
+        Assert.assertNotSame(decoder.decode(file.toPath(), new CapDecodeOptionsBuilder()
+                .setComponents(CapComponent.HEADER)
+                .build()), first);
+
+        final CapCacheStats stats = decoder.getStats();
+        Assert.assertEquals(stats.getMissCount(), 2);
+        Assert.assertEquals(stats.getHitCount(), 3);
+        Assert.assertEquals(stats.getEntryCount(), 2);
+        Assert.assertEquals(stats.getWeight(), CapWeigher.RETAINED_SIZE.weigh(first)
+                + CapWeigher.RETAINED_SIZE.weigh(decoder.decode(file.toPath(), new CapDecodeOptionsBuilder()
+                .setComponents(CapComponent.HEADER)
+                .build())));
+        Assert.assertTrue(CapWeigher.RETAINED_SIZE.weigh(new CapLazyDecoderImpl().decode(file.toPath())) > 0);
+        Assert.assertTrue(CapWeigher.RETAINED_SIZE.weigh(new CapViewDecoderImpl().decode(file.toPath())) > 0);
+
+        /* bound below two entries keeps only the most recent one */
+        final CapCachingDecoder small = new CapCachingDecoder(new CapDecoderImpl(), 1, cap -> 1);
+        small.decode(file.toPath());
+        small.decode(file.toPath(), new CapDecodeOptionsBuilder().setComponents(CapComponent.HEADER).build());
+        Assert.assertEquals(small.getStats().getEvictionCount(), 1);
+        Assert.assertEquals(small.getStats().getEntryCount(), 1);
+    }
+
+    @Test
+    public void testDiskCache() throws IOException, CapException {
+        final File file = new File("src/test/resources/ykneo-oath-1.0.0.cap");
+        final CapDecodeOptions options = new CapDecodeOptionsBuilder().setComponents(CapComponent.values()).build();
+        final String expected = new CapDecoderImpl().decode(file.toPath(), options).toString();
+        final Path cacheFile = Files.createTempFile("cap", ".cache");
+        try {
+            try (final CapDiskCache cache = CapDiskCache.open(cacheFile)) {
+                Assert.assertEquals(cache.decode(file.toPath()).toString(), expected);
+                Assert.assertEquals(cache.decode(new FileInputStream(file)).toString(), expected);
+                Assert.assertEquals(cache.size(), 1);
+
+                /* cache file is locked while open */
+                try {
+                    CapDiskCache.open(cacheFile).close();
+                    Assert.fail("locked cache file must not be opened");
+                } catch (final IOException ex) {
+                    Assert.assertTrue(ex.getMessage().endsWith("is locked"));
+                }
+            }
+
+            /* warm cache serves views over mapped cache file */
+            try (final CapDiskCache cache = CapDiskCache.open(cacheFile)) {
+                Assert.assertEquals(cache.size(), 1);
+                final Cap cap = cache.decode(file.toPath());
+                Assert.assertEquals(cap.getApplet().getApplets().get(0).getInstallMethodOffset(), 1121);
+                Assert.assertEquals(cap.toString(), expected);
+            }
+        } finally {
+            Files.delete(cacheFile);
+        }
+    }
+
+    @Test
+    public void testDiskCacheCorruption() throws IOException, CapException {
+        final File file = new File("src/test/resources/ykneo-oath-1.0.0.cap");
+        final CapDecodeOptions options = new CapDecodeOptionsBuilder().setComponents(CapComponent.values()).build();
+        final String expected = new CapDecoderImpl().decode(file.toPath(), options).toString();
+        final Path cacheFile = Files.createTempFile("cap", ".cache");
+        try {
+            try (final CapDiskCache cache = CapDiskCache.open(cacheFile)) {
+                cache.decode(file.toPath());
+            }
+
+            /* corrupt tail of file record, payload record stays valid */
+            final byte[] content = Files.readAllBytes(cacheFile);
+            content[content.length - 1] ^= 0x5a;
+            Files.write(cacheFile, content);
+            try (final CapDiskCache cache = CapDiskCache.open(cacheFile)) {
+                Assert.assertEquals(cache.size(), 1);
+                Assert.assertTrue(Files.size(cacheFile) < content.length);
+                Assert.assertEquals(cache.decode(file.toPath()).toString(), expected);
+            }
+
+            /* corrupt digest of first payload record, every record from there on is dropped */
+            final int fileHeaderSize = 8;
+            final int recordHeaderSize = 4 + 4 + 1;
+            final byte[] rewritten = Files.readAllBytes(cacheFile);
+            rewritten[fileHeaderSize + recordHeaderSize + 16] ^= 0x5a;
+            Files.write(cacheFile, rewritten);
+            try (final CapDiskCache cache = CapDiskCache.open(cacheFile)) {
+                Assert.assertEquals(cache.size(), 0);
+                Assert.assertEquals(Files.size(cacheFile), fileHeaderSize);
+                Assert.assertEquals(cache.decode(file.toPath()).toString(), expected);
+                Assert.assertEquals(cache.size(), 1);
+            }
+        } finally {
+            Files.delete(cacheFile);
+        }
+    }
+
+    @Test
+    public void testIndex() throws IOException, CapException {
+        final File file = new File("src/test/resources/ykneo-oath-1.0.0.cap");
+        final Cap cap = new CapDecoderImpl().decode(file.toPath());
+        final CapIndex<String> index = new CapIndex<>();
+        final int first = index.add("first", cap);
+        index.add("second", cap);
+        for (int i = 0; i < 1000; i++) {
+            index.add("other-" + i, new CapViewDecoderImpl().decode(file.toPath(), new CapDecodeOptionsBuilder()
+                    .setComponents(CapComponent.HEADER, CapComponent.DIRECTORY)
+                    .build()));
+        }
+
+        Assert.assertEquals(index.findByAppletAid(Aid.fromHex("a000000527210101")).size(), 2);
+        Assert.assertEquals(index.findByPackageAid(Aid.fromHex("a0000005272101")).size(), 1002);
+        Assert.assertEquals(index.findByRid(Aid.fromHex("a000000527")).size(), 1002);
+        Assert.assertTrue(index.findByRid(Aid.fromHex("a000000528")).isEmpty());
+        Assert.assertTrue(index.remove(first));
+        Assert.assertFalse(index.remove(first));
+        Assert.assertEquals(index.findByAppletAid(Aid.fromHex("a000000527210101")),
+                Arrays.asList("second"));
+        Assert.assertEquals(index.size(), 1001);
+    }
+
+    @Test
+    public void testIndexSharedRid() throws IOException, CapException {
+        final File file = new File("src/test/resources/ykneo-oath-1.0.0.cap");
+        final Cap cap = new CapDecoderImpl().decode(file.toPath());
+        final CapIndex<Integer> index = new CapIndex<>();
+        final int count = 50000;
+        final int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = index.add(i, cap);
+        }
+        Assert.assertEquals(index.findByRid(Aid.fromHex("a000000527")).size(), count);
+
+        for (int i = 0; i < count; i += 2) {
+            Assert.assertTrue(index.remove(ids[i]));
+        }
+        final List<Integer> locations = index.findByRid(Aid.fromHex("a000000527"));
+        Assert.assertEquals(locations.size(), count / 2);
+        for (final int location : locations) {
+            Assert.assertEquals(location % 2, 1);
+        }
+        Assert.assertEquals(index.findByAppletAid(Aid.fromHex("a000000527210101")).size(), count / 2);
+
+        for (int i = 1; i < count; i += 2) {
+            Assert.assertTrue(index.remove(ids[i]));
+        }
+        Assert.assertTrue(index.findByRid(Aid.fromHex("a000000527")).isEmpty());
+        Assert.assertTrue(index.findByPackageAid(Aid.fromHex("a0000005272101")).isEmpty());
+        Assert.assertEquals(index.add(-1, cap), ids[count - 1]);
+        Assert.assertEquals(index.findByRid(Aid.fromHex("a000000527")), Collections.singletonList(-1));
+    }
+
+    @Test
+    public void testJsonWriter() throws IOException, CapException {
+        final File file = new File("src/test/resources/ykneo-oath-1.0.0.cap");
+        final Cap cap = new CapDecoderImpl().decode(file.toPath());
+        final String compact = "{\"header\":{\"version\":513,\"flags\":4,"
+                + "\"package\":{\"version\":1,\"aid\":\"a0000005272101\"}},"
+                + "\"directory\":{\"component_sizes\":[17,31,12,31,350,54,3253,16,359,0,911],"
+                + "\"static_field_size\":{\"image_size\":12,\"array_init_count\":1,\"array_init_size\":3},"
+                + "\"import_count\":3,\"applet_count\":1,\"custom_components\":[]},"
+                + "\"applet\":{\"applets\":[{\"aid\":\"a000000527210101\",\"install_method_offset\":1121}]}}";
+        final String pretty = new GsonBuilder().setPrettyPrinting().create().toJson(new JsonParser().parse(compact));
+        Assert.assertEquals(CapJsonWriter.toJson(cap, false), compact);
+        Assert.assertEquals(cap.toString(), pretty);
+        Assert.assertEquals(new CapLazyDecoderImpl().decode(file.toPath()).toString(), pretty);
+        Assert.assertEquals(new CapViewDecoderImpl().decode(file.toPath()).toString(), pretty);
+        Assert.assertNotNull(cap.getDirectory().toString());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final CapJsonWriter writer = new CapJsonWriter(out, false)) {
+            writer.write(cap);
+        }
+        Assert.assertEquals(new String(out.toByteArray(), StandardCharsets.UTF_8), CapJsonWriter.toJson(cap, false));
+    }
+
+    @Test
+    public void testJsonWriterCorpus() throws IOException, CapException {
+        final File file = new File("src/test/resources/ykneo-oath-1.0.0.cap");
+        final Cap cap = new CapDecoderImpl().decode(file.toPath());
+        final Cap lazyCap = new CapLazyDecoderImpl().decode(file.toPath());
+        final StringWriter out = new StringWriter();
+        try (final CapJsonWriter writer = new CapJsonWriter(out, true)) {
+            writer.beginCorpus()
+                    .write(cap)
+                    .write(lazyCap)
+                    .endCorpus();
+        }
+
+        final JsonArray corpus = new JsonParser().parse(out.toString()).getAsJsonArray();
+        final JsonElement expected = new JsonParser().parse(CapJsonWriter.toJson(cap, false));
+        Assert.assertEquals(corpus.size(), 2);
+        Assert.assertEquals(corpus.get(0), expected);
+        Assert.assertEquals(corpus.get(1), expected);
+    }
+
+    @Test
+    public void testDecodeListener() throws IOException, CapException {
+        final File file = new File("src/test/resources/ykneo-oath-1.0.0.cap");
+        final int[] entries = new int[CapComponent.values().length + 1];
+        final int[] parsed = new int[CapComponent.values().length + 1];
+        final List<Cap> decoded = new ArrayList<>();
+        final CapDecodeOptions options = new CapDecodeOptionsBuilder()
+                .setListener(new CapDecodeListener() {
+                    @Override
+                    public void onEntryRead(final int tag, final long compressedSize, final long size,
+                                            final long elapsedNanos) {
+                        Assert.assertTrue(size > 0);
+                        Assert.assertTrue(elapsedNanos >= 0);
+                        entries[tag]++;
+                    }
+
+                    @Override
+                    public void onComponentParsed(final int tag, final int size, final long elapsedNanos) {
+                        Assert.assertTrue(elapsedNanos >= 0);
+                        parsed[tag]++;
+                    }
+
+                    @Override
+                    public void onDecoded(final Cap cap, final long elapsedNanos) {
+                        decoded.add(cap);
+                    }
+                })
+                .build();
+        Assert.assertEquals(options, CapDecodeOptions.DEFAULT);
+        Assert.assertSame(CapDecodeOptions.DEFAULT.getListener(), CapDecodeListener.NOOP);
+
+        final Cap cap = new CapDecoderImpl().decode(file.toPath(), options);
+        new CapDecoderImpl().decode(new FileInputStream(file), options);
+        Assert.assertEquals(decoded, Arrays.asList(cap, decoded.get(1)));
+        for (final CapComponent component : options.getComponents()) {
+            Assert.assertEquals(entries[component.getTag()], 2);
+            Assert.assertEquals(parsed[component.getTag()], 2);
+        }
+        Assert.assertEquals(entries[CapComponent.METHOD.getTag()], 0);
+    }
+
+    @Test
+    public void testJfrDecodeListener() throws IOException, CapException {
+        final File file = new File("src/test/resources/ykneo-oath-1.0.0.cap");
+        final CapDecodeOptions options = new CapDecodeOptionsBuilder()
+                .setListener(CapJfrDecodeListener.create())
+                .build();
+        final Path dump = Files.createTempFile("cap", ".jfr");
+        try (final Recording recording = new Recording()) {
+            /* decode call made while nothing is recording leaves no event behind */
+            new CapDecoderImpl().decode(file.toPath(), options);
+
+            recording.enable("com.github.edipermadi.smartcard.CapDecode");
+            recording.enable("com.github.edipermadi.smartcard.CapComponent");
+            recording.start();
+            new CapDecoderImpl().decode(file.toPath(), options);
+            recording.stop();
+            recording.dump(dump);
+
+            final List<String> components = new ArrayList<>();
+            int decodeCount = 0;
+            for (final RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+                Assert.assertEquals(event.getString("packageAid"), "a0000005272101");
+                Assert.assertTrue(event.getDuration().toNanos() > 0);
+                if (event.getEventType().getName().endsWith("CapDecode")) {
+                    Assert.assertTrue(event.getBoolean("succeeded"));
+                    Assert.assertEquals(event.getInt("componentCount"), 3);
+                    decodeCount++;
+                } else {
+                    /* component event spans its read and parse time */
+                    Assert.assertTrue(event.getDuration().toNanos()
+                            >= event.getLong("readTime") + event.getLong("parseTime"));
+                    components.add(event.getString("component"));
+                }
+            }
+            Assert.assertEquals(decodeCount, 1);
+            Assert.assertEquals(components, Arrays.asList("Header.cap", "Directory.cap", "Applet.cap"));
+        } finally {
+            Files.delete(dump);
+        }
+    }
+
+    @Test
+    public void testJfrDecodeListenerLazyHeader() throws IOException, CapException {
+        final byte[] header = {0x01, 0x00, 0x04, (byte) 0xde, (byte) 0xca, (byte) 0xff};
+        final CapDecodeOptions options = new CapDecodeOptionsBuilder()
+                .setComponents(CapComponent.HEADER)
+                .setListener(CapJfrDecodeListener.create())
+                .build();
+        final Path dump = Files.createTempFile("cap", ".jfr");
+        try (final Recording recording = new Recording()) {
+            recording.enable("com.github.edipermadi.smartcard.CapDecode");
+            recording.disable("com.github.edipermadi.smartcard.CapComponent");
+            recording.start();
+            /* malformed header is left to whoever reads it, decode event goes without package AID */
+            final Cap cap = new CapLazyDecoderImpl()
+                    .decode(new ByteArrayInputStream(zip("test/javacard/Header.cap", header)), options);
+            recording.stop();
+            recording.dump(dump);
+
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+            Assert.assertEquals(events.size(), 1);
+            Assert.assertNull(events.get(0).getString("packageAid"));
+            Assert.assertTrue(events.get(0).getBoolean("succeeded"));
+            try {
+                cap.getHeader();
+                Assert.fail("malformed header must be rejected once read");
+            } catch (final IllegalStateException ex) {
+                Assert.assertTrue(ex.getCause() instanceof CapDecodeHeaderException);
+            }
+        } finally {
+            Files.delete(dump);
+        }
+    }
+
+    @Test
+    public void testDecodeImport() throws IOException, CapException {
+        final File file = new File("src/test/resources/ykneo-oath-1.0.0.cap");
+        final CapDecodeOptions options = new CapDecodeOptionsBuilder()
+                .setComponents(CapComponent.HEADER, CapComponent.DIRECTORY, CapComponent.IMPORT)
+                .build();
+        for (final CapDecoder decoder : Arrays.asList(new CapDecoderImpl(), new CapLazyDecoderImpl(),
+                new CapViewDecoderImpl())) {
+            final Cap.Import imports = decoder.decode(file.toPath(), options).getImport();
+            Assert.assertEquals(imports.getPackageCount(), 3);
+            Assert.assertEquals(imports.getAID(0), Aid.fromHex("a0000000620001"));
+            Assert.assertEquals(imports.getVersion(0), 0x0100);
+            Assert.assertEquals(imports.getAID(2), Aid.fromHex("a0000000620101"));
+            Assert.assertEquals(imports.getVersion(2), 0x0103);
+            Assert.assertEquals(imports.indexOf(Aid.fromHex("a0000000620102")), 1);
+            Assert.assertEquals(imports.indexOf(Aid.fromHex("a000000062010201")), -1);
+            Assert.assertEquals(imports.getPackages().get(1).getAID(), Aid.fromHex("a0000000620102"));
+        }
+        Assert.assertTrue(new CapDecoderImpl().decode(file.toPath(), options).toString().contains("\"import\""));
+        Assert.assertNull(new CapDecoderImpl().decode(file.toPath()).getImport());
+    }
+
+    @Test
+    public void testDecodeConstantPool() throws IOException, CapException {
+        final File file = new File("src/test/resources/ykneo-oath-1.0.0.cap");
+        final CapDecodeOptions options = new CapDecodeOptionsBuilder()
+                .setComponents(CapComponent.HEADER, CapComponent.DIRECTORY, CapComponent.CONSTANT_POOL)
+                .build();
+        final Cap.ConstantPool expected = new CapDecoderImpl().decode(file.toPath(), options).getConstantPool();
+        Assert.assertEquals(expected.getCount(), 87);
+        for (final CapDecoder decoder : Arrays.asList(new CapLazyDecoderImpl(), new CapViewDecoderImpl())) {
+            final Cap.ConstantPool constantPool = decoder.decode(file.toPath(), options).getConstantPool();
+            Assert.assertEquals(constantPool.getCount(), expected.getCount());
+            for (int i = 0; i < constantPool.getCount(); i++) {
+                Assert.assertEquals(constantPool.getTag(i), expected.getTag(i));
+                Assert.assertEquals(constantPool.getInfo(i), expected.getInfo(i));
+                Assert.assertTrue((constantPool.getTag(i) >= Cap.ConstantPool.TAG_CLASSREF)
+                        && (constantPool.getTag(i) <= Cap.ConstantPool.TAG_STATIC_METHODREF));
+            }
+        }
+        Assert.assertTrue(expected.toString().contains("\"entries\""));
+        Assert.assertNull(new CapDecoderImpl().decode(file.toPath()).getConstantPool());
+    }
+
+    @Test
+    public void testDecodeClass() throws IOException, CapException {
+        final File file = new File("src/test/resources/ykneo-oath-1.0.0.cap");
+        final CapDecodeOptions options = new CapDecodeOptionsBuilder()
+                .setComponents(CapComponent.HEADER, CapComponent.DIRECTORY, CapComponent.CLASS)
+                .build();
+        for (final CapDecoder decoder : Arrays.asList(new CapDecoderImpl(), new CapLazyDecoderImpl(),
+                new CapViewDecoderImpl())) {
+            final Cap.ClassComponent classComponent = decoder.decode(file.toPath(), options).getClassComponent();
+            Assert.assertTrue(classComponent.getInterfaces().isEmpty());
+            Assert.assertEquals(classComponent.getClasses().size(), 2);
+            Assert.assertNull(classComponent.findClass(1));
+
+            /* super classes belong to javacard.framework, inherited methods are left unresolved */
+            final Cap.ClassComponent.ClassInfo applet = classComponent.findClass(42);
+            Assert.assertEquals(applet.getSuperClass(), 0x8203);
+            Assert.assertEquals(applet.getPublicMethodTableSize(), 8);
+            Assert.assertEquals(applet.getPublicMethod(6), Cap.ClassComponent.UNRESOLVED);
+            Assert.assertEquals(applet.getPublicMethod(7), 0x0475);
+            Assert.assertEquals(classComponent.findClass(0).getPublicMethod(16), 0x0403);
+        }
+
+        /* CAP 2.2 class component holding a signature pool, two interfaces and a class extending another one */
+        final byte[] payload = {0x06, 0x00, 0x28, 0x00, 0x02, 0x01, 0x02,
+                (byte) 0x80,
+                (byte) 0x81, 0x00, 0x04,
+                0x01, (byte) 0x80, 0x00, 0x02, 0x00, 0x01, 0x01, 0x02, 0x00, 0x01, 0x00, 0x10, 0x00, 0x20, 0x00, 0x30,
+                0x00, 0x05, 0x01, 0x02,
+                0x00, 0x00, 0x08, 0x03, 0x00, 0x01, 0x03, 0x01, 0x01, 0x00, 0x00, 0x40};
+        final Cap.ClassComponent classComponent = CapDecoderImpl.decodeCapClass(ByteBuffer.wrap(payload), 0x0202);
+        Assert.assertEquals(classComponent.getInterfaces().size(), 2);
+        Assert.assertEquals(classComponent.findInterface(5).getSuperInterface(0), 4);
+        Assert.assertEquals(classComponent.findClass(8).getInterfaces().get(0).getMethodToken(0), 2);
+        final Cap.ClassComponent.ClassInfo subclass = classComponent.findClass(28);
+        Assert.assertEquals(subclass.getPublicMethodTableSize(), 4);
+        Assert.assertEquals(subclass.getPublicMethod(0), Cap.ClassComponent.UNRESOLVED);
+        Assert.assertEquals(subclass.getPublicMethod(2), 0x20);
+        Assert.assertEquals(subclass.getPublicMethod(3), 0x40);
+        Assert.assertEquals(subclass.getPackageMethod(0), 0x30);
+        Assert.assertTrue(classComponent.toString().contains("\"public_methods\""));
+    }
+
+    @Test
+    public void testDecodeMethod() throws IOException, CapException {
+        final File file = new File("src/test/resources/ykneo-oath-1.0.0.cap");
+        final CapDecodeOptions options = new CapDecodeOptionsBuilder()
+                .setComponents(CapComponent.HEADER, CapComponent.DIRECTORY, CapComponent.APPLET, CapComponent.METHOD)
+                .build();
+        final String expected = new CapDecoderImpl().decode(file.toPath(), options).toString();
+        for (final CapDecoder decoder : Arrays.asList(new CapDecoderImpl(new CapDecoderPool()),
+                new CapLazyDecoderImpl(), new CapViewDecoderImpl())) {
+            final Cap cap = decoder.decode(file.toPath(), options);
+            final Cap.MethodComponent methodComponent = cap.getMethodComponent();
+            Assert.assertTrue(methodComponent.getExceptionHandlers().isEmpty());
+            Assert.assertEquals(methodComponent.getMethodCount(), 35);
+            Assert.assertEquals(methodComponent.getMethod(0).getOffset(), 1);
+            Assert.assertNull(methodComponent.findMethod(1122));
+
+            /* applet install method creates applet instance */
+            final Cap.MethodComponent.MethodInfo install = methodComponent.findMethod(
+                    cap.getApplet().getApplets().get(0).getInstallMethodOffset());
+            Assert.assertEquals(install.getBytecodeLength(), 18);
+            Assert.assertTrue(install.getBytecode().isReadOnly());
+            Assert.assertEquals(install.getBytecode().get(0), (byte) 0x8f);
+            if (!(decoder instanceof CapViewDecoderImpl)) {
+                Assert.assertEquals(cap.toString(), expected);
+            }
+        }
+
+        /* without descriptor component, methods are located out of applet, constant pool and class components */
+        final ByteBuffer[] payloads = new ByteBuffer[CapDecoderImplBase.COMPONENT_COUNT + 1];
+        try (final ZipInputStream zis = new ZipInputStream(new FileInputStream(file))) {
+            for (ZipEntry ze = zis.getNextEntry(); ze != null; ze = zis.getNextEntry()) {
+                final int tag = CapDecoderImplBase.getComponentTag(CapDecoderImplBase.getComponentName(ze.getName()));
+                if (tag > 0) {
+                    payloads[tag] = ByteBuffer.wrap(IOUtils.toByteArray(zis));
+                }
+            }
+        }
+        final int[] described = CapMethodOffsetCollector.collect(payloads);
+        payloads[CapDecoderImplBase.TAG_COMPONENT_Descriptor] = null;
+        final int[] located = CapMethodOffsetCollector.collect(payloads);
+        Assert.assertEquals(described.length, 35);
+        Assert.assertEquals(located.length, 35);
+        for (final int offset : located) {
+            Assert.assertTrue(Arrays.binarySearch(described, offset) >= 0, "unknown method offset " + offset);
+        }
+        final Cap.MethodComponent partial = CapDecoderImpl.decodeCapMethod(
+                payloads[CapDecoderImplBase.TAG_COMPONENT_Method], located);
+        Assert.assertEquals(partial.getMethodCount(), 35);
+        Assert.assertNotNull(partial.findMethod(1121));
+
+        /* one exception handler, followed by a method and an extended method */
+        final byte[] payload = {0x07, 0x00, 0x15, 0x01, 0x00, 0x0b, (byte) 0x80, 0x04, 0x00, 0x0f, 0x00, 0x01,
+                0x02, 0x10, 0x18, (byte) 0x8c, 0x00, 0x00,
+                (byte) 0x80, 0x20, 0x01, 0x10, 0x7a, 0x00};
+        final Cap.MethodComponent methodComponent = CapDecoderImpl.decodeCapMethod(ByteBuffer.wrap(payload),
+                new int[]{9, 15});
+        Assert.assertTrue(methodComponent.getExceptionHandlers().get(0).isStop());
+        Assert.assertEquals(methodComponent.getExceptionHandlers().get(0).getActiveLength(), 4);
+        Assert.assertEquals(methodComponent.findMethod(9).getNargs(), 1);
+        Assert.assertEquals(methodComponent.findMethod(9).getBytecodeLength(), 4);
+        Assert.assertEquals(methodComponent.findMethod(15).getMaxStack(), 0x20);
+        Assert.assertEquals(methodComponent.findMethod(15).getMaxLocals(), 0x10);
+        Assert.assertEquals(methodComponent.findMethod(15).getBytecode().remaining(), 2);
+        try {
+            CapDecoderImpl.decodeCapMethod(ByteBuffer.wrap(payload), new int[]{3});
+            Assert.fail("method offset within exception handler table must be rejected");
+        } catch (final CapDecodeMethodException ex) {
+            Assert.assertEquals(ex.getMessage(), "invalid CAP method offset 3");
+        }
+    }
+
+    @Test(expectedExceptions = CapFormatException.class)
+    public void testDecodeMissingComponent() throws IOException, CapException {
+        final byte[] header = {0x01, 0x00, 0x04, (byte) 0xde, (byte) 0xca, (byte) 0xff};
+        final CapDecodeOptions options = new CapDecodeOptionsBuilder()
+                .setComponents(CapComponent.HEADER, CapComponent.APPLET)
+                .setOptionalComponents(CapComponent.HEADER)
+                .build();
+        new CapDecoderImpl().decode(new ByteArrayInputStream(zip("test/javacard/Header.cap", header)), options);
+    }
+
+    @Test(expectedExceptions = CapDecodeHeaderException.class)
+    public void testTruncatedHeader() throws IOException, CapException {
+        final byte[] header = {0x01, 0x00, 0x04, (byte) 0xde, (byte) 0xca, (byte) 0xff};
+        final CapDecodeOptions options = new CapDecodeOptionsBuilder()
+                .setComponents(CapComponent.HEADER)
+                .build();
+        new CapDecoderImpl().decode(new ByteArrayInputStream(zip("test/javacard/Header.cap", header)), options);
+    }
+
+    @Test(expectedExceptions = CapFormatException.class)
+    public void testOversizedEntry() throws IOException, CapException {
+        /* stored entry carries its size in stream, it is rejected before its content is read */
+        final byte[] header = new byte[CapDecoderImplBase.MAX_COMPONENT_SIZE + 1];
+        new CapDecoderImpl().decode(new ByteArrayInputStream(zipStored("test/javacard/Header.cap", header)));
+    }
+
+    @Test(expectedExceptions = CapFormatException.class)
+    public void testOversizedCentralDirectoryEntry() throws IOException, CapException {
+        /* central directory entry sizes are checked before entry is mapped or inflated */
+        final byte[] header = new byte[CapDecoderImplBase.MAX_COMPONENT_SIZE + 1];
+        final Path path = Files.createTempFile("cap", ".cap");
+        try {
+            Files.write(path, zipStored("test/javacard/Header.cap", header));
+            new CapDecoderImpl().decode(path);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Create zip archive holding single entry
+     *
+     * @param name    entry name
+     * @param payload entry payload
+     * @return zip archive
+     * @throws IOException when writing failed
+     */
+    static byte[] zip(final String name, final byte[] payload) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ZipOutputStream zos = new ZipOutputStream(baos);
+        zos.putNextEntry(new ZipEntry(name));
+        zos.write(payload);
+        zos.closeEntry();
+        zos.close();
+        return baos.toByteArray();
+    }
+
+    /**
+     * Create zip archive holding single stored entry
+     *
+     * @param name    entry name
+     * @param payload entry payload
+     * @return zip archive
+     * @throws IOException when writing failed
+     */
+    static byte[] zipStored(final String name, final byte[] payload) throws IOException {
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        final ZipEntry ze = new ZipEntry(name);
+        ze.setMethod(ZipEntry.STORED);
+        ze.setSize(payload.length);
+        ze.setCompressedSize(payload.length);
+        ze.setCrc(crc.getValue());
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ZipOutputStream zos = new ZipOutputStream(baos);
+        zos.putNextEntry(ze);
+        zos.write(payload);
+        zos.closeEntry();
+        zos.close();
+        return baos.toByteArray();
+    }
 }